@@ -18,8 +18,14 @@ package org.springframework.samples.petclinic;
 
 import org.springframework.aot.hint.RuntimeHints;
 import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.cache.support.NullValue;
 import org.springframework.samples.petclinic.model.BaseEntity;
+import org.springframework.samples.petclinic.model.NamedEntity;
 import org.springframework.samples.petclinic.model.Person;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.samples.petclinic.owner.Visit;
 import org.springframework.samples.petclinic.vet.Vet;
 
 public class PetClinicRuntimeHints implements RuntimeHintsRegistrar {
@@ -33,6 +39,13 @@ public class PetClinicRuntimeHints implements RuntimeHintsRegistrar {
 		hints.serialization().registerType(BaseEntity.class);
 		hints.serialization().registerType(Person.class);
 		hints.serialization().registerType(Vet.class);
+		// the owners cache stores copies of owner aggregates
+		hints.serialization().registerType(NamedEntity.class);
+		hints.serialization().registerType(Owner.class);
+		hints.serialization().registerType(Pet.class);
+		hints.serialization().registerType(PetType.class);
+		hints.serialization().registerType(Visit.class);
+		hints.serialization().registerType(NullValue.class);
 	}
 
 }
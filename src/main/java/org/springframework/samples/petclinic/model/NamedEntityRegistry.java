@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * In-memory copy of reference data such as pet types, looked up by id or by name without
+ * going to the data store. The entities are loaded on first use and kept in an immutable
+ * snapshot that {@link #refresh()} replaces as a whole, so readers never see a partially
+ * loaded registry. The entities are shared by all readers and must not be modified.
+ *
+ * @param <T> the type of the registered entities
+ */
+public class NamedEntityRegistry<T extends NamedEntity> {
+
+	private final Supplier<List<T>> loader;
+
+	private volatile Snapshot<T> snapshot;
+
+	/**
+	 * Create a registry of the entities provided by the given loader.
+	 * @param loader loads all entities in the order {@link #findAll()} returns them
+	 */
+	public NamedEntityRegistry(Supplier<List<T>> loader) {
+		this.loader = loader;
+	}
+
+	/**
+	 * Return all registered entities.
+	 * @return an unmodifiable list of the entities
+	 */
+	public List<T> findAll() {
+		return snapshot().all();
+	}
+
+	/**
+	 * Return the entity with the given id.
+	 * @param id the id to look up
+	 * @return the entity, or {@literal null} if there is none with the given id
+	 */
+	public T findById(Integer id) {
+		return snapshot().byId().get(id);
+	}
+
+	/**
+	 * Return the entity with the given name.
+	 * @param name the exact name to look up
+	 * @return the entity, or {@literal null} if there is none with the given name
+	 */
+	public T findByName(String name) {
+		return snapshot().byName().get(name);
+	}
+
+	/**
+	 * Load the entities anew and replace the current snapshot. To be called after the
+	 * reference data has been changed in the data store.
+	 */
+	public void refresh() {
+		this.snapshot = Snapshot.of(this.loader.get());
+	}
+
+	private Snapshot<T> snapshot() {
+		Snapshot<T> current = this.snapshot;
+		if (current == null) {
+			synchronized (this) {
+				current = this.snapshot;
+				if (current == null) {
+					current = Snapshot.of(this.loader.get());
+					this.snapshot = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	private record Snapshot<T extends NamedEntity>(List<T> all, Map<Integer, T> byId, Map<String, T> byName) {
+
+		static <T extends NamedEntity> Snapshot<T> of(List<T> entities) {
+			Map<Integer, T> byId = new HashMap<>();
+			Map<String, T> byName = new HashMap<>();
+			for (T entity : entities) {
+				byId.put(entity.getId(), entity);
+				byName.put(entity.getName(), entity);
+			}
+			return new Snapshot<>(List.copyOf(entities), Collections.unmodifiableMap(byId),
+					Collections.unmodifiableMap(byName));
+		}
+
+	}
+
+}
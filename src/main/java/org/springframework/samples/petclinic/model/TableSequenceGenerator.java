@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.model;
+
+import java.util.Properties;
+
+import org.hibernate.boot.model.naming.Identifier;
+import org.hibernate.boot.model.relational.QualifiedName;
+import org.hibernate.boot.model.relational.QualifiedNameParser;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.jdbc.env.spi.JdbcEnvironment;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+
+/**
+ * Generates the ids of an entity from the sequence named after its table, as in
+ * {@code owners_seq} for the {@code owners} table, see {@link TableSequence}. On
+ * databases without sequences the ids come from a single-row table of that name instead.
+ */
+public class TableSequenceGenerator extends SequenceStyleGenerator {
+
+	static final String SUFFIX = "_seq";
+
+	@Override
+	protected QualifiedName determineSequenceName(Properties params, Dialect dialect, JdbcEnvironment jdbcEnv,
+			ServiceRegistry serviceRegistry) {
+		String table = ConfigurationHelper.getString(PersistentIdentifierGenerator.TABLE, params);
+		if (table == null) {
+			throw new IllegalStateException("No table to name the id sequence after");
+		}
+		Identifier catalog = jdbcEnv.getIdentifierHelper()
+			.toIdentifier(ConfigurationHelper.getString(PersistentIdentifierGenerator.CATALOG, params));
+		Identifier schema = jdbcEnv.getIdentifierHelper()
+			.toIdentifier(ConfigurationHelper.getString(PersistentIdentifierGenerator.SCHEMA, params));
+		return new QualifiedNameParser.NameParts(catalog, schema,
+				jdbcEnv.getIdentifierHelper().toIdentifier(table + SUFFIX));
+	}
+
+}
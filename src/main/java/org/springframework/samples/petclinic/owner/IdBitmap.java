@@ -0,0 +1,410 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed set of non-negative ids, laid out like a Roaring bitmap: the ids
+ * are split into chunks by their upper 16 bits, and every chunk holds its lower 16 bits
+ * either as a sorted char array while sparse, or as a bitmap of 1024 longs once it holds
+ * more than {@value #MAX_ARRAY_SIZE} ids, so that no chunk takes more than 8 KB. Adding
+ * or removing an id copies the affected chunk only and shares the others.
+ */
+final class IdBitmap {
+
+	static final IdBitmap EMPTY = new IdBitmap(new char[0], new Object[0], 0);
+
+	/**
+	 * Number of ids above which a chunk is held as a bitmap rather than an array.
+	 */
+	static final int MAX_ARRAY_SIZE = 4096;
+
+	private static final int BITMAP_WORDS = 1024;
+
+	/**
+	 * The upper 16 bits of the ids in every chunk, ascending.
+	 */
+	private final char[] keys;
+
+	/**
+	 * The lower 16 bits of the ids in every chunk, a {@code char[]} or a {@code long[]}.
+	 */
+	private final Object[] chunks;
+
+	private final int cardinality;
+
+	private IdBitmap(char[] keys, Object[] chunks, int cardinality) {
+		this.keys = keys;
+		this.chunks = chunks;
+		this.cardinality = cardinality;
+	}
+
+	/**
+	 * Create a bitmap of the given ids.
+	 * @param ids the ids in any order, duplicates are ignored
+	 * @return the bitmap
+	 */
+	static IdBitmap of(int... ids) {
+		int[] sorted = ids.clone();
+		Arrays.sort(sorted);
+		Builder builder = new Builder();
+		for (int id : sorted) {
+			builder.add(id);
+		}
+		return builder.build();
+	}
+
+	boolean contains(int id) {
+		int index = Arrays.binarySearch(this.keys, high(id));
+		return index >= 0 && contains(this.chunks[index], low(id));
+	}
+
+	int cardinality() {
+		return this.cardinality;
+	}
+
+	boolean isEmpty() {
+		return this.cardinality == 0;
+	}
+
+	/**
+	 * Return this bitmap with the given id added.
+	 */
+	IdBitmap with(int id) {
+		int index = Arrays.binarySearch(this.keys, high(id));
+		if (index < 0) {
+			index = -index - 1;
+			char[] keys = new char[this.keys.length + 1];
+			Object[] chunks = new Object[this.chunks.length + 1];
+			System.arraycopy(this.keys, 0, keys, 0, index);
+			System.arraycopy(this.chunks, 0, chunks, 0, index);
+			keys[index] = high(id);
+			chunks[index] = new char[] { low(id) };
+			System.arraycopy(this.keys, index, keys, index + 1, this.keys.length - index);
+			System.arraycopy(this.chunks, index, chunks, index + 1, this.chunks.length - index);
+			return new IdBitmap(keys, chunks, this.cardinality + 1);
+		}
+		Object chunk = this.chunks[index];
+		if (contains(chunk, low(id))) {
+			return this;
+		}
+		Object[] chunks = this.chunks.clone();
+		if (chunk instanceof char[] array && array.length < MAX_ARRAY_SIZE) {
+			int position = -Arrays.binarySearch(array, low(id)) - 1;
+			char[] added = new char[array.length + 1];
+			System.arraycopy(array, 0, added, 0, position);
+			added[position] = low(id);
+			System.arraycopy(array, position, added, position + 1, array.length - position);
+			chunks[index] = added;
+		}
+		else {
+			long[] bitmap = toBitmap(chunk);
+			bitmap[low(id) >>> 6] |= 1L << low(id);
+			chunks[index] = bitmap;
+		}
+		return new IdBitmap(this.keys, chunks, this.cardinality + 1);
+	}
+
+	/**
+	 * Return this bitmap with the given id removed.
+	 */
+	IdBitmap without(int id) {
+		int index = Arrays.binarySearch(this.keys, high(id));
+		if (index < 0 || !contains(this.chunks[index], low(id))) {
+			return this;
+		}
+		Object chunk = this.chunks[index];
+		if (size(chunk) == 1) {
+			char[] keys = new char[this.keys.length - 1];
+			Object[] chunks = new Object[this.chunks.length - 1];
+			System.arraycopy(this.keys, 0, keys, 0, index);
+			System.arraycopy(this.chunks, 0, chunks, 0, index);
+			System.arraycopy(this.keys, index + 1, keys, index, keys.length - index);
+			System.arraycopy(this.chunks, index + 1, chunks, index, chunks.length - index);
+			return new IdBitmap(keys, chunks, this.cardinality - 1);
+		}
+		Object[] chunks = this.chunks.clone();
+		if (chunk instanceof char[] array) {
+			int position = Arrays.binarySearch(array, low(id));
+			char[] removed = new char[array.length - 1];
+			System.arraycopy(array, 0, removed, 0, position);
+			System.arraycopy(array, position + 1, removed, position, removed.length - position);
+			chunks[index] = removed;
+		}
+		else {
+			long[] bitmap = ((long[]) chunk).clone();
+			bitmap[low(id) >>> 6] &= ~(1L << low(id));
+			chunks[index] = compact(bitmap, size(chunk) - 1);
+		}
+		return new IdBitmap(this.keys, chunks, this.cardinality - 1);
+	}
+
+	/**
+	 * Return the ids in both this and the given bitmap.
+	 */
+	IdBitmap and(IdBitmap other) {
+		int length = Math.min(this.keys.length, other.keys.length);
+		char[] keys = new char[length];
+		Object[] chunks = new Object[length];
+		int count = 0;
+		int cardinality = 0;
+		for (int i = 0, j = 0; i < this.keys.length && j < other.keys.length;) {
+			if (this.keys[i] < other.keys[j]) {
+				i++;
+			}
+			else if (this.keys[i] > other.keys[j]) {
+				j++;
+			}
+			else {
+				Object chunk = and(this.chunks[i], other.chunks[j]);
+				int size = size(chunk);
+				if (size > 0) {
+					keys[count] = this.keys[i];
+					chunks[count++] = chunk;
+					cardinality += size;
+				}
+				i++;
+				j++;
+			}
+		}
+		return new IdBitmap(Arrays.copyOf(keys, count), Arrays.copyOf(chunks, count), cardinality);
+	}
+
+	/**
+	 * Count the ids in both this and the given bitmap, without creating their
+	 * intersection.
+	 */
+	int andCardinality(IdBitmap other) {
+		int cardinality = 0;
+		for (int i = 0, j = 0; i < this.keys.length && j < other.keys.length;) {
+			if (this.keys[i] < other.keys[j]) {
+				i++;
+			}
+			else if (this.keys[i] > other.keys[j]) {
+				j++;
+			}
+			else {
+				cardinality += andCardinality(this.chunks[i++], other.chunks[j++]);
+			}
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Return the ids in ascending order.
+	 */
+	int[] toArray() {
+		int[] ids = new int[this.cardinality];
+		int count = 0;
+		for (int i = 0; i < this.keys.length; i++) {
+			int base = this.keys[i] << 16;
+			if (this.chunks[i] instanceof char[] array) {
+				for (char low : array) {
+					ids[count++] = base | low;
+				}
+			}
+			else {
+				long[] bitmap = (long[]) this.chunks[i];
+				for (int word = 0; word < BITMAP_WORDS; word++) {
+					for (long bits = bitmap[word]; bits != 0; bits &= bits - 1) {
+						ids[count++] = base | (word << 6) | Long.numberOfTrailingZeros(bits);
+					}
+				}
+			}
+		}
+		return ids;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+
+	private static char high(int id) {
+		return (char) (id >>> 16);
+	}
+
+	private static char low(int id) {
+		return (char) id;
+	}
+
+	private static boolean contains(Object chunk, char low) {
+		if (chunk instanceof char[] array) {
+			return Arrays.binarySearch(array, low) >= 0;
+		}
+		return (((long[]) chunk)[low >>> 6] & (1L << low)) != 0;
+	}
+
+	private static int size(Object chunk) {
+		if (chunk instanceof char[] array) {
+			return array.length;
+		}
+		int size = 0;
+		for (long word : (long[]) chunk) {
+			size += Long.bitCount(word);
+		}
+		return size;
+	}
+
+	private static long[] toBitmap(Object chunk) {
+		if (chunk instanceof long[] bitmap) {
+			return bitmap.clone();
+		}
+		long[] bitmap = new long[BITMAP_WORDS];
+		for (char low : (char[]) chunk) {
+			bitmap[low >>> 6] |= 1L << low;
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Return the given bitmap chunk as an array if it got sparse enough.
+	 */
+	private static Object compact(long[] bitmap, int size) {
+		if (size > MAX_ARRAY_SIZE) {
+			return bitmap;
+		}
+		char[] array = new char[size];
+		int count = 0;
+		for (int word = 0; word < BITMAP_WORDS; word++) {
+			for (long bits = bitmap[word]; bits != 0; bits &= bits - 1) {
+				array[count++] = (char) ((word << 6) | Long.numberOfTrailingZeros(bits));
+			}
+		}
+		return array;
+	}
+
+	private static Object and(Object a, Object b) {
+		if (a instanceof long[] left && b instanceof long[] right) {
+			long[] bitmap = new long[BITMAP_WORDS];
+			int size = 0;
+			for (int word = 0; word < BITMAP_WORDS; word++) {
+				bitmap[word] = left[word] & right[word];
+				size += Long.bitCount(bitmap[word]);
+			}
+			return compact(bitmap, size);
+		}
+		if (a instanceof long[]) {
+			return and(b, a);
+		}
+		char[] array = (char[]) a;
+		char[] both = new char[array.length];
+		int count = 0;
+		for (char low : array) {
+			if (contains(b, low)) {
+				both[count++] = low;
+			}
+		}
+		return Arrays.copyOf(both, count);
+	}
+
+	private static int andCardinality(Object a, Object b) {
+		if (a instanceof long[] left && b instanceof long[] right) {
+			int size = 0;
+			for (int word = 0; word < BITMAP_WORDS; word++) {
+				size += Long.bitCount(left[word] & right[word]);
+			}
+			return size;
+		}
+		if (a instanceof long[]) {
+			return andCardinality(b, a);
+		}
+		int count = 0;
+		for (char low : (char[]) a) {
+			if (contains(b, low)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Builds a bitmap of ids added in ascending order.
+	 */
+	static final class Builder {
+
+		private char[] keys = new char[4];
+
+		private Object[] chunks = new Object[4];
+
+		private int count;
+
+		private char[] array = new char[16];
+
+		private long[] bitmap;
+
+		private int size;
+
+		private int cardinality;
+
+		private int last = -1;
+
+		/**
+		 * Add an id, which must not be less than the ids added before.
+		 */
+		Builder add(int id) {
+			if (id < this.last) {
+				throw new IllegalArgumentException("Ids must be added in ascending order");
+			}
+			if (id == this.last) {
+				return this;
+			}
+			if (this.last < 0 || high(id) != high(this.last)) {
+				flush();
+				if (this.count == this.keys.length) {
+					this.keys = Arrays.copyOf(this.keys, this.count * 2);
+					this.chunks = Arrays.copyOf(this.chunks, this.count * 2);
+				}
+				this.keys[this.count] = high(id);
+			}
+			if (this.bitmap != null) {
+				this.bitmap[low(id) >>> 6] |= 1L << low(id);
+			}
+			else if (this.size < MAX_ARRAY_SIZE) {
+				if (this.size == this.array.length) {
+					this.array = Arrays.copyOf(this.array, this.size * 2);
+				}
+				this.array[this.size] = low(id);
+			}
+			else {
+				this.bitmap = toBitmap(Arrays.copyOf(this.array, this.size));
+				this.bitmap[low(id) >>> 6] |= 1L << low(id);
+			}
+			this.size++;
+			this.cardinality++;
+			this.last = id;
+			return this;
+		}
+
+		private void flush() {
+			if (this.size == 0) {
+				return;
+			}
+			this.chunks[this.count++] = (this.bitmap != null) ? this.bitmap : Arrays.copyOf(this.array, this.size);
+			this.bitmap = null;
+			this.size = 0;
+		}
+
+		IdBitmap build() {
+			flush();
+			return new IdBitmap(Arrays.copyOf(this.keys, this.count), Arrays.copyOf(this.chunks, this.count),
+					this.cardinality);
+		}
+
+	}
+
+}
@@ -15,26 +15,65 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
 
+import org.hibernate.annotations.OptimisticLock;
 import org.springframework.core.style.ToStringCreator;
+import org.springframework.data.domain.DomainEvents;
 import org.springframework.samples.petclinic.model.Person;
 import org.springframework.util.Assert;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.FetchType;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.JoinColumn;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OrderBy;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.NotBlank;
 
 /**
  * Simple JavaBean domain object representing an owner.
+ * <p>
+ * Pets are loaded lazily. The named entity graphs describe how much of the aggregate a
+ * use case needs: {@value #PETS_GRAPH} fetches the pets with their types. The visits of
+ * every pet are fetched by a query of their own, as fetching them along with the pets
+ * would repeat a pet in the list of pets once per visit, see
+ * {@link OwnerRepository#findById(Integer)}.
+ * <p>
+ * Looking up a pet by id or by name uses an index that is built on the first lookup and
+ * dropped whenever the list of pets is modified or a pet's id or name changes. Pet names
+ * are compared ignoring case, as by {@link String#equalsIgnoreCase(String)}.
+ * <p>
+ * Saving an owner invalidates the cached searches for its previous and current last name
+ * and updates the owner name index, see {@link OwnerSearchListener}. Saving it through
+ * the {@link OwnerRepository} also publishes {@link OwnerSaved}, covering changes to its
+ * pets and visits as well. Owners being imported leave the name index and these events to
+ * the {@link OwnerImporter}, which covers a whole chunk of owners with
+ * {@link OwnersImported}.
+ * <p>
+ * Edits of the owner's details are checked against its {@link #getVersion() version}. The
+ * version guards the owner's own columns only, adding a pet does not change it.
+ * {@link OwnerEdits} writes only the columns an edit changed, which the owner tells from
+ * the state it was loaded with.
  *
  * @author Ken Krebs
  * @author Juergen Hoeller
@@ -44,8 +83,13 @@ import jakarta.validation.constraints.NotBlank;
  */
 @Entity
 @Table(name = "owners")
+@EntityListeners(OwnerSearchListener.class)
+@NamedEntityGraph(name = Owner.PETS_GRAPH, attributeNodes = @NamedAttributeNode(value = "pets", subgraph = "pet"),
+		subgraphs = @NamedSubgraph(name = "pet", attributeNodes = @NamedAttributeNode("type")))
 public class Owner extends Person {
 
+	static final String PETS_GRAPH = "Owner.pets";
+
 	@Column(name = "address")
 	@NotBlank
 	private String address;
@@ -59,11 +103,28 @@ public class Owner extends Person {
 	@Pattern(regexp = "\\d{10}", message = "Telephone must be a 10-digit number")
 	private String telephone;
 
-	@OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+	@Version
+	@Column(name = "version")
+	private Integer version;
+
+	@OneToMany(cascade = CascadeType.ALL)
 	@JoinColumn(name = "owner_id")
 	@OrderBy("name")
+	@OptimisticLock(excluded = true)
 	private final List<Pet> pets = new ArrayList<>();
 
+	private transient PetIndex petIndex;
+
+	/**
+	 * The details as loaded from the data store, to tell which searches and which columns
+	 * a change affects. Kept when the owner is copied out of the cache.
+	 */
+	@Transient
+	private Details loaded;
+
+	@Transient
+	private boolean imported;
+
 	public String getAddress() {
 		return this.address;
 	}
@@ -85,16 +146,31 @@ public class Owner extends Person {
 	}
 
 	public void setTelephone(String telephone) {
-		this.telephone = telephone;
+		this.telephone = normalizeTelephone(telephone);
 	}
 
+	public Integer getVersion() {
+		return this.version;
+	}
+
+	public void setVersion(Integer version) {
+		this.version = version;
+	}
+
+	/**
+	 * Return the pets of this owner, as a list that drops the pet index whenever it is
+	 * modified.
+	 * @return the pets
+	 */
 	public List<Pet> getPets() {
-		return this.pets;
+		return new PetList();
 	}
 
 	public void addPet(Pet pet) {
 		if (pet.isNew()) {
-			getPets().add(pet);
+			this.pets.add(pet);
+			pet.setIndexedBy(this);
+			this.petIndex = null;
 		}
 	}
 
@@ -113,15 +189,14 @@ public class Owner extends Person {
 	 * @return a pet if pet id is already in use
 	 */
 	public Pet getPet(Integer id) {
-		for (Pet pet : getPets()) {
-			if (!pet.isNew()) {
-				Integer compId = pet.getId();
-				if (compId.equals(id)) {
-					return pet;
-				}
-			}
+		PetIndex index = petIndex();
+		Pet pet = index.byId.get(id);
+		if (pet == null && index.hasNewPets) {
+			// a new pet may have been given its id by the persistence provider since
+			index = rebuildPetIndex();
+			pet = index.byId.get(id);
 		}
-		return null;
+		return pet;
 	}
 
 	/**
@@ -130,16 +205,129 @@ public class Owner extends Person {
 	 * @return a pet if pet name is already in use
 	 */
 	public Pet getPet(String name, boolean ignoreNew) {
-		name = name.toLowerCase();
-		for (Pet pet : getPets()) {
-			String compName = pet.getName();
-			if (compName != null && compName.equalsIgnoreCase(name)) {
-				if (!ignoreNew || !pet.isNew()) {
-					return pet;
+		Pet pet = petIndex().byName.get(PetIndex.fold(name));
+		if (pet != null && ignoreNew && pet.isNew()) {
+			// a new pet shadows a persisted one of the same name
+			for (Pet candidate : getPets()) {
+				if (!candidate.isNew() && name.equalsIgnoreCase(candidate.getName())) {
+					return candidate;
 				}
 			}
+			return null;
+		}
+		return pet;
+	}
+
+	/**
+	 * Strip the separators people type into telephone numbers, as in (608) 555-1023, so
+	 * that numbers are stored and looked up alike.
+	 */
+	private static String normalizeTelephone(String telephone) {
+		if (telephone == null) {
+			return null;
+		}
+		StringBuilder normalized = new StringBuilder(telephone.length());
+		for (int i = 0; i < telephone.length(); i++) {
+			char c = telephone.charAt(i);
+			if (" ().-".indexOf(c) < 0) {
+				normalized.append(c);
+			}
+		}
+		return normalized.toString();
+	}
+
+	/**
+	 * Return the name the owner was loaded or last saved with.
+	 * @return the name, or {@code null} if the owner was neither loaded nor saved
+	 */
+	OwnerName getLoadedName() {
+		return (this.loaded != null) ? new OwnerName(getId(), this.loaded.firstName(), this.loaded.lastName()) : null;
+	}
+
+	/**
+	 * Remember the current details as the ones in the data store, once loaded or saved.
+	 */
+	void markLoaded() {
+		this.loaded = new Details(this);
+	}
+
+	/**
+	 * Return whether the owner is being imported, see {@link #markImported()}.
+	 * @return whether the owner is being imported
+	 */
+	boolean isImported() {
+		return this.imported;
+	}
+
+	/**
+	 * Mark the owner as being imported by the {@link OwnerImporter}, which updates the
+	 * indexes once per chunk rather than once per owner saved.
+	 */
+	void markImported() {
+		this.imported = true;
+	}
+
+	/**
+	 * Take the version and loaded details of the given, current state of this owner, so
+	 * that the details of this owner are written over it.
+	 * @param current the owner as currently stored
+	 */
+	void rebase(Owner current) {
+		this.version = current.version;
+		this.loaded = current.loaded;
+	}
+
+	/**
+	 * Return the details changed since the owner was loaded, all of them if it was not.
+	 * @return the new values by attribute name
+	 */
+	Map<String, Object> changedDetails() {
+		return new Details(this).changedFrom(this.loaded);
+	}
+
+	/**
+	 * Return the events to publish once this owner was saved by the repository, when it
+	 * has its id.
+	 */
+	@DomainEvents
+	Collection<OwnerSaved> savedEvents() {
+		return this.imported ? List.of() : List.of(saved());
+	}
+
+	/**
+	 * Describe this owner as saved, when it has its id.
+	 */
+	OwnerSaved saved() {
+		Set<Integer> petTypeIds = new HashSet<>();
+		for (Pet pet : getPets()) {
+			if (pet.getType() != null) {
+				// the id of a lazily loaded type is known without initializing it
+				petTypeIds.add(pet.getType().getId());
+			}
+		}
+		return new OwnerSaved(getId(), this.city, Set.copyOf(petTypeIds));
+	}
+
+	/**
+	 * Drop the pet index, to be called by a pet of this owner whose id or name changes.
+	 */
+	void invalidatePetIndex() {
+		this.petIndex = null;
+	}
+
+	private PetIndex petIndex() {
+		PetIndex index = this.petIndex;
+		// the persistence provider writes the list of pets directly
+		if (index == null || index.size != this.pets.size()) {
+			index = rebuildPetIndex();
 		}
-		return null;
+		return index;
+	}
+
+	private PetIndex rebuildPetIndex() {
+		PetIndex index = new PetIndex(this.pets, this);
+		this.petIndex = index;
+		return index;
 	}
 
 	@Override
@@ -171,4 +359,116 @@ public class Owner extends Person {
 		pet.addVisit(visit);
 	}
 
+	/**
+	 * The columns of an owner an edit may change.
+	 */
+	private record Details(String firstName, String lastName, String address, String city,
+			String telephone) implements Serializable {
+
+		Details(Owner owner) {
+			this(owner.getFirstName(), owner.getLastName(), owner.address, owner.city, owner.telephone);
+		}
+
+		Map<String, Object> changedFrom(Details previous) {
+			Map<String, Object> changes = toMap();
+			if (previous != null) {
+				Map<String, Object> loaded = previous.toMap();
+				changes.entrySet().removeIf((change) -> Objects.equals(change.getValue(), loaded.get(change.getKey())));
+			}
+			return changes;
+		}
+
+		private Map<String, Object> toMap() {
+			Map<String, Object> values = new LinkedHashMap<>();
+			values.put("firstName", this.firstName);
+			values.put("lastName", this.lastName);
+			values.put("address", this.address);
+			values.put("city", this.city);
+			values.put("telephone", this.telephone);
+			return values;
+		}
+
+	}
+
+	/**
+	 * View of the pets of this owner, dropping the pet index whenever modified.
+	 */
+	private final class PetList extends AbstractList<Pet> implements RandomAccess {
+
+		@Override
+		public Pet get(int index) {
+			return Owner.this.pets.get(index);
+		}
+
+		@Override
+		public int size() {
+			return Owner.this.pets.size();
+		}
+
+		@Override
+		public Pet set(int index, Pet pet) {
+			Owner.this.petIndex = null;
+			return Owner.this.pets.set(index, pet);
+		}
+
+		@Override
+		public void add(int index, Pet pet) {
+			Owner.this.petIndex = null;
+			Owner.this.pets.add(index, pet);
+		}
+
+		@Override
+		public Pet remove(int index) {
+			Owner.this.petIndex = null;
+			return Owner.this.pets.remove(index);
+		}
+
+	}
+
+	/**
+	 * Pets by id and by case-folded name. The first pet of a name wins, as in the order
+	 * of {@link #getPets()}.
+	 */
+	private static final class PetIndex {
+
+		private final Map<Integer, Pet> byId;
+
+		private final Map<String, Pet> byName;
+
+		private final int size;
+
+		private final boolean hasNewPets;
+
+		PetIndex(List<Pet> pets, Owner owner) {
+			this.byId = new HashMap<>(pets.size() * 2);
+			this.byName = new HashMap<>(pets.size() * 2);
+			boolean hasNewPets = false;
+			for (Pet pet : pets) {
+				pet.setIndexedBy(owner);
+				if (pet.isNew()) {
+					hasNewPets = true;
+				}
+				else {
+					this.byId.putIfAbsent(pet.getId(), pet);
+				}
+				if (pet.getName() != null) {
+					this.byName.putIfAbsent(fold(pet.getName()), pet);
+				}
+			}
+			this.size = pets.size();
+			this.hasNewPets = hasNewPets;
+		}
+
+		/**
+		 * Fold the given name so that two names fold alike exactly if they are equal
+		 * ignoring case, as {@link String#equalsIgnoreCase(String)} compares characters.
+		 */
+		static String fold(String name) {
+			StringBuilder folded = new StringBuilder(name.length());
+			name.codePoints().forEach((c) -> folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c))));
+			return folded.toString();
+		}
+
+	}
+
 }
@@ -15,14 +15,28 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import org.springframework.data.domain.Page;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Window;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -31,6 +45,7 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.ModelAndView;
 
 import jakarta.validation.Valid;
@@ -47,10 +62,48 @@ class OwnerController {
 
 	private static final String VIEWS_OWNER_CREATE_OR_UPDATE_FORM = "owners/createOrUpdateOwnerForm";
 
+	private static final int PAGE_SIZE = 5;
+
+	/**
+	 * Number of page links rendered on either side of the current page.
+	 */
+	private static final int PAGE_WINDOW = 2;
+
+	/**
+	 * Number of most recent visits shown per pet on the owner details page.
+	 */
+	private static final int RECENT_VISITS = 5;
+
+	/**
+	 * Number of owners suggested for a last name at most.
+	 */
+	private static final int MAX_COMPLETIONS = 50;
+
+	/**
+	 * Number of owners with a similar last name suggested when none was found.
+	 */
+	private static final int SIMILAR_OWNERS = 10;
+
 	private final OwnerRepository owners;
 
-	public OwnerController(OwnerRepository clinicService) {
+	private final VisitRepository visits;
+
+	private final OwnerLoader loader;
+
+	private final OwnerSearch search;
+
+	private final OwnerNameIndex names;
+
+	private final OwnerFacetIndex facets;
+
+	public OwnerController(OwnerRepository clinicService, VisitRepository visits, OwnerLoader loader,
+			OwnerSearch search, OwnerNameIndex names, OwnerFacetIndex facets) {
 		this.owners = clinicService;
+		this.visits = visits;
+		this.loader = loader;
+		this.search = search;
+		this.names = names;
+		this.facets = facets;
 	}
 
 	@InitBinder
@@ -60,7 +113,7 @@ class OwnerController {
 
 	@ModelAttribute("owner")
 	public Owner findOwner(@PathVariable(name = "ownerId", required = false) Integer ownerId) {
-		return ownerId == null ? new Owner() : this.owners.findById(ownerId);
+		return ownerId == null ? new Owner() : this.loader.findWithPets(ownerId);
 	}
 
 	@GetMapping("/owners/new")
@@ -88,50 +141,215 @@ class OwnerController {
 	}
 
 	@GetMapping("/owners")
-	public String processFindForm(@RequestParam(defaultValue = "1") int page, Owner owner, BindingResult result,
-			Model model) {
+	public String processFindForm(@RequestParam(defaultValue = "1") int page,
+			@RequestParam(required = false) String cursor, @RequestParam(defaultValue = "false") boolean fuzzy,
+			@RequestParam(required = false) String city, @RequestParam(required = false) String petType,
+			@RequestParam(required = false) String petName, Owner owner, BindingResult result, Model model) {
 		// allow parameterless GET request for /owners to return all records
 		if (owner.getLastName() == null) {
 			owner.setLastName(""); // empty string signifies broadest possible search
 		}
 
-		// find owners by last name
-		Page<Owner> ownersResults = findPaginatedForOwnersLastName(page, owner.getLastName());
+		page = Math.max(page, 1);
+		String telephone = StringUtils.hasText(owner.getTelephone()) ? owner.getTelephone() : null;
+		petName = (telephone == null && StringUtils.hasText(petName)) ? petName : null;
+		city = StringUtils.hasText(city) ? city : null;
+		petType = StringUtils.hasText(petType) ? petType : null;
+		boolean byLastName = telephone == null && petName == null;
+		if (byLastName && (city != null || petType != null)) {
+			return processFilteredFindForm(page, owner.getLastName(), city, petType, result, model);
+		}
+
+		// find owners by telephone, by pet name or by last name
+		Lookup lookup = lookup(page, owner.getLastName(), telephone, petName);
+		OwnerCursor position = lookup.scrolls() ? OwnerCursor.decode(cursor) : null;
+		if (position != null && position.getSkippedPages() > PAGE_WINDOW) {
+			// not a jump the page links offer
+			position = null;
+		}
+		Long total = null;
+		if (position != null && !position.isAnchored()) {
+			// the last page holds the owners left over by the full pages before it
+			total = lookup.count().getAsLong();
+			page = (int) Math.max((total + PAGE_SIZE - 1) / PAGE_SIZE, 1);
+		}
+		Window<OwnerSummary> ownersResults = findPaginatedForOwners(page, position, total, lookup);
 		if (ownersResults.isEmpty()) {
 			// no owners found
-			result.rejectValue("lastName", "notFound", "not found");
+			if (petName != null) {
+				result.reject("notFound", "not found");
+			}
+			else {
+				result.rejectValue(byLastName ? "lastName" : "telephone", "notFound", "not found");
+			}
+			if (fuzzy && byLastName) {
+				// suggest owners whose name may have been meant, ranked from memory
+				model.addAttribute("similarOwners", this.names.match(owner.getLastName(), SIMILAR_OWNERS));
+			}
 			return "owners/findOwners";
 		}
 
-		if (ownersResults.getTotalElements() == 1) {
+		boolean hasNext = ownersResults.hasNext();
+		if (position != null && !position.isForward()) {
+			// scrolled backward: the window has a successor unless it is the last one,
+			// and it is the first page once nothing precedes it
+			hasNext = position.isAnchored();
+			page = ownersResults.hasNext() ? Math.max(page, 2) : 1;
+		}
+		if (page == 1 && !hasNext && ownersResults.size() == 1) {
 			// 1 owner found
-			owner = ownersResults.iterator().next();
-			return "redirect:/owners/" + owner.getId();
+			return "redirect:/owners/" + ownersResults.getContent().get(0).id();
 		}
 
 		// multiple owners found
-		return addPaginationModel(page, model, ownersResults);
+		if (total == null) {
+			total = page == 1 && !hasNext ? ownersResults.size() : lookup.count().getAsLong();
+		}
+		if (byLastName) {
+			addFacetModel(this.search.facets(owner.getLastName()), null, null, model);
+		}
+		model.addAttribute("telephone", telephone);
+		model.addAttribute("petName", petName);
+		return addPaginationModel(page, hasNext, total, owner.getLastName(), model, ownersResults.getContent());
+	}
+
+	/**
+	 * Find the owners in a city or with a type of pet, paging through them in memory and
+	 * fetching the summaries of the current page only.
+	 */
+	private String processFilteredFindForm(int page, String lastName, String city, String petType, BindingResult result,
+			Model model) {
+		OwnerFacetIndex.Selection selection = this.facets.select(lastName, city, petType);
+		List<Integer> ids = this.names.complete(lastName, (page - 1) * PAGE_SIZE, PAGE_SIZE, selection.owners())
+			.stream()
+			.map(OwnerName::id)
+			.toList();
+		Map<Integer, OwnerSummary> summaries = ids.isEmpty() ? Map.of()
+				: this.owners.findSummariesByIdIn(ids)
+					.stream()
+					.collect(Collectors.toMap(OwnerSummary::id, Function.identity()));
+		List<OwnerSummary> listOwners = ids.stream().map(summaries::get).filter(Objects::nonNull).toList();
+		if (listOwners.isEmpty()) {
+			result.rejectValue("lastName", "notFound", "not found");
+			return "owners/findOwners";
+		}
+		int total = selection.owners().cardinality();
+		if (total == 1) {
+			return "redirect:/owners/" + listOwners.get(0).id();
+		}
+		addFacetModel(selection, city, petType, model);
+		return addPaginationModel(page, (long) page * PAGE_SIZE < total, total, lastName, model, listOwners);
 	}
 
-	private String addPaginationModel(int page, Model model, Page<Owner> paginated) {
-		List<Owner> listOwners = paginated.getContent();
+	private void addFacetModel(OwnerFacetIndex.Selection selection, String city, String petType, Model model) {
+		model.addAttribute("city", city);
+		model.addAttribute("petType", petType);
+		model.addAttribute("cities", selection.cities());
+		model.addAttribute("petTypes", selection.petTypes());
+	}
+
+	@GetMapping(path = "/owners/autocomplete", produces = MediaType.APPLICATION_JSON_VALUE)
+	@ResponseBody
+	public List<OwnerName> completeLastName(@RequestParam(defaultValue = "") String lastName,
+			@RequestParam(defaultValue = "10") int limit, @RequestParam(defaultValue = "false") boolean fuzzy) {
+		// answered from memory, without querying the database
+		limit = Math.min(Math.max(limit, 1), MAX_COMPLETIONS);
+		return fuzzy ? this.names.match(lastName, limit) : this.names.complete(lastName, limit);
+	}
+
+	private String addPaginationModel(int page, boolean hasNext, long total, String lastName, Model model,
+			List<OwnerSummary> listOwners) {
+		OwnerSummary first = listOwners.get(0);
+		OwnerSummary last = listOwners.get(listOwners.size() - 1);
+		OwnerCursor previous = OwnerCursor.before(first.lastName(), first.id());
+		OwnerCursor next = OwnerCursor.after(last.lastName(), last.id());
+		int totalPages = hasNext ? Math.max((int) ((total + PAGE_SIZE - 1) / PAGE_SIZE), page + 1) : page;
+		List<Integer> pageWindow = IntStream
+			.rangeClosed(Math.max(1, page - PAGE_WINDOW), Math.min(totalPages, page + PAGE_WINDOW))
+			.boxed()
+			.toList();
+		// the pages around the current one are reached from it, skipping the pages
+		// between
+		Map<Integer, String> pageCursors = new HashMap<>();
+		for (int i : pageWindow) {
+			if (i < page) {
+				pageCursors.put(i, previous.skipping(page - i - 1).encode());
+			}
+			else if (i > page) {
+				pageCursors.put(i, next.skipping(i - page - 1).encode());
+			}
+		}
 		model.addAttribute("currentPage", page);
-		model.addAttribute("totalPages", paginated.getTotalPages());
-		model.addAttribute("totalItems", paginated.getTotalElements());
+		model.addAttribute("totalPages", totalPages);
+		model.addAttribute("totalItems", total);
+		model.addAttribute("pageWindow", pageWindow);
+		model.addAttribute("pageCursors", pageCursors);
+		model.addAttribute("lastName", lastName);
+		model.addAttribute("previousCursor", previous.encode());
+		model.addAttribute("nextCursor", next.encode());
+		model.addAttribute("lastCursor", OwnerCursor.last().encode());
 		model.addAttribute("listOwners", listOwners);
+		model.addAttribute("petNames", findPetNames(listOwners));
 		return "owners/ownersList";
 	}
 
-	private Page<Owner> findPaginatedForOwnersLastName(int page, String lastname) {
-		int pageSize = 5;
-		Pageable pageable = PageRequest.of(page - 1, pageSize);
-		return owners.findByLastName(lastname, pageable);
+	private Map<Integer, String> findPetNames(List<OwnerSummary> listOwners) {
+		List<Integer> ownerIds = listOwners.stream().map(OwnerSummary::id).toList();
+		return this.owners.findPetNamesByOwnerIds(ownerIds)
+			.stream()
+			.collect(Collectors.toMap(OwnerPetNames::getOwnerId, OwnerPetNames::getPetNames));
+	}
+
+	/**
+	 * Look owners up by telephone if given, else by the start of a pet name if given,
+	 * else by the start of the last name. Each of these is answered through an index.
+	 * Owners found by pet name are few, they are paged by offset rather than scrolled.
+	 */
+	private Lookup lookup(int page, String lastName, String telephone, String petName) {
+		if (telephone != null) {
+			return new Lookup((position, limit) -> this.owners.findSummariesByTelephone(telephone, position, limit,
+					OwnerCursor.SORT), () -> this.owners.countByTelephone(telephone), true);
+		}
+		if (petName != null) {
+			return new Lookup((position, limit) -> {
+				Slice<OwnerSummary> slice = this.owners.findSummariesByPetName(petName,
+						PageRequest.of(page - 1, PAGE_SIZE, OwnerCursor.SORT));
+				return Window.from(slice.getContent(),
+						(index) -> ScrollPosition.offset(slice.getPageable().getOffset() + index), slice.hasNext());
+			}, () -> this.owners.countByPetName(petName), false);
+		}
+		return new Lookup((position, limit) -> this.search.findSummaries(lastName, position, limit),
+				() -> this.search.count(lastName), true);
+	}
+
+	private Window<OwnerSummary> findPaginatedForOwners(int page, OwnerCursor cursor, Long total, Lookup lookup) {
+		if (cursor == null) {
+			// the first page, or a bookmarked page
+			ScrollPosition position = (page > 1) ? ScrollPosition.offset((long) (page - 1) * PAGE_SIZE - 1)
+					: ScrollPosition.keyset();
+			return lookup.find().apply(position, Limit.of(PAGE_SIZE));
+		}
+		if (!cursor.isAnchored()) {
+			// the last page, which is only full if the owners fill every page
+			int size = (int) ((total + PAGE_SIZE - 1) % PAGE_SIZE) + 1;
+			return lookup.find().apply(cursor.toScrollPosition(), Limit.of(size));
+		}
+		int skipped = cursor.getSkippedPages() * PAGE_SIZE;
+		Window<OwnerSummary> window = lookup.find().apply(cursor.toScrollPosition(), Limit.of(skipped + PAGE_SIZE));
+		if (skipped == 0) {
+			return window;
+		}
+		// a window lists its owners in search order in either direction, so the skipped
+		// owners come first when scrolling forward and last when scrolling backward
+		List<OwnerSummary> owners = window.getContent();
+		int from = cursor.isForward() ? Math.min(skipped, owners.size()) : 0;
+		int to = cursor.isForward() ? owners.size() : Math.min(PAGE_SIZE, owners.size());
+		return Window.from(owners.subList(from, to), (index) -> window.positionAt(from + index), window.hasNext());
 	}
 
+	// Spring MVC calls method findOwner(...) before initUpdateOwnerForm is called
 	@GetMapping("/owners/{ownerId}/edit")
-	public String initUpdateOwnerForm(@PathVariable("ownerId") int ownerId, Model model) {
-		Owner owner = this.owners.findById(ownerId);
-		model.addAttribute(owner);
+	public String initUpdateOwnerForm() {
 		return VIEWS_OWNER_CREATE_OR_UPDATE_FORM;
 	}
 
@@ -144,7 +362,19 @@ class OwnerController {
 		}
 
 		owner.setId(ownerId);
-		this.owners.save(owner);
+		try {
+			this.owners.updateDetails(owner);
+		}
+		catch (OptimisticLockingFailureException ex) {
+			// keep the values entered, submitting them again writes them over the change
+			Owner current = this.owners.findWithPetsById(ownerId);
+			if (current == null) {
+				throw new IllegalArgumentException("Owner ID not found: " + ownerId);
+			}
+			owner.rebase(current);
+			result.reject("conflict", "Changed by someone else meanwhile");
+			return VIEWS_OWNER_CREATE_OR_UPDATE_FORM;
+		}
 		redirectAttributes.addFlashAttribute("message", "Owner Values Updated");
 		return "redirect:/owners/{ownerId}";
 	}
@@ -157,9 +387,44 @@ class OwnerController {
 	@GetMapping("/owners/{ownerId}")
 	public ModelAndView showOwner(@PathVariable("ownerId") int ownerId) {
 		ModelAndView mav = new ModelAndView("owners/ownerDetails");
-		Owner owner = this.owners.findById(ownerId);
+		Owner owner = this.loader.findWithPets(ownerId);
+		if (owner == null) {
+			throw new IllegalArgumentException("Owner ID not found: " + ownerId);
+		}
 		mav.addObject(owner);
+		mav.addObject("recentVisits", findRecentVisits(owner));
 		return mav;
 	}
 
+	/**
+	 * Look up the most recent visits of all pets of the given owner with a single query,
+	 * fetching one visit more than shown per pet to tell whether there are older ones.
+	 */
+	private Map<Integer, Slice<Visit>> findRecentVisits(Owner owner) {
+		List<Integer> petIds = owner.getPets().stream().map(Pet::getId).toList();
+		if (petIds.isEmpty()) {
+			return Map.of();
+		}
+		Map<Integer, List<Visit>> visitsByPet = new HashMap<>();
+		for (PetVisit petVisit : this.visits.findRecentByPetIds(petIds, RECENT_VISITS + 1)) {
+			visitsByPet.computeIfAbsent(petVisit.petId(), petId -> new ArrayList<>()).add(petVisit.visit());
+		}
+		Map<Integer, Slice<Visit>> recentVisits = new HashMap<>();
+		visitsByPet.forEach((petId, petVisits) -> {
+			boolean hasOlder = petVisits.size() > RECENT_VISITS;
+			recentVisits.put(petId, new SliceImpl<>(hasOlder ? petVisits.subList(0, RECENT_VISITS) : petVisits,
+					PageRequest.of(0, RECENT_VISITS), hasOlder));
+		});
+		return recentVisits;
+	}
+
+	/**
+	 * How to find a window of at most a number of the owners looked up from a position,
+	 * how to count them, and whether scrolling follows cursors.
+	 */
+	private record Lookup(BiFunction<ScrollPosition, Limit, Window<OwnerSummary>> find, LongSupplier count,
+			boolean scrolls) {
+
+	}
+
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.StringUtils;
+
+/**
+ * Opaque position within an owner search, which is ordered by last name and id. A cursor
+ * remembers the keys of the owner it is anchored to and whether the window to fetch lies
+ * after or before that owner, and how many pages of the search to skip in that direction,
+ * for jumps over several pages. A cursor without keys starts at the beginning or, when
+ * scrolling backward, at the end of the result.
+ */
+final class OwnerCursor {
+
+	/**
+	 * Ordering of every owner search window; the trailing id keeps the keyset unique.
+	 */
+	static final Sort SORT = Sort.by("lastName", "id");
+
+	private static final char FORWARD = 'F';
+
+	private static final char BACKWARD = 'B';
+
+	private final boolean forward;
+
+	private final String lastName;
+
+	private final Integer id;
+
+	private final int skippedPages;
+
+	private OwnerCursor(boolean forward, String lastName, Integer id, int skippedPages) {
+		this.forward = forward;
+		this.lastName = lastName;
+		this.id = id;
+		this.skippedPages = skippedPages;
+	}
+
+	/**
+	 * Cursor for the window following the given owner.
+	 */
+	static OwnerCursor after(String lastName, Integer id) {
+		return new OwnerCursor(true, lastName, id, 0);
+	}
+
+	/**
+	 * Cursor for the window preceding the given owner.
+	 */
+	static OwnerCursor before(String lastName, Integer id) {
+		return new OwnerCursor(false, lastName, id, 0);
+	}
+
+	/**
+	 * Cursor for the last window of the result.
+	 */
+	static OwnerCursor last() {
+		return new OwnerCursor(false, null, null, 0);
+	}
+
+	/**
+	 * Cursor for the window that many pages further in the same direction, skipping the
+	 * pages in between. Only cursors anchored to an owner skip pages.
+	 */
+	OwnerCursor skipping(int pages) {
+		return new OwnerCursor(this.forward, this.lastName, this.id, isAnchored() ? pages : 0);
+	}
+
+	boolean isForward() {
+		return this.forward;
+	}
+
+	/**
+	 * Whether this cursor is anchored to an owner rather than to either end of the
+	 * result.
+	 */
+	boolean isAnchored() {
+		return this.id != null;
+	}
+
+	/**
+	 * How many pages to skip from the anchor before the window starts.
+	 */
+	int getSkippedPages() {
+		return this.skippedPages;
+	}
+
+	ScrollPosition toScrollPosition() {
+		Map<String, Object> keys = new LinkedHashMap<>();
+		if (this.id != null) {
+			keys.put("lastName", this.lastName);
+			keys.put("id", this.id);
+		}
+		return this.forward ? ScrollPosition.forward(keys) : ScrollPosition.backward(keys);
+	}
+
+	String encode() {
+		StringBuilder token = new StringBuilder().append(this.forward ? FORWARD : BACKWARD);
+		if (this.id != null) {
+			if (this.skippedPages > 0) {
+				token.append(this.skippedPages).append('/');
+			}
+			token.append(this.id).append(':').append(this.lastName);
+		}
+		return Base64.getUrlEncoder()
+			.withoutPadding()
+			.encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decode a cursor previously produced by {@link #encode()}.
+	 * @param token the encoded cursor, may be {@literal null}
+	 * @return the cursor, or {@literal null} if the token is empty or malformed
+	 */
+	static OwnerCursor decode(String token) {
+		if (!StringUtils.hasText(token)) {
+			return null;
+		}
+		try {
+			String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			char direction = value.charAt(0);
+			if (direction != FORWARD && direction != BACKWARD) {
+				return null;
+			}
+			boolean forward = direction == FORWARD;
+			if (value.length() == 1) {
+				return forward ? null : last();
+			}
+			int separator = value.indexOf(':');
+			int skip = value.lastIndexOf('/', separator);
+			int skippedPages = (skip < 0) ? 0 : Integer.parseInt(value.substring(1, skip));
+			Integer id = Integer.valueOf(value.substring((skip < 0) ? 1 : skip + 1, separator));
+			if (skippedPages < 0) {
+				return null;
+			}
+			return new OwnerCursor(forward, value.substring(separator + 1), id, skippedPages);
+		}
+		catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+			return null;
+		}
+	}
+
+}
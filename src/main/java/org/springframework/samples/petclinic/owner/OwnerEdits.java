@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Edits of the details of an {@link Owner} or of one of its {@link Pet}s that update the
+ * changed columns of the edited row with a single statement, rather than loading the
+ * owner aggregate anew and merging the edited one into it. The statement is
+ * <code>UPDATE ... WHERE id = ? AND version = ?</code>, so an edit based on a version
+ * that was changed meanwhile fails instead of overwriting the other change.
+ * <p>
+ * The cached owner is evicted before and after the edit, so that a conflict is not
+ * repeated from a stale copy. The searches and indexes of owners follow edits as they
+ * follow saves.
+ */
+public interface OwnerEdits {
+
+	/**
+	 * Write the changed details of an {@link Owner}, and increment its version.
+	 * @param owner the edited owner, as loaded and with the version the edit is based on
+	 * @throws OptimisticLockingFailureException if the owner's version changed meanwhile
+	 */
+	@Caching(evict = { @CacheEvict(cacheNames = "owners", key = "#owner.id", beforeInvocation = true),
+			@CacheEvict(cacheNames = "owners", key = "#owner.id") })
+	@Transactional
+	void updateDetails(Owner owner);
+
+	/**
+	 * Write the changed details of a {@link Pet}, and increment its version.
+	 * @param owner the owner of the pet
+	 * @param pet the edited pet, as loaded and with the version the edit is based on
+	 * @throws OptimisticLockingFailureException if the pet's version changed meanwhile
+	 */
+	@Caching(evict = { @CacheEvict(cacheNames = "owners", key = "#owner.id", beforeInvocation = true),
+			@CacheEvict(cacheNames = "owners", key = "#owner.id") })
+	@Transactional
+	void updatePet(Owner owner, Pet pet);
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Implementation of {@link OwnerEdits} with criteria updates, which the persistence
+ * provider executes without loading the updated entities. As no entity lifecycle
+ * callbacks fire, the searches are invalidated and {@link OwnerSaved} is published here.
+ */
+class OwnerEditsImpl implements OwnerEdits {
+
+	private final EntityManager entityManager;
+
+	private final ApplicationEventPublisher events;
+
+	private final OwnerSearchListener searchListener;
+
+	OwnerEditsImpl(EntityManager entityManager, ApplicationEventPublisher events, ObjectProvider<OwnerSearch> search,
+			ObjectProvider<OwnerNameIndex> names) {
+		this.entityManager = entityManager;
+		this.events = events;
+		this.searchListener = new OwnerSearchListener(search, names);
+	}
+
+	@Override
+	public void updateDetails(Owner owner) {
+		if (update(Owner.class, owner.getId(), owner.getVersion(), owner.changedDetails())) {
+			owner.setVersion(owner.getVersion() + 1);
+			this.searchListener.saved(owner);
+			owner.savedEvents().forEach(this.events::publishEvent);
+		}
+	}
+
+	@Override
+	public void updatePet(Owner owner, Pet pet) {
+		if (update(Pet.class, pet.getId(), pet.getVersion(), pet.changedDetails())) {
+			pet.setVersion(pet.getVersion() + 1);
+			pet.markLoaded();
+			owner.savedEvents().forEach(this.events::publishEvent);
+		}
+	}
+
+	/**
+	 * Update the given attributes of an entity and increment its version, unless nothing
+	 * changed.
+	 * @return whether the entity was updated
+	 * @throws ObjectOptimisticLockingFailureException if there is no entity with the
+	 * given id and version
+	 */
+	private <T> boolean update(Class<T> type, Integer id, Integer version, Map<String, Object> changes) {
+		if (changes.isEmpty()) {
+			return false;
+		}
+		CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
+		CriteriaUpdate<T> update = builder.createCriteriaUpdate(type);
+		Root<T> root = update.from(type);
+		changes.forEach(update::set);
+		update.set(root.<Integer>get("version"), builder.sum(root.<Integer>get("version"), 1));
+		update.where(builder.equal(root.get("id"), id), builder.equal(root.get("version"), version));
+		if (this.entityManager.createQuery(update).executeUpdate() == 0) {
+			throw new ObjectOptimisticLockingFailureException(type, id);
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Exports all owners to the response as they are read, as {@code /owners/export.csv} or
+ * {@code /owners/export.ndjson}, see {@link OwnerExporter}. The export runs on an async
+ * request thread, so it holds no servlet thread meanwhile.
+ */
+@Controller
+class OwnerExportController {
+
+	private final OwnerExporter exporter;
+
+	public OwnerExportController(OwnerExporter exporter) {
+		this.exporter = exporter;
+	}
+
+	@GetMapping("/owners/export.{extension:csv|ndjson}")
+	public ResponseEntity<StreamingResponseBody> export(@PathVariable("extension") String extension) {
+		String fileName = "owners." + extension;
+		OwnerFileFormat format = OwnerFileFormat.of(fileName);
+		ContentDisposition disposition = ContentDisposition.attachment().filename(fileName).build();
+		return ResponseEntity.ok()
+			.contentType(MediaType.parseMediaType(format.getMediaType()))
+			.header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+			.body((out) -> this.exporter.export(format, out));
+	}
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+
+/**
+ * An {@link Owner} as exported, once per visit of each of its pets, once per pet without
+ * visits and once if it has no pets.
+ *
+ * @param ownerId the owner id
+ * @param firstName the owner's first name
+ * @param lastName the owner's last name
+ * @param address the owner's address
+ * @param city the owner's city
+ * @param telephone the owner's telephone
+ * @param petId the id of a pet of the owner, or {@code null} for an owner without pets
+ * @param petName the pet's name
+ * @param birthDate the pet's birth date
+ * @param petType the name of the pet's type
+ * @param visitId the id of a visit of the pet, or {@code null} for a pet without visits
+ * @param visitDate the date of the visit
+ * @param description the description of the visit
+ */
+record OwnerExportRow(Integer ownerId, String firstName, String lastName, String address, String city, String telephone,
+		Integer petId, String petName, LocalDate birthDate, String petType, Integer visitId, LocalDate visitDate,
+		String description) {
+}
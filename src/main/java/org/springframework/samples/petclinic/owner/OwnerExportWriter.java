@@ -0,0 +1,241 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes the {@link OwnerExportRow rows} of owners, ordered by owner and pet, as an
+ * import file read by {@link OwnerImportReader}. A row is written as soon as it is read,
+ * so no more than the current owner and pet ids are held.
+ */
+abstract class OwnerExportWriter {
+
+	private Integer ownerId;
+
+	private Integer petId;
+
+	private int owners;
+
+	/**
+	 * Open a writer of the given format.
+	 * @param format the format to write
+	 * @param out the stream to write to as UTF-8, which is flushed but not closed
+	 * @param objectMapper the mapper to write NDJSON with
+	 * @return the writer
+	 */
+	static OwnerExportWriter open(OwnerFileFormat format, OutputStream out, ObjectMapper objectMapper)
+			throws IOException {
+		return switch (format) {
+			case CSV -> new Csv(out);
+			case NDJSON -> new Ndjson(out, objectMapper);
+		};
+	}
+
+	/**
+	 * Write the given row, starting a new owner or pet when its ids change.
+	 */
+	final void write(OwnerExportRow row) throws IOException {
+		if (!row.ownerId().equals(this.ownerId)) {
+			endOwner();
+			startOwner(row);
+			this.ownerId = row.ownerId();
+			this.owners++;
+		}
+		if (row.petId() != null && !row.petId().equals(this.petId)) {
+			endPet();
+			startPet(row);
+			this.petId = row.petId();
+		}
+		if (row.visitId() != null) {
+			visit(row);
+		}
+	}
+
+	/**
+	 * End the last owner and flush.
+	 */
+	final void finish() throws IOException {
+		endOwner();
+		flush();
+	}
+
+	/**
+	 * Return the number of owners written.
+	 */
+	int getOwners() {
+		return this.owners;
+	}
+
+	private void endOwner() throws IOException {
+		endPet();
+		if (this.ownerId != null) {
+			ownerEnded();
+			this.ownerId = null;
+		}
+	}
+
+	private void endPet() throws IOException {
+		if (this.petId != null) {
+			petEnded();
+			this.petId = null;
+		}
+	}
+
+	abstract void startOwner(OwnerExportRow row) throws IOException;
+
+	abstract void startPet(OwnerExportRow row) throws IOException;
+
+	abstract void visit(OwnerExportRow row) throws IOException;
+
+	void petEnded() throws IOException {
+	}
+
+	void ownerEnded() throws IOException {
+	}
+
+	abstract void flush() throws IOException;
+
+	/**
+	 * Writes a row per owner, pet and visit, quoting fields as of RFC 4180 where needed.
+	 */
+	private static final class Csv extends OwnerExportWriter {
+
+		private final Writer out;
+
+		Csv(OutputStream out) {
+			this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		}
+
+		@Override
+		void startOwner(OwnerExportRow row) throws IOException {
+			row("owner", row.firstName(), row.lastName(), row.address(), row.city(), row.telephone());
+		}
+
+		@Override
+		void startPet(OwnerExportRow row) throws IOException {
+			row("pet", row.petName(), row.birthDate(), row.petType());
+		}
+
+		@Override
+		void visit(OwnerExportRow row) throws IOException {
+			row("visit", row.visitDate(), row.description());
+		}
+
+		private void row(String kind, Object... fields) throws IOException {
+			this.out.write(kind);
+			for (Object field : fields) {
+				this.out.write(',');
+				String value = Objects.toString(field, "");
+				if (value.chars().anyMatch((c) -> c == ',' || c == '"' || c == '\r' || c == '\n')) {
+					this.out.write('"');
+					this.out.write(value.replace("\"", "\"\""));
+					this.out.write('"');
+				}
+				else {
+					this.out.write(value);
+				}
+			}
+			this.out.write('\n');
+		}
+
+		@Override
+		void flush() throws IOException {
+			this.out.flush();
+		}
+
+	}
+
+	/**
+	 * Writes an object per owner and line, with its pets and their visits nested.
+	 */
+	private static final class Ndjson extends OwnerExportWriter {
+
+		private final JsonGenerator json;
+
+		Ndjson(OutputStream out, ObjectMapper objectMapper) throws IOException {
+			this.json = objectMapper.getFactory().createGenerator(out);
+			this.json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			this.json.setRootValueSeparator(null);
+		}
+
+		@Override
+		void startOwner(OwnerExportRow row) throws IOException {
+			this.json.writeStartObject();
+			field("firstName", row.firstName());
+			field("lastName", row.lastName());
+			field("address", row.address());
+			field("city", row.city());
+			field("telephone", row.telephone());
+			this.json.writeArrayFieldStart("pets");
+		}
+
+		@Override
+		void startPet(OwnerExportRow row) throws IOException {
+			this.json.writeStartObject();
+			field("name", row.petName());
+			field("birthDate", row.birthDate());
+			field("type", row.petType());
+			this.json.writeArrayFieldStart("visits");
+		}
+
+		@Override
+		void visit(OwnerExportRow row) throws IOException {
+			this.json.writeStartObject();
+			field("date", row.visitDate());
+			field("description", row.description());
+			this.json.writeEndObject();
+		}
+
+		@Override
+		void petEnded() throws IOException {
+			this.json.writeEndArray();
+			this.json.writeEndObject();
+		}
+
+		@Override
+		void ownerEnded() throws IOException {
+			this.json.writeEndArray();
+			this.json.writeEndObject();
+			this.json.writeRaw('\n');
+		}
+
+		private void field(String name, Object value) throws IOException {
+			if (value != null) {
+				this.json.writeStringField(name, value.toString());
+			}
+			else {
+				this.json.writeNullField(name);
+			}
+		}
+
+		@Override
+		void flush() throws IOException {
+			this.json.flush();
+		}
+
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * Exports all owners with their pets and visits as CSV or NDJSON, in the layout
+ * {@link OwnerImporter} imports.
+ * <p>
+ * The owners are read as the rows of a single query through
+ * {@link OwnerRepository#streamExportRows()}, and every row is written as soon as it is
+ * read, so an export takes the same memory for any number of owners. The rows exported
+ * are counted as {@code owners.export.rows}, and the throughput of every export, in rows
+ * per second, is recorded as {@code owners.export.throughput}.
+ */
+@Component
+class OwnerExporter {
+
+	private static final Log logger = LogFactory.getLog(OwnerExporter.class);
+
+	private final OwnerRepository owners;
+
+	private final ObjectMapper objectMapper;
+
+	private final TransactionTemplate transactions;
+
+	private final Counter rows;
+
+	private final DistributionSummary throughput;
+
+	OwnerExporter(OwnerRepository owners, ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+			ObjectProvider<MeterRegistry> meterRegistries) {
+		MeterRegistry meterRegistry = meterRegistries.getIfAvailable(() -> Metrics.globalRegistry);
+		this.owners = owners;
+		this.objectMapper = objectMapper;
+		this.transactions = new TransactionTemplate(transactionManager);
+		this.transactions.setReadOnly(true);
+		this.rows = Counter.builder("owners.export.rows")
+			.description("The number of rows of owners, pets and visits exported")
+			.register(meterRegistry);
+		this.throughput = DistributionSummary.builder("owners.export.throughput")
+			.description("The number of rows exported per second, per export")
+			.baseUnit("rows/s")
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Export all owners.
+	 * @param format the format to write
+	 * @param out the stream to write to, which is flushed but not closed
+	 * @return what was exported
+	 * @throws IOException if the stream cannot be written
+	 */
+	Result export(OwnerFileFormat format, OutputStream out) throws IOException {
+		long start = System.nanoTime();
+		OwnerExportWriter writer = OwnerExportWriter.open(format, out, this.objectMapper);
+		long rows;
+		try {
+			rows = this.transactions.execute((status) -> write(writer));
+		}
+		catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+		writer.finish();
+		Result result = new Result(rows, writer.getOwners(), Duration.ofNanos(System.nanoTime() - start));
+		this.throughput.record(result.rowsPerSecond());
+		if (logger.isInfoEnabled()) {
+			logger.info(String.format("Exported %d rows of %d owners as %s in %d ms, %.0f rows/s", result.rows(),
+					result.owners(), format, result.duration().toMillis(), result.rowsPerSecond()));
+		}
+		return result;
+	}
+
+	private long write(OwnerExportWriter writer) {
+		long count = 0;
+		try (Stream<OwnerExportRow> rows = this.owners.streamExportRows()) {
+			for (Iterator<OwnerExportRow> iterator = rows.iterator(); iterator.hasNext();) {
+				writer.write(iterator.next());
+				count++;
+				this.rows.increment();
+			}
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		return count;
+	}
+
+	/**
+	 * What an export wrote.
+	 *
+	 * @param rows the number of rows read, one per visit, pet without visits and owner
+	 * without pets
+	 * @param owners the number of owners
+	 * @param duration the time taken
+	 */
+	record Result(long rows, int owners, Duration duration) {
+
+		double rowsPerSecond() {
+			return this.rows * 1e9 / Math.max(this.duration.toNanos(), 1);
+		}
+
+	}
+
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.samples.petclinic.system.LazyBuild;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * In-memory index of the owners by city and by the types of their pets, narrowing the
+ * owners list down to a city or pet type and counting the owners listed per value without
+ * querying the data store. Every value has an {@link IdBitmap} of its owners: selecting
+ * values intersects their bitmaps with the owners of the searched last name, and counts
+ * are the cardinalities of such intersections.
+ * <p>
+ * The bitmaps are read from the data store by a {@link LazyBuild}. A saved owner moves to
+ * the bitmaps of its current city and pet types once the transaction commits. As the
+ * index does not keep the values of every owner, all bitmaps are checked for the owner,
+ * which takes a lookup per city. The owners of an imported chunk move at once, copying
+ * the maps once per chunk. Selections intersect the bitmaps current when they start.
+ */
+@Component
+class OwnerFacetIndex {
+
+	/**
+	 * Number of cities counted at most, besides the selected one.
+	 */
+	static final int MAX_CITIES = 10;
+
+	private static final Comparator<FacetCount> MOST_FREQUENT = Comparator.comparingInt(FacetCount::count)
+		.reversed()
+		.thenComparing(FacetCount::value);
+
+	private final OwnerRepository owners;
+
+	private final OwnerNameIndex names;
+
+	private final PetTypeRegistry petTypes;
+
+	/**
+	 * The owners saved before the index was built, by id.
+	 */
+	private final Map<Integer, OwnerSaved> pending = new LinkedHashMap<>();
+
+	private final LazyBuild lazyBuild = new LazyBuild(this);
+
+	private volatile Facets facets = new Facets(Map.of(), Map.of());
+
+	OwnerFacetIndex(OwnerRepository owners, OwnerNameIndex names, PetTypeRegistry petTypes) {
+		this.owners = owners;
+		this.names = names;
+		this.petTypes = petTypes;
+	}
+
+	/**
+	 * Build the index unless done already.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	void build() {
+		this.lazyBuild.run(() -> {
+			Map<String, IdBitmap.Builder> cities = new HashMap<>();
+			Map<Integer, IdBitmap.Builder> petTypes = new HashMap<>();
+			for (OwnerFacetValues values : this.owners.findAllFacetValues()) {
+				if (values.city() != null) {
+					cities.computeIfAbsent(values.city(), (city) -> new IdBitmap.Builder()).add(values.ownerId());
+				}
+				if (values.petTypeId() != null) {
+					petTypes.computeIfAbsent(values.petTypeId(), (type) -> new IdBitmap.Builder())
+						.add(values.ownerId());
+				}
+			}
+			Facets facets = new Facets(build(cities), build(petTypes));
+			// owners saved meanwhile supersede what was read
+			for (OwnerSaved saved : this.pending.values()) {
+				facets = facets.with(saved);
+			}
+			this.pending.clear();
+			this.facets = facets;
+		});
+	}
+
+	private static <K> Map<K, IdBitmap> build(Map<K, IdBitmap.Builder> builders) {
+		Map<K, IdBitmap> bitmaps = new HashMap<>();
+		builders.forEach((key, builder) -> bitmaps.put(key, builder.build()));
+		return Collections.unmodifiableMap(bitmaps);
+	}
+
+	/**
+	 * Move the saved owner to the bitmaps of its current values, once the transaction
+	 * that saved it commits.
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	synchronized void ownerSaved(OwnerSaved event) {
+		if (this.lazyBuild.isBuilt()) {
+			this.facets = this.facets.with(event);
+		}
+		else {
+			this.pending.put(event.ownerId(), event);
+		}
+	}
+
+	/**
+	 * Move the owners of an imported chunk to the bitmaps of their values at once, once
+	 * the transaction that imported them commits. Until the index is built, they are left
+	 * to the build, which reads them from the data store.
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	synchronized void ownersImported(OwnersImported event) {
+		if (this.lazyBuild.isBuilt()) {
+			this.facets = this.facets.with(event.owners());
+		}
+	}
+
+	/**
+	 * Select the owners with the given last name, city and pet type, and count the owners
+	 * per city and per pet type among those with the given last name and the other
+	 * selected value.
+	 * @param lastName the start of the last name, in any case
+	 * @param city the city, or {@code null} for any
+	 * @param petType the name of a pet type, or {@code null} for any
+	 * @return the selection
+	 */
+	Selection select(String lastName, String city, String petType) {
+		build();
+		Facets facets = this.facets;
+		IdBitmap named = (lastName == null || lastName.isEmpty()) ? null : this.names.ids(lastName);
+		IdBitmap inCity = (city != null) ? facets.cities.getOrDefault(city, IdBitmap.EMPTY) : null;
+		IdBitmap withPetType = (petType != null) ? petTypeOwners(facets, petType) : null;
+
+		IdBitmap selected = and(named, and(inCity, withPetType));
+		List<FacetCount> cities = new ArrayList<>();
+		IdBitmap cityScope = and(named, withPetType);
+		facets.cities.forEach((value, owners) -> {
+			int count = count(owners, cityScope);
+			if (count > 0 || value.equals(city)) {
+				cities.add(new FacetCount(value, count));
+			}
+		});
+		cities.sort(MOST_FREQUENT);
+		List<FacetCount> topCities = new ArrayList<>(cities.subList(0, Math.min(MAX_CITIES, cities.size())));
+		if (city != null && topCities.stream().noneMatch((count) -> count.value().equals(city))) {
+			topCities.add(new FacetCount(city, count(inCity, cityScope)));
+		}
+
+		List<FacetCount> petTypes = new ArrayList<>();
+		IdBitmap petTypeScope = and(named, inCity);
+		for (PetType type : this.petTypes.findAll()) {
+			int count = count(facets.petTypes.getOrDefault(type.getId(), IdBitmap.EMPTY), petTypeScope);
+			if (count > 0 || type.getName().equals(petType)) {
+				petTypes.add(new FacetCount(type.getName(), count));
+			}
+		}
+		return new Selection((inCity != null || withPetType != null) ? selected : null, topCities, petTypes);
+	}
+
+	private IdBitmap petTypeOwners(Facets facets, String name) {
+		PetType type = this.petTypes.findByName(name);
+		return (type != null) ? facets.petTypes.getOrDefault(type.getId(), IdBitmap.EMPTY) : IdBitmap.EMPTY;
+	}
+
+	/**
+	 * Intersect two sets of owners, {@code null} standing for all owners.
+	 */
+	private static IdBitmap and(IdBitmap a, IdBitmap b) {
+		if (a == null) {
+			return b;
+		}
+		return (b != null) ? a.and(b) : a;
+	}
+
+	private static int count(IdBitmap owners, IdBitmap scope) {
+		return (scope != null) ? owners.andCardinality(scope) : owners.cardinality();
+	}
+
+	/**
+	 * The owners selected by city or pet type, and the counts of the owners per value.
+	 *
+	 * @param owners the selected owners, or {@code null} if neither a city nor a pet type
+	 * is selected
+	 * @param cities the most frequent cities, and the selected one, most frequent first
+	 * @param petTypes the pet types, by name
+	 */
+	record Selection(IdBitmap owners, List<FacetCount> cities, List<FacetCount> petTypes) {
+
+		boolean isFiltered() {
+			return this.owners != null;
+		}
+
+	}
+
+	/**
+	 * The owners per city and per pet type id.
+	 */
+	private record Facets(Map<String, IdBitmap> cities, Map<Integer, IdBitmap> petTypes) {
+
+		Facets with(OwnerSaved saved) {
+			return with(List.of(saved));
+		}
+
+		Facets with(List<OwnerSaved> saved) {
+			Map<Integer, Set<String>> cities = new HashMap<>();
+			Map<Integer, Set<Integer>> petTypes = new HashMap<>();
+			for (OwnerSaved owner : saved) {
+				cities.put(owner.ownerId(), (owner.city() != null) ? Set.of(owner.city()) : Set.of());
+				petTypes.put(owner.ownerId(), owner.petTypeIds());
+			}
+			return new Facets(move(this.cities, cities), move(this.petTypes, petTypes));
+		}
+
+		/**
+		 * Move every given owner id to the bitmaps of its keys, out of all others.
+		 */
+		private static <K> Map<K, IdBitmap> move(Map<K, IdBitmap> bitmaps, Map<Integer, Set<K>> keysById) {
+			Map<K, IdBitmap> moved = new HashMap<>(bitmaps);
+			bitmaps.forEach((key, owners) -> {
+				IdBitmap remaining = owners;
+				for (Map.Entry<Integer, Set<K>> keys : keysById.entrySet()) {
+					if (!keys.getValue().contains(key) && remaining.contains(keys.getKey())) {
+						remaining = remaining.without(keys.getKey());
+					}
+				}
+				if (remaining.isEmpty()) {
+					moved.remove(key);
+				}
+				else if (remaining != owners) {
+					moved.put(key, remaining);
+				}
+			});
+			keysById.forEach((id, keys) -> {
+				for (K key : keys) {
+					moved.put(key, moved.getOrDefault(key, IdBitmap.EMPTY).with(id));
+				}
+			});
+			return Collections.unmodifiableMap(moved);
+		}
+
+	}
+
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+/**
+ * The values an {@link Owner} is browsed by, once per pet of the owner.
+ *
+ * @param ownerId the owner id
+ * @param city the owner's city
+ * @param petTypeId the id of the type of a pet of the owner, or {@code null} for an owner
+ * without pets
+ */
+record OwnerFacetValues(Integer ownerId, String city, Integer petTypeId) {
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Locale;
+
+/**
+ * The formats owners are imported from and exported to, see {@link OwnerImportReader} for
+ * their layout. An exported file can be imported as is.
+ */
+enum OwnerFileFormat {
+
+	CSV(OwnerFileFormat.CSV_VALUE), NDJSON(OwnerFileFormat.NDJSON_VALUE);
+
+	static final String CSV_VALUE = "text/csv";
+
+	static final String NDJSON_VALUE = "application/x-ndjson";
+
+	private final String mediaType;
+
+	OwnerFileFormat(String mediaType) {
+		this.mediaType = mediaType;
+	}
+
+	String getMediaType() {
+		return this.mediaType;
+	}
+
+	/**
+	 * Return the format of the file with the given name, by its extension.
+	 * @param fileName the name of the file
+	 * @return the format
+	 * @throws IllegalArgumentException if the extension is not known
+	 */
+	static OwnerFileFormat of(String fileName) {
+		String name = fileName.toLowerCase(Locale.ROOT);
+		if (name.endsWith(".csv")) {
+			return CSV;
+		}
+		if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+			return NDJSON;
+		}
+		throw new IllegalArgumentException("Unknown owner file format: " + fileName);
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+
+/**
+ * The progress of an import of owners, as committed: the number of records read from the
+ * import file so far and what became of them. It is saved in the same transaction as the
+ * owners of every chunk, so an import that failed is resumed after the last committed
+ * chunk by running it again under the same id.
+ */
+@Entity
+@Table(name = "owner_imports")
+class OwnerImport {
+
+	@Id
+	private String id;
+
+	@Column(name = "records_read")
+	private int records;
+
+	@Column(name = "owners_imported")
+	private int owners;
+
+	@Column(name = "pets_imported")
+	private int pets;
+
+	@Column(name = "visits_imported")
+	private int visits;
+
+	@Column(name = "owners_rejected")
+	private int rejected;
+
+	@Column(name = "completed")
+	private boolean completed;
+
+	/**
+	 * Guards against running the same import twice at a time.
+	 */
+	@Version
+	@Column(name = "version")
+	private Integer version;
+
+	protected OwnerImport() {
+	}
+
+	OwnerImport(String id) {
+		this.id = id;
+	}
+
+	String getId() {
+		return this.id;
+	}
+
+	/**
+	 * Return the number of records read and committed, imported or rejected.
+	 */
+	int getRecords() {
+		return this.records;
+	}
+
+	int getOwners() {
+		return this.owners;
+	}
+
+	int getPets() {
+		return this.pets;
+	}
+
+	int getVisits() {
+		return this.visits;
+	}
+
+	int getRejected() {
+		return this.rejected;
+	}
+
+	boolean isCompleted() {
+		return this.completed;
+	}
+
+	/**
+	 * Count the records of a chunk about to be committed.
+	 * @param records the number of records read
+	 * @param owners the number of owners imported
+	 * @param pets the number of pets of the imported owners
+	 * @param visits the number of visits of the imported owners
+	 * @param rejected the number of records rejected
+	 * @param completed whether the chunk ends the import file
+	 */
+	void advance(int records, int owners, int pets, int visits, int rejected, boolean completed) {
+		this.records += records;
+		this.owners += owners;
+		this.pets += pets;
+		this.visits += visits;
+		this.rejected += rejected;
+		this.completed = completed;
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.owner.OwnerImporter.Result;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Imports owners from the request body as it is received, see {@link OwnerImporter}. An
+ * import that failed is resumed by posting the same file with the same id.
+ */
+@Controller
+class OwnerImportController {
+
+	private final OwnerImporter importer;
+
+	public OwnerImportController(OwnerImporter importer) {
+		this.importer = importer;
+	}
+
+	@PostMapping(path = "/owners/import", consumes = OwnerFileFormat.CSV_VALUE,
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	@ResponseBody
+	public Result importCsv(@RequestParam("id") String id, InputStream body) throws IOException {
+		return this.importer.importOwners(id, OwnerFileFormat.CSV, body);
+	}
+
+	@PostMapping(path = "/owners/import", consumes = OwnerFileFormat.NDJSON_VALUE,
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	@ResponseBody
+	public Result importNdjson(@RequestParam("id") String id, InputStream body) throws IOException {
+		return this.importer.importOwners(id, OwnerFileFormat.NDJSON, body);
+	}
+
+	@GetMapping(path = "/owners/import/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Result> showProgress(@PathVariable("id") String id) {
+		return ResponseEntity.of(Optional.ofNullable(this.importer.findProgress(id)));
+	}
+
+}
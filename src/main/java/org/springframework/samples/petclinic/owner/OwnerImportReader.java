@@ -0,0 +1,374 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads the owners of an import file one at a time, each with its pets and their visits,
+ * so that no more than one owner of the file is held at a time. Pet types are resolved by
+ * name through the {@link PetTypeRegistry}.
+ * <p>
+ * A CSV file has a row per owner, pet and visit, told apart by their first column. Pets
+ * belong to the owner above them and visits to the pet above them:
+ *
+ * <pre class="code">
+ * owner,George,Franklin,110 W. Liberty St.,Madison,6085551023
+ * pet,Leo,2010-09-07,cat
+ * visit,2013-01-01,rabies shot
+ * </pre>
+ *
+ * An NDJSON file has an object per owner, with its pets and their visits nested:
+ *
+ * <pre class="code">
+ * {"firstName":"George","lastName":"Franklin","address":"110 W. Liberty St.","city":"Madison","telephone":"6085551023",
+ *  "pets":[{"name":"Leo","birthDate":"2010-09-07","type":"cat","visits":[{"date":"2013-01-01","description":"rabies shot"}]}]}
+ * </pre>
+ *
+ * Values that cannot be read, such as malformed dates or unknown pet types, are reported
+ * with the owner rather than failing the file. A file whose structure cannot be read
+ * fails with an {@link IOException}, as does a CSV file with an unterminated quoted field
+ * or a row too long to be one, so that it is never read into memory whole.
+ */
+abstract class OwnerImportReader implements Closeable {
+
+	private final PetTypeRegistry petTypes;
+
+	OwnerImportReader(PetTypeRegistry petTypes) {
+		this.petTypes = petTypes;
+	}
+
+	/**
+	 * Open a reader of the given import file.
+	 * @param format the format of the file
+	 * @param in the file, read as UTF-8
+	 * @param objectMapper the mapper to read NDJSON with
+	 * @param petTypes the registry to resolve pet types with
+	 * @return the reader
+	 */
+	static OwnerImportReader open(OwnerFileFormat format, InputStream in, ObjectMapper objectMapper,
+			PetTypeRegistry petTypes) throws IOException {
+		return switch (format) {
+			case CSV -> new Csv(in, petTypes);
+			case NDJSON -> new Ndjson(in, objectMapper, petTypes);
+		};
+	}
+
+	/**
+	 * Read the next owner.
+	 * @return the owner, or {@code null} at the end of the file
+	 */
+	abstract ImportedOwner next() throws IOException;
+
+	Owner owner(String firstName, String lastName, String address, String city, String telephone) {
+		Owner owner = new Owner();
+		owner.setFirstName(firstName);
+		owner.setLastName(lastName);
+		owner.setAddress(address);
+		owner.setCity(city);
+		owner.setTelephone(telephone);
+		return owner;
+	}
+
+	Pet pet(String name, String birthDate, String type, List<String> errors) {
+		Pet pet = new Pet();
+		pet.setName(name);
+		pet.setBirthDate(date("birthDate", birthDate, errors));
+		if (type != null && !type.isBlank()) {
+			pet.setType(this.petTypes.findByName(type.strip()));
+			if (pet.getType() == null) {
+				errors.add("unknown pet type '" + type + "'");
+			}
+		}
+		return pet;
+	}
+
+	Visit visit(String date, String description, List<String> errors) {
+		Visit visit = new Visit();
+		visit.setDate(date("date", date, errors));
+		visit.setDescription(description);
+		if (visit.getDate() == null) {
+			errors.add("visit date required");
+		}
+		return visit;
+	}
+
+	private static LocalDate date(String name, String value, List<String> errors) {
+		if (value == null || value.isBlank()) {
+			return null;
+		}
+		try {
+			return LocalDate.parse(value.strip());
+		}
+		catch (DateTimeParseException ex) {
+			errors.add("invalid " + name + " '" + value + "'");
+			return null;
+		}
+	}
+
+	/**
+	 * An owner read from an import file.
+	 *
+	 * @param line the line of the file the owner starts on
+	 * @param owner the owner with its pets and their visits, or {@code null} if the
+	 * record is not an owner at all
+	 * @param errors the values that could not be read
+	 */
+	record ImportedOwner(int line, Owner owner, List<String> errors) {
+	}
+
+	/**
+	 * Reads CSV as of RFC 4180: fields may be quoted, and quoted fields may contain
+	 * commas, line breaks and doubled quotes. One row is read ahead, to tell where the
+	 * rows of an owner end.
+	 */
+	private static final class Csv extends OwnerImportReader {
+
+		/**
+		 * Number of characters a field may have at most.
+		 */
+		static final int MAX_FIELD_LENGTH = 4096;
+
+		/**
+		 * Number of characters a row may have at most, separators included.
+		 */
+		static final int MAX_ROW_LENGTH = 16384;
+
+		private final BufferedReader in;
+
+		private int line;
+
+		private Row pending;
+
+		Csv(InputStream in, PetTypeRegistry petTypes) {
+			super(petTypes);
+			this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		}
+
+		@Override
+		ImportedOwner next() throws IOException {
+			Row first = (this.pending != null) ? this.pending : readRow();
+			this.pending = null;
+			if (first == null) {
+				return null;
+			}
+			List<String> errors = new ArrayList<>();
+			Owner owner = null;
+			if (first.is("owner", 6, errors)) {
+				owner = owner(first.field(1), first.field(2), first.field(3), first.field(4), first.field(5));
+			}
+			else if (errors.isEmpty()) {
+				errors.add("expected an owner, not '" + first.field(0) + "'");
+			}
+			Pet pet = null;
+			Row row;
+			while ((row = readRow()) != null && !row.field(0).equals("owner")) {
+				if (row.is("pet", 4, errors)) {
+					pet = pet(row.field(1), row.field(2), row.field(3), errors);
+					if (owner != null) {
+						owner.addPet(pet);
+					}
+				}
+				else if (row.is("visit", 3, errors)) {
+					if (pet != null) {
+						pet.addVisit(visit(row.field(1), row.field(2), errors));
+					}
+					else {
+						errors.add("visit on line " + row.line + " without a pet");
+					}
+				}
+				else if (!row.field(0).equals("pet") && !row.field(0).equals("visit")) {
+					errors.add("unknown row '" + row.field(0) + "' on line " + row.line);
+				}
+			}
+			this.pending = row;
+			return new ImportedOwner(first.line, owner, errors);
+		}
+
+		/**
+		 * Read the next row, skipping empty lines.
+		 * @return the row, or {@code null} at the end of the file
+		 * @throws IOException if the row is too long or has an unterminated quoted field
+		 */
+		private Row readRow() throws IOException {
+			List<String> fields = new ArrayList<>();
+			StringBuilder field = new StringBuilder();
+			boolean quoted = false;
+			boolean empty = true;
+			int start = this.line + 1;
+			int length = 0;
+			int c;
+			while ((c = this.in.read()) != -1) {
+				if (++length > MAX_ROW_LENGTH) {
+					throw new IOException("Row on line " + start + " is longer than " + MAX_ROW_LENGTH + " characters");
+				}
+				if (quoted) {
+					if (c == '"') {
+						this.in.mark(1);
+						if (this.in.read() == '"') {
+							append(field, '"', start);
+						}
+						else {
+							this.in.reset();
+							quoted = false;
+						}
+					}
+					else {
+						if (c == '\n') {
+							this.line++;
+						}
+						append(field, (char) c, start);
+					}
+				}
+				else if (c == '"') {
+					quoted = true;
+					empty = false;
+				}
+				else if (c == ',') {
+					fields.add(field.toString());
+					field.setLength(0);
+					empty = false;
+				}
+				else if (c == '\r' || c == '\n') {
+					if (c == '\r') {
+						this.in.mark(1);
+						if (this.in.read() != '\n') {
+							this.in.reset();
+						}
+					}
+					this.line++;
+					if (!empty) {
+						fields.add(field.toString());
+						return new Row(start, fields);
+					}
+					start = this.line + 1;
+					length = 0;
+				}
+				else {
+					append(field, (char) c, start);
+					empty = false;
+				}
+			}
+			if (quoted) {
+				throw new IOException("Quoted field on line " + start + " is not terminated");
+			}
+			if (empty) {
+				return null;
+			}
+			fields.add(field.toString());
+			return new Row(start, fields);
+		}
+
+		private static void append(StringBuilder field, char c, int line) throws IOException {
+			if (field.length() == MAX_FIELD_LENGTH) {
+				throw new IOException("Field on line " + line + " is longer than " + MAX_FIELD_LENGTH + " characters");
+			}
+			field.append(c);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.in.close();
+		}
+
+		private record Row(int line, List<String> fields) {
+
+			String field(int index) {
+				return (index < this.fields.size()) ? this.fields.get(index) : null;
+			}
+
+			/**
+			 * Tell whether this row is of the given kind, and report it if it is but has
+			 * not the given number of fields.
+			 */
+			boolean is(String kind, int size, List<String> errors) {
+				if (!kind.equals(field(0))) {
+					return false;
+				}
+				if (this.fields.size() != size) {
+					errors.add(kind + " on line " + this.line + " has " + this.fields.size() + " fields, expected "
+							+ size);
+					return false;
+				}
+				return true;
+			}
+
+		}
+
+	}
+
+	/**
+	 * Reads newline delimited JSON, one value at a time.
+	 */
+	private static final class Ndjson extends OwnerImportReader {
+
+		private final MappingIterator<JsonNode> values;
+
+		Ndjson(InputStream in, ObjectMapper objectMapper, PetTypeRegistry petTypes) throws IOException {
+			super(petTypes);
+			this.values = objectMapper.readerFor(JsonNode.class).readValues(in);
+		}
+
+		@Override
+		ImportedOwner next() throws IOException {
+			if (!this.values.hasNextValue()) {
+				return null;
+			}
+			int line = this.values.getParser().currentTokenLocation().getLineNr();
+			JsonNode value = this.values.nextValue();
+			List<String> errors = new ArrayList<>();
+			if (!value.isObject()) {
+				errors.add("expected an owner object");
+				return new ImportedOwner(line, null, errors);
+			}
+			Owner owner = owner(text(value, "firstName"), text(value, "lastName"), text(value, "address"),
+					text(value, "city"), text(value, "telephone"));
+			for (JsonNode petValue : value.path("pets")) {
+				Pet pet = pet(text(petValue, "name"), text(petValue, "birthDate"), text(petValue, "type"), errors);
+				for (JsonNode visitValue : petValue.path("visits")) {
+					pet.addVisit(visit(text(visitValue, "date"), text(visitValue, "description"), errors));
+				}
+				owner.addPet(pet);
+			}
+			return new ImportedOwner(line, owner, errors);
+		}
+
+		private static String text(JsonNode value, String name) {
+			JsonNode field = value.path(name);
+			return field.isValueNode() && !field.isNull() ? field.asText() : null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.values.close();
+		}
+
+	}
+
+}
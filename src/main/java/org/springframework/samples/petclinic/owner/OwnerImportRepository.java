@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import org.springframework.data.repository.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository class for the progress of {@link OwnerImport owner imports}.
+ */
+interface OwnerImportRepository extends Repository<OwnerImport, String> {
+
+	/**
+	 * Retrieve the progress of an import.
+	 * @param id the id of the import
+	 * @return the {@link OwnerImport}, or {@code null} if it never committed a chunk
+	 */
+	@Transactional(readOnly = true)
+	OwnerImport findById(String id);
+
+	/**
+	 * Save the progress of an import, checking that it was not advanced meanwhile.
+	 * @param ownerImport the {@link OwnerImport} to save
+	 * @return the saved {@link OwnerImport}
+	 * @throws org.springframework.dao.OptimisticLockingFailureException if the import is
+	 * run twice at a time
+	 */
+	OwnerImport save(OwnerImport ownerImport);
+
+}
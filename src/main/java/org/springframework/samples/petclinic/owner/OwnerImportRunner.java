@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.samples.petclinic.owner.OwnerImporter.Result;
+import org.springframework.stereotype.Component;
+
+/**
+ * Imports the owners of the file given by {@code petclinic.import.file} at startup, and
+ * exits once done, as in:
+ *
+ * <pre class="code">
+ * java -jar petclinic.jar --petclinic.import.file=owners.csv --server.port=0
+ * </pre>
+ *
+ * The format is told by the extension of the file, {@code .csv} or {@code .ndjson}. The
+ * import id is {@code petclinic.import.id}, by default the name of the file, so that
+ * running the same command again resumes an import that failed. A failed import fails the
+ * startup.
+ */
+@Component
+@ConditionalOnProperty("petclinic.import.file")
+class OwnerImportRunner implements ApplicationRunner {
+
+	private static final Log logger = LogFactory.getLog(OwnerImportRunner.class);
+
+	private final OwnerImporter importer;
+
+	private final Environment environment;
+
+	private final ConfigurableApplicationContext context;
+
+	OwnerImportRunner(OwnerImporter importer, Environment environment, ConfigurableApplicationContext context) {
+		this.importer = importer;
+		this.environment = environment;
+		this.context = context;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		Path file = Path.of(this.environment.getRequiredProperty("petclinic.import.file"));
+		String id = this.environment.getProperty("petclinic.import.id", file.getFileName().toString());
+		Result result;
+		try (InputStream in = Files.newInputStream(file)) {
+			result = this.importer.importOwners(id, OwnerFileFormat.of(file.getFileName().toString()), in);
+		}
+		logger.info("Imported " + result.owners() + " owners with " + result.pets() + " pets and " + result.visits()
+				+ " visits from " + file + ", rejected " + result.rejected() + " records");
+		result.errors().forEach(logger::warn);
+		System.exit(SpringApplication.exit(this.context));
+	}
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.samples.petclinic.owner.OwnerImportReader.ImportedOwner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import org.springframework.validation.Errors;
+import org.springframework.validation.SimpleErrors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * Imports owners with their pets and visits from a CSV or NDJSON file, streaming it
+ * through an {@link OwnerImportReader}.
+ * <p>
+ * Every owner is validated as in the forms: the owner and its visits by their Bean
+ * Validation constraints, its pets by the {@link PetValidator}, and no two pets of an
+ * owner may share a name. Owners that fail are rejected, with their pets and visits, and
+ * reported by the line they start on; the others are saved through the
+ * {@link OwnerRepository}, in chunks of {@code petclinic.import.chunk-size} records per
+ * transaction. The inserts of a chunk are sent in JDBC batches, and only the owners of
+ * the current chunk are held in memory. Rather than an {@link OwnerSaved} per owner, a
+ * chunk publishes a single {@link OwnersImported}, so that the indexes take in the owners
+ * of a chunk at once.
+ * <p>
+ * The {@link OwnerImport progress} of the import is committed along with every chunk.
+ * When a chunk fails, the import stops and its records are rolled back; running the
+ * import again under the same id skips the records committed before. The records imported
+ * and rejected are counted as {@code owners.import.records}, and the time taken per chunk
+ * as {@code owners.import.chunks}.
+ */
+@Component
+class OwnerImporter {
+
+	/**
+	 * Number of rejected records reported at most.
+	 */
+	static final int MAX_ERRORS = 100;
+
+	private final OwnerRepository owners;
+
+	private final OwnerImportRepository imports;
+
+	private final PetTypeRegistry petTypes;
+
+	private final ObjectMapper objectMapper;
+
+	private final Validator validator;
+
+	private final PetValidator petValidator = new PetValidator();
+
+	private final ApplicationEventPublisher events;
+
+	private final TransactionTemplate transactions;
+
+	private final int chunkSize;
+
+	private final Counter importedOwners;
+
+	private final Counter importedPets;
+
+	private final Counter importedVisits;
+
+	private final Counter rejectedOwners;
+
+	private final Timer chunks;
+
+	OwnerImporter(OwnerRepository owners, OwnerImportRepository imports, PetTypeRegistry petTypes,
+			ObjectMapper objectMapper, Validator validator, ApplicationEventPublisher events,
+			PlatformTransactionManager transactionManager, ObjectProvider<MeterRegistry> meterRegistries,
+			@Value("${petclinic.import.chunk-size:500}") int chunkSize) {
+		Assert.isTrue(chunkSize > 0, "Chunk size must be positive");
+		MeterRegistry meterRegistry = meterRegistries.getIfAvailable(() -> Metrics.globalRegistry);
+		this.owners = owners;
+		this.imports = imports;
+		this.petTypes = petTypes;
+		this.objectMapper = objectMapper;
+		this.validator = validator;
+		this.events = events;
+		this.transactions = new TransactionTemplate(transactionManager);
+		this.chunkSize = chunkSize;
+		this.importedOwners = counter(meterRegistry, "owner", "imported");
+		this.importedPets = counter(meterRegistry, "pet", "imported");
+		this.importedVisits = counter(meterRegistry, "visit", "imported");
+		this.rejectedOwners = counter(meterRegistry, "owner", "rejected");
+		this.chunks = Timer.builder("owners.import.chunks")
+			.description("The time taken to validate and commit a chunk of imported owners")
+			.register(meterRegistry);
+	}
+
+	private static Counter counter(MeterRegistry registry, String type, String result) {
+		return Counter.builder("owners.import.records")
+			.description("The number of owners, pets and visits imported, or owners rejected")
+			.tag("type", type)
+			.tag("result", result)
+			.register(registry);
+	}
+
+	/**
+	 * Import the owners of the given file, or resume importing them.
+	 * @param id the id of the import, to resume it by
+	 * @param format the format of the file
+	 * @param in the file, which is not closed
+	 * @return the progress of the import, with the records rejected by this run
+	 * @throws IOException if the file cannot be read, after committing the records read
+	 * before
+	 * @throws org.springframework.dao.DataAccessException if a chunk cannot be saved,
+	 * after committing the chunks before
+	 */
+	Result importOwners(String id, OwnerFileFormat format, InputStream in) throws IOException {
+		Assert.hasText(id, "Import id must not be empty");
+		OwnerImport progress = this.imports.findById(id);
+		if (progress == null) {
+			progress = new OwnerImport(id);
+		}
+		List<String> errors = new ArrayList<>();
+		if (!progress.isCompleted()) {
+			OwnerImportReader reader = OwnerImportReader.open(format, in, this.objectMapper, this.petTypes);
+			int committed = progress.getRecords();
+			Chunk chunk = new Chunk();
+			ImportedOwner imported;
+			int read = 0;
+			while ((imported = reader.next()) != null) {
+				if (++read <= committed) {
+					continue;
+				}
+				chunk.add(imported, errors);
+				if (chunk.records == this.chunkSize) {
+					progress = commit(progress, chunk, false);
+					chunk = new Chunk();
+				}
+			}
+			progress = commit(progress, chunk, true);
+		}
+		return new Result(progress.getId(), progress.getRecords(), progress.getOwners(), progress.getPets(),
+				progress.getVisits(), progress.getRejected(), progress.isCompleted(), errors);
+	}
+
+	/**
+	 * Return the progress of an import.
+	 * @param id the id of the import
+	 * @return the progress, or {@code null} if the import never committed a chunk
+	 */
+	Result findProgress(String id) {
+		OwnerImport progress = this.imports.findById(id);
+		return (progress != null) ? new Result(id, progress.getRecords(), progress.getOwners(), progress.getPets(),
+				progress.getVisits(), progress.getRejected(), progress.isCompleted(), List.of()) : null;
+	}
+
+	private OwnerImport commit(OwnerImport progress, Chunk chunk, boolean completed) {
+		OwnerImport committed = this.chunks.record(() -> this.transactions.execute((status) -> {
+			List<OwnerSaved> saved = new ArrayList<>(chunk.owners.size());
+			List<OwnerName> names = new ArrayList<>(chunk.owners.size());
+			for (Owner owner : chunk.owners) {
+				owner.markImported();
+				this.owners.save(owner);
+				saved.add(owner.saved());
+				names.add(new OwnerName(owner.getId(), owner.getFirstName(), owner.getLastName()));
+			}
+			if (!saved.isEmpty()) {
+				this.events.publishEvent(new OwnersImported(saved, names));
+			}
+			progress.advance(chunk.records, chunk.owners.size(), chunk.pets, chunk.visits, chunk.rejected, completed);
+			return this.imports.save(progress);
+		}));
+		this.importedOwners.increment(chunk.owners.size());
+		this.importedPets.increment(chunk.pets);
+		this.importedVisits.increment(chunk.visits);
+		this.rejectedOwners.increment(chunk.rejected);
+		return committed;
+	}
+
+	/**
+	 * Return what makes the given owner invalid.
+	 */
+	private List<String> validate(Owner owner) {
+		List<String> errors = new ArrayList<>();
+		for (ConstraintViolation<Owner> violation : this.validator.validate(owner)) {
+			errors.add(violation.getPropertyPath() + " " + violation.getMessage());
+		}
+		Set<String> petNames = new HashSet<>();
+		for (Pet pet : owner.getPets()) {
+			Errors petErrors = new SimpleErrors(pet, "pet");
+			this.petValidator.validate(pet, petErrors);
+			petErrors.getFieldErrors()
+				.forEach((error) -> errors.add("pet '" + pet.getName() + "': " + error.getField() + " required"));
+			if (pet.getName() != null && !petNames.add(pet.getName().toLowerCase(Locale.ROOT))) {
+				errors.add("pet '" + pet.getName() + "': already exists");
+			}
+			for (Visit visit : pet.getVisits()) {
+				for (ConstraintViolation<Visit> violation : this.validator.validate(visit)) {
+					errors.add("visit of '" + pet.getName() + "': " + violation.getPropertyPath() + " "
+							+ violation.getMessage());
+				}
+			}
+		}
+		return errors;
+	}
+
+	/**
+	 * The owners of a chunk to commit, and the counts of its records.
+	 */
+	private final class Chunk {
+
+		private final List<Owner> owners = new ArrayList<>();
+
+		private int records;
+
+		private int pets;
+
+		private int visits;
+
+		private int rejected;
+
+		void add(ImportedOwner imported, List<String> errors) {
+			this.records++;
+			List<String> invalid = new ArrayList<>(imported.errors());
+			if (imported.owner() != null) {
+				invalid.addAll(validate(imported.owner()));
+			}
+			if (invalid.isEmpty()) {
+				Owner owner = imported.owner();
+				this.owners.add(owner);
+				this.pets += owner.getPets().size();
+				for (Pet pet : owner.getPets()) {
+					this.visits += pet.getVisits().size();
+				}
+			}
+			else {
+				this.rejected++;
+				if (errors.size() < MAX_ERRORS) {
+					errors.add("line " + imported.line() + ": " + String.join(", ", invalid));
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * The progress of an import.
+	 *
+	 * @param id the id of the import
+	 * @param records the number of records read and committed
+	 * @param owners the number of owners imported
+	 * @param pets the number of pets of the imported owners
+	 * @param visits the number of visits of the imported owners
+	 * @param rejected the number of records rejected
+	 * @param completed whether the whole file was read
+	 * @param errors why records were rejected, for at most {@value #MAX_ERRORS} records
+	 * rejected by the current run
+	 */
+	record Result(String id, int records, int owners, int pets, int visits, int rejected, boolean completed,
+			List<String> errors) {
+	}
+
+}
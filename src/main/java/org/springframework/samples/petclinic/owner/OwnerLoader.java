@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+/**
+ * Loads owner aggregates at most once per HTTP request. The {@code @ModelAttribute}
+ * methods of the owner, pet and visit controllers all ask for the owner of the request
+ * path, and since there is no open session in view every repository call would otherwise
+ * load the aggregate anew. Sharing one instance also means a pet bound from the request
+ * is the very pet of the owner that gets saved.
+ */
+@Component
+@RequestScope
+class OwnerLoader {
+
+	private final OwnerRepository owners;
+
+	private final Map<Integer, Owner> withPets = new HashMap<>();
+
+	private final Map<Integer, Owner> withVisits = new HashMap<>();
+
+	OwnerLoader(OwnerRepository owners) {
+		this.owners = owners;
+	}
+
+	/**
+	 * Return the owner with the given id together with its pets.
+	 * @param ownerId the id of the owner
+	 * @return the owner, or {@literal null} if there is none with the given id
+	 */
+	Owner findWithPets(int ownerId) {
+		if (this.withVisits.containsKey(ownerId)) {
+			return this.withVisits.get(ownerId);
+		}
+		if (!this.withPets.containsKey(ownerId)) {
+			this.withPets.put(ownerId, this.owners.findWithPetsById(ownerId));
+		}
+		return this.withPets.get(ownerId);
+	}
+
+	/**
+	 * Return the owner with the given id together with its pets and their visits.
+	 * @param ownerId the id of the owner
+	 * @return the owner, or {@literal null} if there is none with the given id
+	 */
+	Owner findWithVisits(int ownerId) {
+		if (!this.withVisits.containsKey(ownerId)) {
+			this.withVisits.put(ownerId, this.owners.findById(ownerId));
+		}
+		return this.withVisits.get(ownerId);
+	}
+
+}
@@ -0,0 +1,595 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.samples.petclinic.system.LazyBuild;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * In-memory index of the owner names, completing the start of a last name without
+ * querying the data store. Last names are compared case-insensitively, and completions
+ * are ordered by last name, first name and id.
+ * <p>
+ * The index consists of a sorted base holding the names of all owners back to back in a
+ * single char array, addressed by offsets, so that an owner costs its characters and
+ * three ints rather than a couple of objects. Owners saved since the base was built go to
+ * a small sorted overlay, whose entries replace those of the base with the same id. Once
+ * the overlay outgrows a fraction of the base, both are merged into a new base. Owners
+ * imported in bulk go to the overlay a chunk at a time.
+ * <p>
+ * The base is read from the data store by a {@link LazyBuild}. Once it is built,
+ * completions read the current state without locking, and every save publishes a new
+ * state, copying the overlay.
+ * <p>
+ * Owners can also be {@link #match(String, int) matched} by a misspelled last name. The
+ * {@link OwnerNameMatcher} of the distinct last names in the base is built at startup,
+ * and for a merged base on the next such match, while the overlay is compared one by one.
+ */
+@Component
+class OwnerNameIndex {
+
+	/**
+	 * The order of the entries. The case-folded last name comes first, so that the
+	 * entries starting with a prefix are adjacent.
+	 */
+	static final Comparator<OwnerName> ORDER = Comparator.comparing(OwnerName::lastName, OwnerNameIndex::compareFolded)
+		.thenComparing(OwnerName::lastName)
+		.thenComparing(OwnerName::firstName)
+		.thenComparing(OwnerName::id);
+
+	/**
+	 * How many entries the overlay holds at least before it is merged into the base.
+	 */
+	static final int MIN_OVERLAY_SIZE = 1024;
+
+	private final OwnerRepository owners;
+
+	private final LazyBuild lazyBuild = new LazyBuild(this);
+
+	private volatile State state = new State(Base.of(List.of()), new OwnerName[0]);
+
+	OwnerNameIndex(OwnerRepository owners) {
+		this.owners = owners;
+	}
+
+	/**
+	 * Build the index, and the matcher of the last names in its base, when the
+	 * application is ready.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	void prepare() {
+		build();
+		this.state.base.matcher();
+	}
+
+	/**
+	 * Build the index unless done already.
+	 */
+	void build() {
+		this.lazyBuild.run(() -> {
+			List<OwnerName> found = this.owners.findAllNames();
+			List<OwnerName> names = new ArrayList<>(found.size());
+			found.forEach((name) -> names.add(entry(name)));
+			names.sort(ORDER);
+			Base base = Base.of(names);
+			// owners saved meanwhile stay in the overlay, superseding what was read
+			this.state = new State(base, this.state.overlay);
+		});
+	}
+
+	/**
+	 * Add an owner that was saved to the index, or replace its previous name.
+	 * @param name the name of the owner, which must have an id
+	 */
+	synchronized void update(OwnerName name) {
+		OwnerName entry = entry(name);
+		State current = this.state;
+		List<OwnerName> overlay = new ArrayList<>(current.overlay.length + 1);
+		int[] overlayKeys = new int[current.overlay.length + 1];
+		for (int i = 0; i < current.overlay.length; i++) {
+			OwnerName other = current.overlay[i];
+			if (!other.id().equals(entry.id())) {
+				overlayKeys[overlay.size()] = current.overlayKeys[i];
+				overlay.add(other);
+			}
+		}
+		int position = -Collections.binarySearch(overlay, entry, ORDER) - 1;
+		overlay.add(position, entry);
+		System.arraycopy(overlayKeys, position, overlayKeys, position + 1, overlay.size() - 1 - position);
+		overlayKeys[position] = OwnerNameMatcher.keys(entry.lastName());
+		int[] overlaidIds = current.overlaidIds;
+		int idPosition = Arrays.binarySearch(overlaidIds, entry.id());
+		if (idPosition < 0) {
+			idPosition = -idPosition - 1;
+			overlaidIds = new int[current.overlaidIds.length + 1];
+			System.arraycopy(current.overlaidIds, 0, overlaidIds, 0, idPosition);
+			overlaidIds[idPosition] = entry.id();
+			System.arraycopy(current.overlaidIds, idPosition, overlaidIds, idPosition + 1,
+					current.overlaidIds.length - idPosition);
+		}
+		State updated = new State(current.base, overlay.toArray(OwnerName[]::new), overlaidIds,
+				Arrays.copyOf(overlayKeys, overlay.size()));
+		// until built, the overlay is all there is to keep
+		this.state = this.lazyBuild.isBuilt() ? merged(updated) : updated;
+	}
+
+	/**
+	 * Add the owners of an imported chunk to the index at once, once the transaction that
+	 * imported them commits. Until the index is built, they are left to the build, which
+	 * reads them from the data store.
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	synchronized void ownersImported(OwnersImported event) {
+		if (!this.lazyBuild.isBuilt()) {
+			return;
+		}
+		Map<Integer, OwnerName> entries = new LinkedHashMap<>();
+		event.names().forEach((name) -> entries.put(name.id(), entry(name)));
+		State current = this.state;
+		List<OwnerName> overlay = new ArrayList<>(current.overlay.length + entries.size());
+		for (OwnerName other : current.overlay) {
+			if (!entries.containsKey(other.id())) {
+				overlay.add(other);
+			}
+		}
+		overlay.addAll(entries.values());
+		overlay.sort(ORDER);
+		this.state = merged(new State(current.base, overlay.toArray(OwnerName[]::new)));
+	}
+
+	/**
+	 * Merge the overlay of the given state into a new base once it outgrows a fraction of
+	 * the base.
+	 */
+	private static State merged(State state) {
+		if (state.overlay.length <= Math.max(MIN_OVERLAY_SIZE, state.base.size() >>> 6)) {
+			return state;
+		}
+		return new State(Base.of(state.complete("", Integer.MAX_VALUE)), new OwnerName[0]);
+	}
+
+	/**
+	 * Complete the start of a last name.
+	 * @param lastName the start of the last name, in any case
+	 * @param limit how many owners to return at most
+	 * @return the owners whose last name starts with the given name, in {@link #ORDER}
+	 */
+	List<OwnerName> complete(String lastName, int limit) {
+		build();
+		return this.state.complete(fold(Objects.toString(lastName, "")), limit);
+	}
+
+	/**
+	 * Complete the start of a last name with the given owners only, skipping the first
+	 * completions, as when paging through them.
+	 * @param lastName the start of the last name, in any case
+	 * @param offset how many completions to skip
+	 * @param limit how many owners to return at most
+	 * @param owners the owners to complete with
+	 * @return the given owners whose last name starts with the given name, in
+	 * {@link #ORDER}
+	 */
+	List<OwnerName> complete(String lastName, int offset, int limit, IdBitmap owners) {
+		build();
+		return this.state.complete(fold(Objects.toString(lastName, "")), offset, limit, owners::contains);
+	}
+
+	/**
+	 * Return the ids of the owners whose last name starts with the given name.
+	 * @param lastName the start of the last name, in any case
+	 * @return the ids of the matching owners
+	 */
+	IdBitmap ids(String lastName) {
+		build();
+		return this.state.ids(fold(Objects.toString(lastName, "")));
+	}
+
+	/**
+	 * Complete the start of a last name, followed by the owners whose last name is
+	 * similar to it, as when misspelled.
+	 * @param lastName the start of the last name or a misspelled last name, in any case
+	 * @param limit how many owners to return at most
+	 * @return the owners whose last name starts with the given name in {@link #ORDER},
+	 * followed by those with a similar last name in {@link OwnerNameMatcher#RANK}
+	 */
+	List<OwnerName> match(String lastName, int limit) {
+		build();
+		return this.state.match(fold(Objects.toString(lastName, "")), limit);
+	}
+
+	private static OwnerName entry(OwnerName name) {
+		Objects.requireNonNull(name.id(), "Owner must have an id");
+		return new OwnerName(name.id(), Objects.toString(name.firstName(), ""), Objects.toString(name.lastName(), ""));
+	}
+
+	static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static String fold(String s) {
+		char[] folded = new char[s.length()];
+		for (int i = 0; i < folded.length; i++) {
+			folded[i] = fold(s.charAt(i));
+		}
+		return new String(folded);
+	}
+
+	private static int compareFolded(String a, String b) {
+		int length = Math.min(a.length(), b.length());
+		for (int i = 0; i < length; i++) {
+			int diff = fold(a.charAt(i)) - fold(b.charAt(i));
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return a.length() - b.length();
+	}
+
+	/**
+	 * Compare the case-folded characters in the given range with a case-folded string.
+	 */
+	private static int compareFolded(char[] chars, int from, int to, String folded) {
+		int length = Math.min(to - from, folded.length());
+		for (int i = 0; i < length; i++) {
+			int diff = fold(chars[from + i]) - fold(folded.charAt(i));
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return (to - from) - folded.length();
+	}
+
+	private static int compareFolded(char[] a, int fromA, int toA, char[] b, int fromB, int toB) {
+		int length = Math.min(toA - fromA, toB - fromB);
+		for (int i = 0; i < length; i++) {
+			int diff = fold(a[fromA + i]) - fold(b[fromB + i]);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return (toA - fromA) - (toB - fromB);
+	}
+
+	private static boolean startsWithFolded(char[] chars, int from, int to, String folded) {
+		if (to - from < folded.length()) {
+			return false;
+		}
+		for (int i = 0; i < folded.length(); i++) {
+			if (fold(chars[from + i]) != folded.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean startsWithFolded(String s, String folded) {
+		if (s.length() < folded.length()) {
+			return false;
+		}
+		for (int i = 0; i < folded.length(); i++) {
+			if (fold(s.charAt(i)) != folded.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A base and the overlay of owners saved since, sorted in {@link #ORDER}, which
+	 * replace the base entries with the same ids.
+	 */
+	private record State(Base base, OwnerName[] overlay, int[] overlaidIds, int[] overlayKeys) {
+
+		State(Base base, OwnerName[] overlay) {
+			this(base, overlay, Arrays.stream(overlay).mapToInt(OwnerName::id).sorted().toArray(),
+					Arrays.stream(overlay).mapToInt((name) -> OwnerNameMatcher.keys(name.lastName())).toArray());
+		}
+
+		List<OwnerName> complete(String folded, int limit) {
+			return complete(folded, 0, limit, (id) -> true);
+		}
+
+		List<OwnerName> complete(String folded, int offset, int limit, IntPredicate accepted) {
+			List<OwnerName> completions = new ArrayList<>(Math.min(limit, 64));
+			int i = this.base.lowerBound(folded);
+			int j = lowerBound(this.overlay, folded);
+			int skipped = 0;
+			OwnerName fromBase = null;
+			while (completions.size() < limit) {
+				if (fromBase == null) {
+					while (i < this.base.size() && this.base.startsWith(i, folded)
+							&& (isOverlaid(this.base.id(i)) || !accepted.test(this.base.id(i)))) {
+						i++;
+					}
+					if (i < this.base.size() && this.base.startsWith(i, folded)) {
+						fromBase = this.base.get(i++);
+					}
+				}
+				while (j < this.overlay.length && startsWithFolded(this.overlay[j].lastName(), folded)
+						&& !accepted.test(this.overlay[j].id())) {
+					j++;
+				}
+				OwnerName fromOverlay = (j < this.overlay.length
+						&& startsWithFolded(this.overlay[j].lastName(), folded)) ? this.overlay[j] : null;
+				OwnerName next;
+				if (fromBase != null && (fromOverlay == null || ORDER.compare(fromBase, fromOverlay) <= 0)) {
+					next = fromBase;
+					fromBase = null;
+				}
+				else if (fromOverlay != null) {
+					next = fromOverlay;
+					j++;
+				}
+				else {
+					break;
+				}
+				if (skipped < offset) {
+					skipped++;
+				}
+				else {
+					completions.add(next);
+				}
+			}
+			return completions;
+		}
+
+		IdBitmap ids(String folded) {
+			int[] ids = new int[16];
+			int count = 0;
+			for (int i = this.base.lowerBound(folded); i < this.base.size() && this.base.startsWith(i, folded); i++) {
+				if (!isOverlaid(this.base.id(i))) {
+					if (count == ids.length) {
+						ids = Arrays.copyOf(ids, count * 2);
+					}
+					ids[count++] = this.base.id(i);
+				}
+			}
+			for (int j = lowerBound(this.overlay, folded); j < this.overlay.length
+					&& startsWithFolded(this.overlay[j].lastName(), folded); j++) {
+				if (count == ids.length) {
+					ids = Arrays.copyOf(ids, count * 2);
+				}
+				ids[count++] = this.overlay[j].id();
+			}
+			return IdBitmap.of(Arrays.copyOf(ids, count));
+		}
+
+		List<OwnerName> match(String folded, int limit) {
+			List<OwnerName> matches = complete(folded, limit);
+			OwnerNameMatcher.Query query = new OwnerNameMatcher.Query(folded);
+			int wanted = limit - matches.size();
+			if (wanted <= 0 || !query.isFuzzy()) {
+				return matches;
+			}
+			List<Similar> similar = new ArrayList<>();
+			for (OwnerNameMatcher.Match match : this.base.matcher().match(query)) {
+				int taken = 0;
+				for (int i = this.base.firstOfTerm(match.name()); i < this.base.firstOfTerm(match.name() + 1)
+						&& taken < wanted; i++) {
+					if (!isOverlaid(this.base.id(i))) {
+						similar.add(new Similar(this.base.get(i), match));
+						taken++;
+					}
+				}
+				// the owners of later names rank after those of this one
+				if (similar.size() >= wanted) {
+					break;
+				}
+			}
+			for (int i = 0; i < this.overlay.length; i++) {
+				char[] lastName = this.overlay[i].lastName().toCharArray();
+				OwnerNameMatcher.Match match = query.match(-1, lastName, 0, lastName.length, this.overlayKeys[i]);
+				if (match != null) {
+					similar.add(new Similar(this.overlay[i], match));
+				}
+			}
+			similar.sort(Similar.RANK);
+			similar.stream().limit(wanted).forEach((match) -> matches.add(match.owner()));
+			return matches;
+		}
+
+		private boolean isOverlaid(int id) {
+			return this.overlaidIds.length > 0 && Arrays.binarySearch(this.overlaidIds, id) >= 0;
+		}
+
+		private static int lowerBound(OwnerName[] overlay, String folded) {
+			int low = 0;
+			int high = overlay.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (compareFolded(overlay[mid].lastName(), folded) < 0) {
+					low = mid + 1;
+				}
+				else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+	}
+
+	/**
+	 * An owner whose last name is similar to the one searched.
+	 */
+	private record Similar(OwnerName owner, OwnerNameMatcher.Match match) {
+
+		static final Comparator<Similar> RANK = Comparator.comparingInt((Similar similar) -> similar.match().distance())
+			.thenComparing((similar) -> similar.match().phonetic(), Comparator.reverseOrder())
+			.thenComparing(Similar::owner, ORDER);
+
+	}
+
+	/**
+	 * Owner names sorted in {@link #ORDER}, stored as the last name followed by the first
+	 * name of every entry in a single char array.
+	 */
+	private static final class Base {
+
+		private final char[] chars;
+
+		/**
+		 * Where the last name of every entry starts, followed by the end of the last
+		 * entry.
+		 */
+		private final int[] starts;
+
+		private final int[] firstNameStarts;
+
+		private final int[] ids;
+
+		/**
+		 * Where the entries of every distinct case-folded last name start, followed by
+		 * the number of entries, once matched.
+		 */
+		private int[] termStarts;
+
+		private volatile OwnerNameMatcher matcher;
+
+		private Base(char[] chars, int[] starts, int[] firstNameStarts, int[] ids) {
+			this.chars = chars;
+			this.starts = starts;
+			this.firstNameStarts = firstNameStarts;
+			this.ids = ids;
+		}
+
+		/**
+		 * Create a base of the given names, which must be sorted in {@link #ORDER}.
+		 */
+		static Base of(Collection<OwnerName> names) {
+			int length = 0;
+			for (OwnerName name : names) {
+				length += name.lastName().length() + name.firstName().length();
+			}
+			char[] chars = new char[length];
+			int[] starts = new int[names.size() + 1];
+			int[] firstNameStarts = new int[names.size()];
+			int[] ids = new int[names.size()];
+			int i = 0;
+			int end = 0;
+			for (OwnerName name : names) {
+				starts[i] = end;
+				name.lastName().getChars(0, name.lastName().length(), chars, end);
+				end += name.lastName().length();
+				firstNameStarts[i] = end;
+				name.firstName().getChars(0, name.firstName().length(), chars, end);
+				end += name.firstName().length();
+				ids[i++] = name.id();
+			}
+			starts[i] = end;
+			return new Base(chars, starts, firstNameStarts, ids);
+		}
+
+		int size() {
+			return this.ids.length;
+		}
+
+		int id(int i) {
+			return this.ids[i];
+		}
+
+		OwnerName get(int i) {
+			return new OwnerName(this.ids[i],
+					new String(this.chars, this.firstNameStarts[i], this.starts[i + 1] - this.firstNameStarts[i]),
+					new String(this.chars, this.starts[i], this.firstNameStarts[i] - this.starts[i]));
+		}
+
+		/**
+		 * Return the first entry whose case-folded last name is not less than the given
+		 * one.
+		 */
+		int lowerBound(String folded) {
+			int low = 0;
+			int high = size();
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (compareFolded(this.chars, this.starts[mid], this.firstNameStarts[mid], folded) < 0) {
+					low = mid + 1;
+				}
+				else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		boolean startsWith(int i, String folded) {
+			return startsWithFolded(this.chars, this.starts[i], this.firstNameStarts[i], folded);
+		}
+
+		/**
+		 * Return the matcher of the distinct last names, whose indexes are passed to
+		 * {@link #firstOfTerm(int)}, building it on the first call.
+		 */
+		OwnerNameMatcher matcher() {
+			OwnerNameMatcher matcher = this.matcher;
+			if (matcher == null) {
+				synchronized (this) {
+					matcher = this.matcher;
+					if (matcher == null) {
+						matcher = buildMatcher();
+						this.matcher = matcher;
+					}
+				}
+			}
+			return matcher;
+		}
+
+		private OwnerNameMatcher buildMatcher() {
+			int[] termStarts = new int[size() + 1];
+			int terms = 0;
+			for (int i = 0; i < size(); i++) {
+				if (terms == 0 || compareFolded(this.chars, this.starts[i], this.firstNameStarts[i], this.chars,
+						this.starts[termStarts[terms - 1]], this.firstNameStarts[termStarts[terms - 1]]) != 0) {
+					termStarts[terms++] = i;
+				}
+			}
+			termStarts[terms] = size();
+			this.termStarts = Arrays.copyOf(termStarts, terms + 1);
+			int[] from = new int[terms];
+			int[] to = new int[terms];
+			for (int term = 0; term < terms; term++) {
+				from[term] = this.starts[termStarts[term]];
+				to[term] = this.firstNameStarts[termStarts[term]];
+			}
+			return new OwnerNameMatcher(this.chars, from, to);
+		}
+
+		/**
+		 * Return the first entry with the given distinct last name of the
+		 * {@link #matcher()}, or the number of entries past the last one.
+		 */
+		int firstOfTerm(int term) {
+			return this.termStarts[term];
+		}
+
+	}
+
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.codec.language.DoubleMetaphone;
+
+/**
+ * Finds the names similar to a possibly misspelled one among a fixed set of names,
+ * ignoring case. A name is similar if it is within a few edits of the misspelled one, or
+ * if both sound alike, that is they share a Double Metaphone key, and it is within some
+ * more edits. Names starting with the misspelled one are no matches, as completing it
+ * finds them already.
+ * <p>
+ * Candidates are found without looking at every name: a name within {@code k} edits
+ * shares all but {@code 3k} of the distinct trigrams of the misspelled one, padded at
+ * both ends, so only the names sharing as many trigrams are compared, after counting them
+ * in the lists of names per trigram. The names sounding alike come from the lists of
+ * names per phonetic key. Both kinds of lists are held in int arrays, hashing trigrams to
+ * 18 bits and encoding keys in 16 bits, so the matcher costs about ten ints per name.
+ */
+final class OwnerNameMatcher {
+
+	/**
+	 * Length of the misspelled names below which nothing is similar, as nearly any name
+	 * is within an edit or sounds alike then.
+	 */
+	static final int MIN_LENGTH = 3;
+
+	/**
+	 * Length of the misspelled names above which nothing is similar, as they are no
+	 * names.
+	 */
+	static final int MAX_LENGTH = 64;
+
+	/**
+	 * Ranks the matches by their distance, those sounding alike first, and then as the
+	 * names.
+	 */
+	static final Comparator<Match> RANK = Comparator.comparingInt(Match::distance)
+		.thenComparing(Match::phonetic, Comparator.reverseOrder())
+		.thenComparingInt(Match::name);
+
+	private static final DoubleMetaphone METAPHONE = new DoubleMetaphone();
+
+	/**
+	 * The characters Double Metaphone keys consist of, encoded in four bits each.
+	 */
+	private static final String PHONETIC_ALPHABET = "0AFHJKLMNPRSTX";
+
+	private static final int GRAM_BITS = 6;
+
+	private static final int GRAMS = 1 << (3 * GRAM_BITS);
+
+	private static final int KEYS = 1 << 16;
+
+	private final char[] chars;
+
+	private final int[] from;
+
+	private final int[] to;
+
+	/**
+	 * The phonetic keys of every name, see {@link #keys(CharSequence)}.
+	 */
+	private final int[] keys;
+
+	/**
+	 * Where the names of every trigram start in {@link #gramNames}, followed by the end
+	 * of the last trigram.
+	 */
+	private final int[] gramStarts;
+
+	private final int[] gramNames;
+
+	/**
+	 * Where the names of every phonetic key start in {@link #keyNames}, followed by the
+	 * end of the last key.
+	 */
+	private final int[] keyStarts;
+
+	private final int[] keyNames;
+
+	/**
+	 * Create a matcher of the names held in the given ranges of a char array.
+	 * @param chars the characters of the names
+	 * @param from where every name starts
+	 * @param to where every name ends
+	 */
+	OwnerNameMatcher(char[] chars, int[] from, int[] to) {
+		int names = from.length;
+		this.chars = chars;
+		this.from = from;
+		this.to = to;
+		this.keys = new int[names];
+		this.gramStarts = new int[GRAMS + 1];
+		this.keyStarts = new int[KEYS + 1];
+		int[] grams = new int[MAX_LENGTH + 2];
+		int gramCount = 0;
+		int keyCount = 0;
+		for (int name = 0; name < names; name++) {
+			int length = grams(chars, from[name], to[name], grams);
+			for (int i = 0; i < length; i++) {
+				this.gramStarts[grams[i] + 1]++;
+			}
+			gramCount += length;
+			this.keys[name] = keys(new String(chars, from[name], to[name] - from[name]));
+			for (int key : distinctKeys(this.keys[name])) {
+				this.keyStarts[key + 1]++;
+				keyCount++;
+			}
+		}
+		Arrays.parallelPrefix(this.gramStarts, Integer::sum);
+		Arrays.parallelPrefix(this.keyStarts, Integer::sum);
+		this.gramNames = new int[gramCount];
+		this.keyNames = new int[keyCount];
+		int[] gramEnds = Arrays.copyOf(this.gramStarts, GRAMS);
+		int[] keyEnds = Arrays.copyOf(this.keyStarts, KEYS);
+		for (int name = 0; name < names; name++) {
+			int length = grams(chars, from[name], to[name], grams);
+			for (int i = 0; i < length; i++) {
+				this.gramNames[gramEnds[grams[i]]++] = name;
+			}
+			for (int key : distinctKeys(this.keys[name])) {
+				this.keyNames[keyEnds[key]++] = name;
+			}
+		}
+	}
+
+	/**
+	 * Find the names similar to the given one.
+	 * @param query the possibly misspelled name
+	 * @return the matching names in {@link #RANK}
+	 */
+	List<Match> match(Query query) {
+		List<Match> matches = new ArrayList<>();
+		if (!query.isFuzzy()) {
+			return matches;
+		}
+		// names sharing enough trigrams, and then those sounding alike, are compared once
+		// as their count reaches the threshold, which no count exceeds afterwards
+		byte[] shared = new byte[this.from.length];
+		int threshold = query.grams.length - 3 * query.maxEdits;
+		if (threshold > 0) {
+			for (int gram : query.grams) {
+				for (int i = this.gramStarts[gram]; i < this.gramStarts[gram + 1]; i++) {
+					int name = this.gramNames[i];
+					if (++shared[name] == threshold) {
+						addMatch(query, name, matches);
+					}
+				}
+			}
+		}
+		int compared = Math.max(threshold, 1);
+		for (int key : distinctKeys(query.keys)) {
+			for (int i = this.keyStarts[key]; i < this.keyStarts[key + 1]; i++) {
+				int name = this.keyNames[i];
+				if (shared[name] < compared) {
+					shared[name] = Byte.MAX_VALUE;
+					addMatch(query, name, matches);
+				}
+			}
+		}
+		matches.sort(RANK);
+		return matches;
+	}
+
+	private void addMatch(Query query, int name, List<Match> matches) {
+		Match match = query.match(name, this.chars, this.from[name], this.to[name], this.keys[name]);
+		if (match != null) {
+			matches.add(match);
+		}
+	}
+
+	/**
+	 * Return the Double Metaphone keys of the given name, the primary one in the upper
+	 * and the alternate one in the lower 16 bits, with 0 for a missing key.
+	 */
+	static int keys(CharSequence name) {
+		String value = name.toString();
+		return (encode(METAPHONE.doubleMetaphone(value, false)) << 16) | encode(METAPHONE.doubleMetaphone(value, true));
+	}
+
+	private static int encode(String key) {
+		int code = 0;
+		if (key != null) {
+			for (int i = 0; i < key.length() && i < 4; i++) {
+				int symbol = PHONETIC_ALPHABET.indexOf(key.charAt(i)) + 1;
+				code = (code << 4) | ((symbol > 0) ? symbol : 0xF);
+			}
+		}
+		return code;
+	}
+
+	private static int[] distinctKeys(int keys) {
+		int primary = keys >>> 16;
+		int alternate = keys & 0xFFFF;
+		if (primary == 0) {
+			return new int[0];
+		}
+		return (alternate == 0 || alternate == primary) ? new int[] { primary } : new int[] { primary, alternate };
+	}
+
+	/**
+	 * Write the distinct trigrams of a name, padded with two blanks at both ends, in
+	 * ascending order.
+	 * @return the number of trigrams written
+	 */
+	private static int grams(char[] chars, int from, int to, int[] grams) {
+		int length = Math.min(to - from, MAX_LENGTH);
+		int count = length + 2;
+		int previous = 0;
+		int current = 0;
+		for (int i = 0; i < count; i++) {
+			int next = (i < length) ? symbol(chars[from + i]) : 0;
+			grams[i] = (previous << (2 * GRAM_BITS)) | (current << GRAM_BITS) | next;
+			previous = current;
+			current = next;
+		}
+		Arrays.sort(grams, 0, count);
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			if (distinct == 0 || grams[distinct - 1] != grams[i]) {
+				grams[distinct++] = grams[i];
+			}
+		}
+		return distinct;
+	}
+
+	private static int symbol(char c) {
+		char folded = OwnerNameIndex.fold(c);
+		if (folded >= 'a' && folded <= 'z') {
+			return folded - 'a' + 1;
+		}
+		return 27 + folded % 37;
+	}
+
+	/**
+	 * Return the edit distance between the case-folded {@code a} and the given range,
+	 * counting insertions, deletions and substitutions of characters.
+	 * @param bound the largest distance of interest
+	 * @return the distance, or {@code bound + 1} if it is larger than the bound
+	 */
+	static int distance(String a, char[] chars, int from, int to, int bound) {
+		int n = to - from;
+		if (Math.abs(a.length() - n) > bound) {
+			return bound + 1;
+		}
+		int[] previous = new int[n + 1];
+		int[] current = new int[n + 1];
+		for (int j = 0; j <= n; j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			char c = a.charAt(i - 1);
+			current[0] = i;
+			int smallest = i;
+			for (int j = 1; j <= n; j++) {
+				int substitution = previous[j - 1] + ((OwnerNameIndex.fold(chars[from + j - 1]) == c) ? 0 : 1);
+				current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+				smallest = Math.min(smallest, current[j]);
+			}
+			if (smallest > bound) {
+				return bound + 1;
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return Math.min(previous[n], bound + 1);
+	}
+
+	/**
+	 * A name similar to the one searched.
+	 *
+	 * @param name the index of the name, or {@code -1} for a name that is not part of the
+	 * matcher
+	 * @param distance the edit distance between both names
+	 * @param phonetic whether both names sound alike
+	 */
+	record Match(int name, int distance, boolean phonetic) {
+
+	}
+
+	/**
+	 * A possibly misspelled name, analysed to be matched against names.
+	 */
+	static final class Query {
+
+		private final String folded;
+
+		private final int maxEdits;
+
+		private final int maxPhoneticEdits;
+
+		private final int keys;
+
+		private final int[] grams;
+
+		/**
+		 * Analyse the given name.
+		 * @param folded the case-folded name
+		 */
+		Query(String folded) {
+			int length = folded.length();
+			this.folded = folded;
+			this.maxEdits = (length < 6) ? 1 : 2;
+			this.maxPhoneticEdits = Math.max(this.maxEdits, length / 2);
+			if (isFuzzy()) {
+				int[] grams = new int[length + 2];
+				this.grams = Arrays.copyOf(grams, grams(folded.toCharArray(), 0, length, grams));
+				this.keys = keys(folded);
+			}
+			else {
+				this.grams = new int[0];
+				this.keys = 0;
+			}
+		}
+
+		/**
+		 * Return whether any name can be similar to this one, or whether it is too short
+		 * or too long to tell.
+		 */
+		boolean isFuzzy() {
+			return this.folded.length() >= MIN_LENGTH && this.folded.length() <= MAX_LENGTH;
+		}
+
+		/**
+		 * Match the name held in the given range.
+		 * @param name the index of the name to report
+		 * @param keys the phonetic keys of the name, see {@link OwnerNameMatcher#keys}
+		 * @return the match, or {@code null} if the name is not similar or starts with
+		 * this one
+		 */
+		Match match(int name, char[] chars, int from, int to, int keys) {
+			if (!isFuzzy() || startsWith(chars, from, to)) {
+				return null;
+			}
+			boolean phonetic = soundsLike(keys);
+			int bound = phonetic ? this.maxPhoneticEdits : this.maxEdits;
+			int distance = distance(this.folded, chars, from, to, bound);
+			return (distance <= bound) ? new Match(name, distance, phonetic) : null;
+		}
+
+		private boolean startsWith(char[] chars, int from, int to) {
+			if (to - from < this.folded.length()) {
+				return false;
+			}
+			for (int i = 0; i < this.folded.length(); i++) {
+				if (OwnerNameIndex.fold(chars[from + i]) != this.folded.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean soundsLike(int keys) {
+			for (int key : distinctKeys(keys)) {
+				for (int own : distinctKeys(this.keys)) {
+					if (key == own) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+	}
+
+}
@@ -15,15 +15,31 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.Repository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.QueryHint;
+
 /**
  * Repository class for <code>Owner</code> domain objects All method names are compliant
  * with Spring Data naming conventions so this interface can easily be extended for Spring
@@ -35,7 +51,7 @@ import org.springframework.transaction.annotation.Transactional;
  * @author Sam Brannen
  * @author Michael Isvy
  */
-public interface OwnerRepository extends Repository<Owner, Integer> {
+public interface OwnerRepository extends Repository<Owner, Integer>, OwnerEdits {
 
 	/**
 	 * Retrieve all {@link PetType}s from the data store.
@@ -46,30 +62,192 @@ public interface OwnerRepository extends Repository<Owner, Integer> {
 	List<PetType> findPetTypes();
 
 	/**
-	 * Retrieve {@link Owner}s from the data store by last name, returning all owners
-	 * whose last name <i>starts</i> with the given name.
+	 * Retrieve a window of {@link OwnerSummary owner summaries} whose last name
+	 * <i>starts</i> with the given name. A keyset {@link ScrollPosition} seeks straight
+	 * to the rows following (or preceding) the given keys rather than skipping an offset,
+	 * and no count query is issued. Only the owner columns are selected, pets are looked
+	 * up separately through {@link #findPetNamesByOwnerIds(Collection)}.
+	 * @param lastName Value to search for
+	 * @param position where to start scrolling from
+	 * @param limit maximum number of owners in the window
+	 * @param sort ordering of the window, must end with a unique property
+	 * @return a {@link Window} of matching {@link OwnerSummary owner summaries}
+	 */
+	@Transactional(readOnly = true)
+	Window<OwnerSummary> findSummariesByLastNameStartingWith(String lastName, ScrollPosition position, Limit limit,
+			Sort sort);
+
+	/**
+	 * Retrieve a window of {@link OwnerSummary owner summaries} by telephone, which is
+	 * stored without separators.
+	 * @param telephone Value to search for, without separators
+	 * @param position where to start scrolling from
+	 * @param limit maximum number of owners in the window
+	 * @param sort ordering of the window, must end with a unique property
+	 * @return a {@link Window} of matching {@link OwnerSummary owner summaries}
+	 */
+	@Transactional(readOnly = true)
+	Window<OwnerSummary> findSummariesByTelephone(String telephone, ScrollPosition position, Limit limit, Sort sort);
+
+	/**
+	 * Count the {@link Owner}s with the given telephone.
+	 * @param telephone Value to search for, without separators
+	 * @return the number of matching {@link Owner}s
+	 */
+	@Transactional(readOnly = true)
+	long countByTelephone(String telephone);
+
+	/**
+	 * Retrieve a slice of {@link OwnerSummary owner summaries} of the owners having a pet
+	 * whose name <i>starts</i> with the given name, each owner once. The pets are joined
+	 * with an inner join so that the database may start from the matching pets, which a
+	 * derived query joining them with an outer join would not allow.
+	 * @param petName Value to search for
+	 * @param pageable the page to retrieve, sorted
+	 * @return a {@link Slice} of matching {@link OwnerSummary owner summaries}
+	 */
+	@Query("""
+			SELECT DISTINCT new org.springframework.samples.petclinic.owner.OwnerSummary(owner.id, owner.firstName,
+			owner.lastName, owner.address, owner.city, owner.telephone)
+			FROM Owner owner JOIN owner.pets pet WHERE pet.name LIKE :petName%""")
+	@Transactional(readOnly = true)
+	Slice<OwnerSummary> findSummariesByPetName(@Param("petName") String petName, Pageable pageable);
+
+	/**
+	 * Count the {@link Owner}s having a pet whose name <i>starts</i> with the given name.
+	 * @param petName Value to search for
+	 * @return the number of matching {@link Owner}s
+	 */
+	@Query("SELECT count(DISTINCT owner.id) FROM Owner owner JOIN owner.pets pet WHERE pet.name LIKE :petName%")
+	@Transactional(readOnly = true)
+	long countByPetName(@Param("petName") String petName);
+
+	/**
+	 * Retrieve the names of the pets of the given {@link Owner}s, joined into a single
+	 * string per owner in the database. Owners without pets are omitted.
+	 * @param ownerIds the ids of the owners
+	 * @return the pet names per owner
+	 */
+	@Query("""
+			SELECT owner.id AS ownerId, listagg(pet.name, ', ') WITHIN GROUP (ORDER BY pet.name) AS petNames
+			FROM Owner owner JOIN owner.pets pet WHERE owner.id IN :ownerIds GROUP BY owner.id""")
+	@Transactional(readOnly = true)
+	List<OwnerPetNames> findPetNamesByOwnerIds(@Param("ownerIds") Collection<Integer> ownerIds);
+
+	/**
+	 * Retrieve the names of all {@link Owner}s, without loading the owners themselves.
+	 * @return the names of all owners
+	 */
+	@Query("SELECT new org.springframework.samples.petclinic.owner.OwnerName(owner.id, owner.firstName, owner.lastName) FROM Owner owner")
+	@Transactional(readOnly = true)
+	List<OwnerName> findAllNames();
+
+	/**
+	 * Retrieve the city and the pet types of all {@link Owner}s, ordered by owner id,
+	 * without loading the owners themselves.
+	 * @return the values of all owners, one per pet and one for every owner without pets
+	 */
+	@Query("""
+			SELECT new org.springframework.samples.petclinic.owner.OwnerFacetValues(owner.id, owner.city, pet.type.id)
+			FROM Owner owner LEFT JOIN owner.pets pet ORDER BY owner.id""")
+	@Transactional(readOnly = true)
+	List<OwnerFacetValues> findAllFacetValues();
+
+	/**
+	 * Stream all {@link Owner}s with their pets and visits as {@link OwnerExportRow rows}
+	 * of a single query, ordered by owner, pet and visit. The rows are fetched from a
+	 * forward-only cursor a few hundred at a time and no entities are loaded, so reading
+	 * them takes the same memory however many owners there are. The stream must be read
+	 * and closed within the read-only transaction it was opened in.
+	 * @return the rows of all owners
+	 */
+	@Query("""
+			SELECT new org.springframework.samples.petclinic.owner.OwnerExportRow(owner.id, owner.firstName,
+			owner.lastName, owner.address, owner.city, owner.telephone, pet.id, pet.name, pet.birthDate, type.name,
+			visit.id, visit.date, visit.description)
+			FROM Owner owner LEFT JOIN owner.pets pet LEFT JOIN pet.type type LEFT JOIN pet.visits visit
+			ORDER BY owner.id, pet.id, visit.id""")
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+	@Transactional(readOnly = true, propagation = Propagation.MANDATORY)
+	Stream<OwnerExportRow> streamExportRows();
+
+	/**
+	 * Retrieve the {@link OwnerSummary owner summaries} of the given {@link Owner}s.
+	 * @param ids the ids of the owners
+	 * @return the summaries of the owners found, in no particular order
+	 */
+	@Transactional(readOnly = true)
+	List<OwnerSummary> findSummariesByIdIn(Collection<Integer> ids);
+
+	/**
+	 * Count the {@link Owner}s whose last name <i>starts</i> with the given name.
 	 * @param lastName Value to search for
-	 * @return a Collection of matching {@link Owner}s (or an empty Collection if none
-	 * found)
+	 * @return the number of matching {@link Owner}s
+	 */
+	@Transactional(readOnly = true)
+	long countByLastNameStartingWith(String lastName);
+
+	/**
+	 * Retrieve an {@link Owner} from the data store by id, together with its pets and
+	 * their visits. The visits are fetched by a second query, as fetching them along with
+	 * the pets would repeat a pet in the list of pets once per visit.
+	 * @param id the id to search for
+	 * @return the {@link Owner} if found
+	 */
+	@Transactional(readOnly = true)
+	default Owner findById(Integer id) {
+		Owner owner = findWithPetTypesById(id);
+		if (owner != null && !owner.getPets().isEmpty()) {
+			findPetsWithVisitsByOwnerId(id);
+		}
+		return owner;
+	}
+
+	/**
+	 * Retrieve an {@link Owner} from the data store by id, together with its pets,
+	 * bypassing the cache of owners.
+	 * @param id the id to search for
+	 * @return the {@link Owner} if found
 	 */
+	@Query("SELECT owner FROM Owner owner WHERE owner.id =:id")
+	@EntityGraph(Owner.PETS_GRAPH)
+	@Transactional(readOnly = true)
+	Owner findWithPetTypesById(@Param("id") Integer id);
 
-	@Query("SELECT DISTINCT owner FROM Owner owner left join  owner.pets WHERE owner.lastName LIKE :lastName% ")
+	/**
+	 * Retrieve the pets of an {@link Owner} together with their visits, which fills in
+	 * the visits of the pets already loaded in the same transaction.
+	 * @param ownerId the id of the owner
+	 * @return the pets of the owner
+	 */
+	@Query("SELECT pet FROM Owner owner JOIN owner.pets pet LEFT JOIN FETCH pet.visits WHERE owner.id = :ownerId")
 	@Transactional(readOnly = true)
-	Page<Owner> findByLastName(@Param("lastName") String lastName, Pageable pageable);
+	List<Pet> findPetsWithVisitsByOwnerId(@Param("ownerId") Integer ownerId);
 
 	/**
-	 * Retrieve an {@link Owner} from the data store by id.
+	 * Retrieve an {@link Owner} from the data store by id, together with its pets but
+	 * without their visits. Owners are cached by id, and so are ids without an owner for
+	 * a short while. Every caller gets its own copy of the cached owner.
 	 * @param id the id to search for
 	 * @return the {@link Owner} if found
 	 */
-	@Query("SELECT owner FROM Owner owner left join fetch owner.pets WHERE owner.id =:id")
+	@Query("SELECT owner FROM Owner owner WHERE owner.id =:id")
+	@EntityGraph(Owner.PETS_GRAPH)
 	@Transactional(readOnly = true)
-	Owner findById(@Param("id") Integer id);
+	@Cacheable(cacheNames = "owners", key = "#id")
+	Owner findWithPetsById(@Param("id") Integer id);
 
 	/**
-	 * Save an {@link Owner} to the data store, either inserting or updating it.
+	 * Save an {@link Owner} to the data store, either inserting or updating it. This
+	 * includes changes to its pets and visits, so the cached owner is evicted, before as
+	 * well so that a version conflict is not repeated from a stale copy.
 	 * @param owner the {@link Owner} to save
+	 * @throws org.springframework.dao.OptimisticLockingFailureException if the owner or
+	 * one of its pets was changed meanwhile
 	 */
+	@Caching(evict = {
+			@CacheEvict(cacheNames = "owners", key = "#owner.id", condition = "!#owner.new", beforeInvocation = true),
+			@CacheEvict(cacheNames = "owners", key = "#owner.id") })
 	void save(Owner owner);
 
 	/**
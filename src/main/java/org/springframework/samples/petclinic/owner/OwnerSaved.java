@@ -0,0 +1,29 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Set;
+
+/**
+ * Published once an {@link Owner} was saved, which may have changed the owner itself, its
+ * pets or their visits.
+ *
+ * @param ownerId the id of the saved owner
+ * @param city the city of the owner as saved
+ * @param petTypeIds the ids of the types of the pets of the owner as saved
+ */
+public record OwnerSaved(Integer ownerId, String city, Set<Integer> petTypeIds) {
+}
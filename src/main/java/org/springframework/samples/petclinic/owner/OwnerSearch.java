@@ -0,0 +1,188 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NoOpCache;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.samples.petclinic.system.SingleFlight;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * Searches owners by the start of their last name. Identical searches running at the same
+ * time, as when several desks look up the same name, share a single execution of the
+ * queries and all receive its result.
+ * <p>
+ * Results are kept in the {@value #CACHE_NAME} cache, one entry per lower-cased searched
+ * prefix holding the windows scrolled through so far, the numbers of matching owners for
+ * the prefix as searched and their numbers per city and pet type. Whether the search
+ * ignores case depends on the database, so searches differing in case share an entry but
+ * not their results. A change to an owner only affects the searches for prefixes of its
+ * last name, in any case, so only those are {@link #invalidate(String...) invalidated},
+ * which happens after the {@link OwnerFacetIndex} followed the change. Without that
+ * cache, every search runs the queries and counts.
+ */
+@Component
+class OwnerSearch {
+
+	static final String CACHE_NAME = "owner-searches";
+
+	/**
+	 * How many windows are kept per prefix at most, further windows are not cached.
+	 */
+	static final int MAX_WINDOWS_PER_PREFIX = 20;
+
+	private final OwnerRepository owners;
+
+	private final OwnerFacetIndex facets;
+
+	private final Cache results;
+
+	private final SingleFlight<Page, Window<OwnerSummary>> pages;
+
+	private final SingleFlight<String, Long> counts;
+
+	OwnerSearch(OwnerRepository owners, OwnerFacetIndex facets, ObjectProvider<CacheManager> cacheManagers,
+			ObjectProvider<MeterRegistry> meterRegistries) {
+		MeterRegistry meterRegistry = meterRegistries.getIfAvailable(() -> Metrics.globalRegistry);
+		CacheManager cacheManager = cacheManagers.getIfAvailable();
+		Cache results = (cacheManager != null) ? cacheManager.getCache(CACHE_NAME) : null;
+		this.owners = owners;
+		this.facets = facets;
+		this.results = (results != null) ? results : new NoOpCache(CACHE_NAME);
+		this.pages = new SingleFlight<>("owners.search", meterRegistry);
+		this.counts = new SingleFlight<>("owners.count", meterRegistry);
+	}
+
+	/**
+	 * Return a window of the owners whose last name starts with the given name, ordered
+	 * by {@link OwnerCursor#SORT}.
+	 * @param lastName the start of the last name
+	 * @param position where to start scrolling from
+	 * @param limit maximum number of owners in the window
+	 * @return the window of matching owners
+	 */
+	Window<OwnerSummary> findSummaries(String lastName, ScrollPosition position, Limit limit) {
+		String prefix = normalize(lastName);
+		// taken before querying, so that a result read before an invalidation is not
+		// cached after it
+		Results cached = results(prefix);
+		Page page = new Page(prefix, position, limit);
+		Window<OwnerSummary> window = cached.windows.get(page);
+		if (window == null) {
+			window = this.pages.execute(page,
+					() -> this.owners.findSummariesByLastNameStartingWith(prefix, position, limit, OwnerCursor.SORT));
+			cached.put(page, window);
+		}
+		return window;
+	}
+
+	/**
+	 * Count the owners whose last name starts with the given name.
+	 * @param lastName the start of the last name
+	 * @return the number of matching owners
+	 */
+	long count(String lastName) {
+		String prefix = normalize(lastName);
+		Results cached = results(prefix);
+		Long count = cached.counts.get(prefix);
+		if (count == null) {
+			count = this.counts.execute(prefix, () -> this.owners.countByLastNameStartingWith(prefix));
+			cached.counts.put(prefix, count);
+		}
+		return count;
+	}
+
+	/**
+	 * Count the owners whose last name starts with the given name per city and per pet
+	 * type.
+	 * @param lastName the start of the last name
+	 * @return the selection of all cities and pet types
+	 */
+	OwnerFacetIndex.Selection facets(String lastName) {
+		String prefix = normalize(lastName);
+		Results cached = results(prefix);
+		OwnerFacetIndex.Selection selection = cached.facets.get(prefix);
+		if (selection == null) {
+			selection = this.facets.select(prefix, null, null);
+			cached.facets.put(prefix, selection);
+		}
+		return selection;
+	}
+
+	/**
+	 * Invalidate the searches whose results may include an owner with any of the given
+	 * last names, that is the searches for every prefix of these names.
+	 * @param lastNames the last names, {@code null} ones are ignored
+	 */
+	void invalidate(String... lastNames) {
+		for (String lastName : lastNames) {
+			if (lastName != null) {
+				String key = key(lastName);
+				for (int end = 0; end <= key.length(); end++) {
+					this.results.evict(key.substring(0, end));
+				}
+			}
+		}
+	}
+
+	private Results results(String prefix) {
+		return this.results.get(key(prefix), Results::new);
+	}
+
+	private static String key(String prefix) {
+		return prefix.toLowerCase(Locale.ROOT);
+	}
+
+	private static String normalize(String lastName) {
+		return (lastName != null) ? lastName : "";
+	}
+
+	private record Page(String lastName, ScrollPosition position, Limit limit) {
+
+	}
+
+	/**
+	 * The results of searching a prefix in any case, filled in as they are requested.
+	 */
+	private static final class Results {
+
+		private final Map<Page, Window<OwnerSummary>> windows = new ConcurrentHashMap<>();
+
+		private final Map<String, Long> counts = new ConcurrentHashMap<>();
+
+		private final Map<String, OwnerFacetIndex.Selection> facets = new ConcurrentHashMap<>();
+
+		void put(Page page, Window<OwnerSummary> window) {
+			if (this.windows.size() < MAX_WINDOWS_PER_PREFIX) {
+				this.windows.put(page, window);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Entity listener keeping the cached {@link OwnerSearch owner searches} and the
+ * {@link OwnerNameIndex owner name index} in step with the owners in the data store. It
+ * remembers the name an owner was loaded with and, when an owner is inserted or its row
+ * updated, invalidates the searches matching its previous or current last name.
+ * Invalidation happens once more after the transaction commits, as a search running in
+ * between may still have read the previous state. A changed name goes to the index once
+ * the transaction commits, so that a rolled back change never shows, unless the owner is
+ * being imported and goes to the index with its chunk. {@link OwnerEdits}, which writes
+ * owners without the persistence provider noticing, calls it itself.
+ * <p>
+ * Instantiated by the persistence provider through the Spring bean container, and a no-op
+ * where there is no {@link OwnerSearch} or index.
+ */
+class OwnerSearchListener {
+
+	private final ObjectProvider<OwnerSearch> search;
+
+	private final ObjectProvider<OwnerNameIndex> names;
+
+	OwnerSearchListener(ObjectProvider<OwnerSearch> search, ObjectProvider<OwnerNameIndex> names) {
+		this.search = search;
+		this.names = names;
+	}
+
+	@PostLoad
+	void loaded(Owner owner) {
+		owner.markLoaded();
+	}
+
+	@PostPersist
+	@PostUpdate
+	void saved(Owner owner) {
+		OwnerName previous = owner.getLoadedName();
+		OwnerName current = name(owner);
+		owner.markLoaded();
+		String previousLastName = (previous != null) ? previous.lastName() : null;
+		OwnerSearch search = this.search.getIfAvailable();
+		OwnerNameIndex names = (current.equals(previous) || owner.isImported()) ? null : this.names.getIfAvailable();
+		if (search != null) {
+			search.invalidate(previousLastName, current.lastName());
+		}
+		afterCommit(() -> {
+			// the index first, the cached facet counts of the searches are taken from it
+			if (names != null) {
+				names.update(current);
+			}
+			if (search != null) {
+				search.invalidate(previousLastName, current.lastName());
+			}
+		});
+	}
+
+	private static OwnerName name(Owner owner) {
+		return new OwnerName(owner.getId(), owner.getFirstName(), owner.getLastName());
+	}
+
+	private static void afterCommit(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+		});
+	}
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+/**
+ * Read-only view of an {@link Owner} holding just the columns shown in the owners list.
+ * Fetching summaries never loads the pets or visits of an owner.
+ *
+ * @param id the owner id
+ * @param firstName the owner's first name
+ * @param lastName the owner's last name
+ * @param address the owner's address
+ * @param city the owner's city
+ * @param telephone the owner's telephone
+ */
+public record OwnerSummary(Integer id, String firstName, String lastName, String address, String city,
+		String telephone) {
+}
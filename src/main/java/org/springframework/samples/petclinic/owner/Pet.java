@@ -15,26 +15,37 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.io.Serializable;
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
+import org.hibernate.annotations.OptimisticLock;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.samples.petclinic.model.NamedEntity;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.FetchType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OrderBy;
+import jakarta.persistence.PostLoad;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 
 /**
  * Simple business object representing a pet.
+ * <p>
+ * Edits of a pet are checked against its {@link #getVersion() version}, which booking
+ * visits does not change. {@link OwnerEdits} writes only the columns an edit changed,
+ * which the pet tells from the state it was loaded with.
  *
  * @author Ken Krebs
  * @author Juergen Hoeller
@@ -52,11 +63,37 @@ public class Pet extends NamedEntity {
 	@JoinColumn(name = "type_id")
 	private PetType type;
 
-	@OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+	@Version
+	@Column(name = "version")
+	private Integer version;
+
+	@OneToMany(cascade = CascadeType.ALL)
 	@JoinColumn(name = "pet_id")
 	@OrderBy("visit_date ASC")
+	@OptimisticLock(excluded = true)
 	private final Set<Visit> visits = new LinkedHashSet<>();
 
+	private transient Owner indexedBy;
+
+	/**
+	 * The details as loaded from the data store, to tell which columns an edit changes.
+	 * Kept when the pet is copied out of the cache.
+	 */
+	@Transient
+	private Details loaded;
+
+	@Override
+	public void setId(Integer id) {
+		super.setId(id);
+		invalidateOwnerIndex();
+	}
+
+	@Override
+	public void setName(String name) {
+		super.setName(name);
+		invalidateOwnerIndex();
+	}
+
 	public void setBirthDate(LocalDate birthDate) {
 		this.birthDate = birthDate;
 	}
@@ -73,6 +110,14 @@ public class Pet extends NamedEntity {
 		this.type = type;
 	}
 
+	public Integer getVersion() {
+		return this.version;
+	}
+
+	public void setVersion(Integer version) {
+		this.version = version;
+	}
+
 	public Collection<Visit> getVisits() {
 		return this.visits;
 	}
@@ -81,4 +126,66 @@ public class Pet extends NamedEntity {
 		getVisits().add(visit);
 	}
 
+	/**
+	 * Remember the owner whose pet index holds this pet, so that the index can be dropped
+	 * when this pet's id or name changes.
+	 */
+	void setIndexedBy(Owner owner) {
+		this.indexedBy = owner;
+	}
+
+	private void invalidateOwnerIndex() {
+		if (this.indexedBy != null) {
+			this.indexedBy.invalidatePetIndex();
+		}
+	}
+
+	/**
+	 * Remember the current details as the ones in the data store, once loaded or saved.
+	 */
+	@PostLoad
+	void markLoaded() {
+		this.loaded = new Details(this);
+	}
+
+	/**
+	 * Take the version and loaded details of the given, current state of this pet, so
+	 * that the details of this pet are written over it.
+	 * @param current the pet as currently stored
+	 */
+	void rebase(Pet current) {
+		this.version = current.version;
+		this.loaded = current.loaded;
+	}
+
+	/**
+	 * Return the details changed since the pet was loaded, all of them if it was not.
+	 * @return the new values by attribute name
+	 */
+	Map<String, Object> changedDetails() {
+		Map<String, Object> changes = new LinkedHashMap<>();
+		Details current = new Details(this);
+		if (this.loaded == null || !Objects.equals(current.name(), this.loaded.name())) {
+			changes.put("name", getName());
+		}
+		if (this.loaded == null || !Objects.equals(current.birthDate(), this.loaded.birthDate())) {
+			changes.put("birthDate", this.birthDate);
+		}
+		if (this.loaded == null || !Objects.equals(current.typeId(), this.loaded.typeId())) {
+			changes.put("type", this.type);
+		}
+		return changes;
+	}
+
+	/**
+	 * The columns of a pet an edit may change.
+	 */
+	private record Details(String name, LocalDate birthDate, Integer typeId) implements Serializable {
+
+		Details(Pet pet) {
+			this(pet.getName(), pet.birthDate, (pet.type != null) ? pet.type.getId() : null);
+		}
+
+	}
+
 }
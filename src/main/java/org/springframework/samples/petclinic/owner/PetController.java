@@ -17,7 +17,11 @@ package org.springframework.samples.petclinic.owner;
 
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.Objects;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.util.StringUtils;
@@ -29,6 +33,7 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import jakarta.validation.Valid;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
@@ -44,21 +49,32 @@ class PetController {
 
 	private static final String VIEWS_PETS_CREATE_OR_UPDATE_FORM = "pets/createOrUpdatePetForm";
 
+	private static final int VISIT_PAGE_SIZE = 10;
+
 	private final OwnerRepository owners;
 
-	public PetController(OwnerRepository owners) {
+	private final VisitRepository visits;
+
+	private final OwnerLoader loader;
+
+	private final PetTypeRegistry petTypes;
+
+	public PetController(OwnerRepository owners, VisitRepository visits, OwnerLoader loader, PetTypeRegistry petTypes) {
 		this.owners = owners;
+		this.visits = visits;
+		this.loader = loader;
+		this.petTypes = petTypes;
 	}
 
 	@ModelAttribute("types")
 	public Collection<PetType> populatePetTypes() {
-		return this.owners.findPetTypes();
+		return this.petTypes.findAll();
 	}
 
 	@ModelAttribute("owner")
 	public Owner findOwner(@PathVariable("ownerId") int ownerId) {
 
-		Owner owner = this.owners.findById(ownerId);
+		Owner owner = this.loader.findWithPets(ownerId);
 		if (owner == null) {
 			throw new IllegalArgumentException("Owner ID not found: " + ownerId);
 		}
@@ -73,7 +89,7 @@ class PetController {
 			return new Pet();
 		}
 
-		Owner owner = this.owners.findById(ownerId);
+		Owner owner = this.loader.findWithPets(ownerId);
 		if (owner == null) {
 			throw new IllegalArgumentException("Owner ID not found: " + ownerId);
 		}
@@ -82,7 +98,8 @@ class PetController {
 
 	@InitBinder("owner")
 	public void initOwnerBinder(WebDataBinder dataBinder) {
-		dataBinder.setDisallowedFields("id");
+		// the version submitted is the pet's
+		dataBinder.setDisallowedFields("id", "version");
 	}
 
 	@InitBinder("pet")
@@ -116,7 +133,16 @@ class PetController {
 			return VIEWS_PETS_CREATE_OR_UPDATE_FORM;
 		}
 
-		this.owners.save(owner);
+		try {
+			this.owners.save(owner);
+		}
+		catch (OptimisticLockingFailureException ex) {
+			// the owner was loaded from a copy older than its row, the next attempt reads
+			// it
+			result.reject("conflict", "Changed by someone else meanwhile");
+			model.put("pet", pet);
+			return VIEWS_PETS_CREATE_OR_UPDATE_FORM;
+		}
 		redirectAttributes.addFlashAttribute("message", "New Pet has been Added");
 		return "redirect:/owners/{ownerId}";
 	}
@@ -130,15 +156,18 @@ class PetController {
 	}
 
 	@PostMapping("/pets/{petId}/edit")
-	public String processUpdateForm(@Valid Pet pet, BindingResult result, Owner owner, ModelMap model,
-			RedirectAttributes redirectAttributes) {
+	public String processUpdateForm(@Valid Pet pet, BindingResult result, Owner owner, @PathVariable("petId") int petId,
+			ModelMap model, RedirectAttributes redirectAttributes) {
+		if (pet.isNew() || owner.getPet(petId) != pet) {
+			throw new IllegalArgumentException("Pet ID not found: " + petId);
+		}
 
 		String petName = pet.getName();
 
 		// checking if the pet name already exist for the owner
 		if (StringUtils.hasText(petName)) {
 			Pet existingPet = owner.getPet(petName.toLowerCase(), false);
-			if (existingPet != null && existingPet.getId() != pet.getId()) {
+			if (existingPet != null && !Objects.equals(existingPet.getId(), pet.getId())) {
 				result.rejectValue("name", "duplicate", "already exists");
 			}
 		}
@@ -153,10 +182,36 @@ class PetController {
 			return VIEWS_PETS_CREATE_OR_UPDATE_FORM;
 		}
 
-		owner.addPet(pet);
-		this.owners.save(owner);
+		try {
+			this.owners.updatePet(owner, pet);
+		}
+		catch (OptimisticLockingFailureException ex) {
+			// keep the values entered, submitting them again writes them over the change
+			Owner current = this.owners.findWithPetsById(owner.getId());
+			Pet currentPet = (current != null) ? current.getPet(petId) : null;
+			if (currentPet == null) {
+				throw new IllegalArgumentException("Pet ID not found: " + petId);
+			}
+			pet.rebase(currentPet);
+			result.reject("conflict", "Changed by someone else meanwhile");
+			model.put("pet", pet);
+			return VIEWS_PETS_CREATE_OR_UPDATE_FORM;
+		}
 		redirectAttributes.addFlashAttribute("message", "Pet details has been edited");
 		return "redirect:/owners/{ownerId}";
 	}
 
+	@GetMapping("/pets/{petId}/visits")
+	public String showVisitHistory(Pet pet, @PathVariable("petId") int petId,
+			@RequestParam(defaultValue = "1") int page, ModelMap model) {
+		if (pet == null || pet.isNew()) {
+			throw new IllegalArgumentException("Pet ID not found: " + petId);
+		}
+		int currentPage = Math.max(page, 1);
+		Slice<Visit> visits = this.visits.findByPetId(petId, PageRequest.of(currentPage - 1, VISIT_PAGE_SIZE));
+		model.put("visits", visits);
+		model.put("currentPage", currentPage);
+		return "pets/visitHistory";
+	}
+
 }
@@ -16,7 +16,10 @@
 package org.springframework.samples.petclinic.owner;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 
+import org.springframework.data.domain.DomainEvents;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.samples.petclinic.model.BaseEntity;
 
@@ -27,6 +30,10 @@ import jakarta.validation.constraints.NotBlank;
 
 /**
  * Simple JavaBean domain object representing a visit.
+ * <p>
+ * Visits are usually saved together with their pet. A visit booked on its own through
+ * {@link VisitRepository#book(int, int, Visit)} is inserted with the id of its pet
+ * instead, and publishes {@link VisitBooked} once saved.
  *
  * @author Ken Krebs
  * @author Dave Syer
@@ -42,6 +49,18 @@ public class Visit extends BaseEntity {
 	@NotBlank
 	private String description;
 
+	/**
+	 * The visited pet, written when the visit is booked on its own. The pet's visits
+	 * collection maintains the column otherwise.
+	 */
+	@Column(name = "pet_id", updatable = false)
+	private Integer petId;
+
+	/**
+	 * The owner of the visited pet, when the visit is booked on its own.
+	 */
+	private transient Integer ownerId;
+
 	/**
 	 * Creates a new instance of Visit for the current date
 	 */
@@ -65,4 +84,21 @@ public class Visit extends BaseEntity {
 		this.description = description;
 	}
 
+	/**
+	 * Book this visit for the given pet of the given owner, to be saved on its own.
+	 */
+	void bookFor(Integer ownerId, Integer petId) {
+		this.ownerId = ownerId;
+		this.petId = petId;
+	}
+
+	/**
+	 * Return the events to publish once this visit was booked on its own, when it has its
+	 * id.
+	 */
+	@DomainEvents
+	Collection<VisitBooked> bookedEvents() {
+		return (this.ownerId != null) ? List.of(new VisitBooked(this.ownerId, this.petId, getId())) : List.of();
+	}
+
 }
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+/**
+ * Published once a {@link Visit} was booked on its own through
+ * {@link VisitRepository#book(int, int, Visit)}, without saving its owner.
+ *
+ * @param ownerId the id of the owner of the visited pet
+ * @param petId the id of the visited pet
+ * @param visitId the id of the booked visit
+ */
+public record VisitBooked(Integer ownerId, Integer petId, Integer visitId) {
+}
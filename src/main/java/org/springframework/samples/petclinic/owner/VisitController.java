@@ -22,7 +22,6 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.InitBinder;
-import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 
@@ -39,10 +38,15 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 @Controller
 class VisitController {
 
-	private final OwnerRepository owners;
+	private static final String VIEWS_VISIT_CREATE_OR_UPDATE_FORM = "pets/createOrUpdateVisitForm";
 
-	public VisitController(OwnerRepository owners) {
-		this.owners = owners;
+	private final VisitRepository visits;
+
+	private final OwnerLoader loader;
+
+	public VisitController(VisitRepository visits, OwnerLoader loader) {
+		this.visits = visits;
+		this.loader = loader;
 	}
 
 	@InitBinder
@@ -51,44 +55,41 @@ class VisitController {
 	}
 
 	/**
-	 * Called before each and every @RequestMapping annotated method. 2 goals: - Make sure
-	 * we always have fresh data - Since we do not use the session scope, make sure that
-	 * Pet object always has an id (Even though id is not part of the form fields)
-	 * @param petId
-	 * @return Pet
+	 * Put the owner and the pet to show with the visit form into the model, the pet with
+	 * its previous visits.
 	 */
-	@ModelAttribute("visit")
-	public Visit loadPetWithVisit(@PathVariable("ownerId") int ownerId, @PathVariable("petId") int petId,
-			Map<String, Object> model) {
-		Owner owner = this.owners.findById(ownerId);
+	private void addPetModel(int ownerId, int petId, Map<String, Object> model) {
+		Owner owner = this.loader.findWithVisits(ownerId);
 
 		Pet pet = owner.getPet(petId);
 		model.put("pet", pet);
 		model.put("owner", owner);
-
-		Visit visit = new Visit();
-		pet.addVisit(visit);
-		return visit;
 	}
 
-	// Spring MVC calls method loadPetWithVisit(...) before initNewVisitForm is
-	// called
 	@GetMapping("/owners/{ownerId}/pets/{petId}/visits/new")
-	public String initNewVisitForm() {
-		return "pets/createOrUpdateVisitForm";
+	public String initNewVisitForm(@PathVariable("ownerId") int ownerId, @PathVariable("petId") int petId,
+			Map<String, Object> model) {
+		addPetModel(ownerId, petId, model);
+		model.put("visit", new Visit());
+		return VIEWS_VISIT_CREATE_OR_UPDATE_FORM;
 	}
 
-	// Spring MVC calls method loadPetWithVisit(...) before processNewVisitForm is
-	// called
+	/**
+	 * Book the visit without loading the owner: only the ownership of the pet is checked
+	 * before the visit is inserted.
+	 */
 	@PostMapping("/owners/{ownerId}/pets/{petId}/visits/new")
-	public String processNewVisitForm(@ModelAttribute Owner owner, @PathVariable int petId, @Valid Visit visit,
-			BindingResult result, RedirectAttributes redirectAttributes) {
+	public String processNewVisitForm(@PathVariable("ownerId") int ownerId, @PathVariable("petId") int petId,
+			@Valid Visit visit, BindingResult result, Map<String, Object> model,
+			RedirectAttributes redirectAttributes) {
 		if (result.hasErrors()) {
-			return "pets/createOrUpdateVisitForm";
+			addPetModel(ownerId, petId, model);
+			return VIEWS_VISIT_CREATE_OR_UPDATE_FORM;
 		}
 
-		owner.addVisit(petId, visit);
-		this.owners.save(owner);
+		if (!this.visits.book(ownerId, petId, visit)) {
+			throw new IllegalArgumentException("Pet ID " + petId + " not found for owner ID " + ownerId);
+		}
 		redirectAttributes.addFlashAttribute("message", "Your visit has been booked");
 		return "redirect:/owners/{ownerId}";
 	}
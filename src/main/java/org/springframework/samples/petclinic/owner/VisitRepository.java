@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository class for reading the visit history of {@link Pet}s without loading a pet's
+ * whole visit collection, and for booking visits without loading and saving their owner.
+ * All visit queries are served by the index on <code>visits (pet_id, visit_date)</code>.
+ */
+public interface VisitRepository extends Repository<Visit, Integer> {
+
+	/**
+	 * Retrieve a slice of the visits of a {@link Pet}, most recent first.
+	 * @param petId the id of the pet
+	 * @param pageable the slice to retrieve
+	 * @return a {@link Slice} of {@link Visit}s
+	 */
+	@Query("""
+			SELECT visit FROM Pet pet JOIN pet.visits visit WHERE pet.id = :petId
+			ORDER BY visit.date DESC, visit.id DESC""")
+	@Transactional(readOnly = true)
+	Slice<Visit> findByPetId(@Param("petId") Integer petId, Pageable pageable);
+
+	/**
+	 * Retrieve the most recent visits of each of the given {@link Pet}s in a single
+	 * query, ordered by pet and most recent visit first.
+	 * @param petIds the ids of the pets
+	 * @param count the maximum number of visits per pet
+	 * @return at most <code>count</code> {@link PetVisit}s per pet
+	 */
+	@Query("""
+			SELECT new org.springframework.samples.petclinic.owner.PetVisit(pet.id, visit)
+			FROM Pet pet JOIN pet.visits visit
+			WHERE pet.id IN :petIds AND visit.id IN (
+				SELECT ranked.id FROM (
+					SELECT rankedVisit.id AS id, row_number() OVER (PARTITION BY rankedPet.id
+						ORDER BY rankedVisit.date DESC, rankedVisit.id DESC) AS position
+					FROM Pet rankedPet JOIN rankedPet.visits rankedVisit WHERE rankedPet.id IN :petIds) ranked
+				WHERE ranked.position <= :count)
+			ORDER BY pet.id, visit.date DESC, visit.id DESC""")
+	@Transactional(readOnly = true)
+	List<PetVisit> findRecentByPetIds(@Param("petIds") Collection<Integer> petIds, @Param("count") int count);
+
+	/**
+	 * Tell whether the given {@link Owner} has the given {@link Pet}, looking both up by
+	 * their primary keys.
+	 * @param ownerId the id of the owner
+	 * @param petId the id of the pet
+	 * @return whether the pet belongs to the owner
+	 */
+	@Query("SELECT count(pet) > 0 FROM Owner owner JOIN owner.pets pet WHERE owner.id = :ownerId AND pet.id = :petId")
+	@Transactional(readOnly = true)
+	boolean existsPetOfOwner(@Param("ownerId") int ownerId, @Param("petId") int petId);
+
+	/**
+	 * Insert a {@link Visit}, which must have been {@link Visit#bookFor booked} for a
+	 * pet.
+	 * @param visit the visit to insert
+	 */
+	void save(Visit visit);
+
+	/**
+	 * Book a {@link Visit} of a {@link Pet}, inserting the visit's row only. The owner,
+	 * its pets and their visits are not loaded, so booking takes the same two statements
+	 * however many pets and visits the owner has.
+	 * @param ownerId the id of the owner of the pet
+	 * @param petId the id of the pet
+	 * @param visit the new visit
+	 * @return whether the visit was booked, {@code false} if the owner has no such pet
+	 */
+	@Transactional
+	default boolean book(int ownerId, int petId, Visit visit) {
+		if (!existsPetOfOwner(ownerId, petId)) {
+			return false;
+		}
+		visit.bookFor(ownerId, petId);
+		save(visit);
+		return true;
+	}
+
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.search;
+
+/**
+ * An owner, pet or visit as stored in the {@link TextIndex}, so that search results are
+ * shown without reading the data store.
+ *
+ * @param kind what kind of entity the document stands for
+ * @param id the id of the entity
+ * @param ownerId the id of the owner the entity belongs to
+ * @param text the text searched and shown
+ * @param context the text shown along, such as the owner of a pet
+ */
+record IndexedDocument(SearchHit.Kind kind, int id, int ownerId, String text, String context) {
+}
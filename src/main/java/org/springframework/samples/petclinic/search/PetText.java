@@ -0,0 +1,29 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.search;
+
+/**
+ * The searched and shown columns of a pet.
+ *
+ * @param id the pet id
+ * @param ownerId the id of the pet's owner
+ * @param name the pet's name
+ * @param type the name of the pet's type
+ * @param ownerFirstName the first name of the pet's owner
+ * @param ownerLastName the last name of the pet's owner
+ */
+record PetText(Integer id, Integer ownerId, String name, String type, String ownerFirstName, String ownerLastName) {
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.search;
+
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Searches owners, pets and visits by any of their words, as a page or as JSON. Switched
+ * off along with the index by {@code petclinic.search.enabled=false}.
+ */
+@Controller
+@ConditionalOnProperty(name = "petclinic.search.enabled", matchIfMissing = true)
+class SearchController {
+
+	/**
+	 * Number of hits returned at most.
+	 */
+	private static final int MAX_HITS = 50;
+
+	private static final int PAGE_HITS = 20;
+
+	private final TextIndex index;
+
+	public SearchController(TextIndex index) {
+		this.index = index;
+	}
+
+	@GetMapping("/search")
+	public String showSearchResults(@RequestParam(name = "q", defaultValue = "") String query, Model model) {
+		model.addAttribute("query", query);
+		model.addAttribute("hits", this.index.search(query, PAGE_HITS));
+		return "search/searchResults";
+	}
+
+	@GetMapping(path = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
+	@ResponseBody
+	public List<SearchHit> search(@RequestParam(name = "q", defaultValue = "") String query,
+			@RequestParam(defaultValue = "20") int limit) {
+		return this.index.search(query, Math.min(Math.max(limit, 1), MAX_HITS));
+	}
+
+}
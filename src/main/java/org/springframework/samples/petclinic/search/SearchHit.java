@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.search;
+
+/**
+ * An owner, pet or visit matching a search.
+ *
+ * @param kind what kind of entity matched
+ * @param id the id of the entity
+ * @param ownerId the id of the owner the entity belongs to
+ * @param text the text that matched
+ * @param context the text shown along, such as the owner of a pet
+ * @param score the relevance of the entity, higher is more relevant
+ */
+public record SearchHit(Kind kind, int id, int ownerId, String text, String context, double score) {
+
+	/**
+	 * The kinds of entities searched.
+	 */
+	public enum Kind {
+
+		OWNER, PET, VISIT
+
+	}
+
+}
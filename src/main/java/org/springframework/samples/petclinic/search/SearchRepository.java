@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerSummary;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Reads the owners, pets and visits to be put into the {@link TextIndex}, selecting only
+ * the columns that are searched or shown.
+ */
+interface SearchRepository extends Repository<Owner, Integer> {
+
+	/**
+	 * Retrieve the highest owner id, to split the owners into ranges of ids.
+	 * @return the highest owner id, {@code null} if there are no owners
+	 */
+	@Query("SELECT max(owner.id) FROM Owner owner")
+	@Transactional(readOnly = true)
+	Integer findMaxOwnerId();
+
+	/**
+	 * Retrieve the owners with ids in the given range.
+	 * @param first the first id of the range
+	 * @param last the last id of the range
+	 * @return the owners
+	 */
+	@Query("""
+			SELECT new org.springframework.samples.petclinic.owner.OwnerSummary(owner.id, owner.firstName,
+			owner.lastName, owner.address, owner.city, owner.telephone)
+			FROM Owner owner WHERE owner.id BETWEEN :first AND :last""")
+	@Transactional(readOnly = true)
+	List<OwnerSummary> findOwners(@Param("first") int first, @Param("last") int last);
+
+	/**
+	 * Retrieve the pets of the owners with ids in the given range.
+	 * @param first the first owner id of the range
+	 * @param last the last owner id of the range
+	 * @return the pets
+	 */
+	@Query("""
+			SELECT new org.springframework.samples.petclinic.search.PetText(pet.id, owner.id, pet.name, type.name,
+			owner.firstName, owner.lastName)
+			FROM Owner owner JOIN owner.pets pet LEFT JOIN pet.type type WHERE owner.id BETWEEN :first AND :last""")
+	@Transactional(readOnly = true)
+	List<PetText> findPets(@Param("first") int first, @Param("last") int last);
+
+	/**
+	 * Retrieve the visits of the pets of the owners with ids in the given range.
+	 * @param first the first owner id of the range
+	 * @param last the last owner id of the range
+	 * @return the visits
+	 */
+	@Query("""
+			SELECT new org.springframework.samples.petclinic.search.VisitText(visit.id, owner.id, visit.date,
+			visit.description, pet.name, owner.firstName, owner.lastName)
+			FROM Owner owner JOIN owner.pets pet JOIN pet.visits visit WHERE owner.id BETWEEN :first AND :last""")
+	@Transactional(readOnly = true)
+	List<VisitText> findVisits(@Param("first") int first, @Param("last") int last);
+
+	/**
+	 * Retrieve the documents of the owners with ids in the given range, their pets and
+	 * the visits of these.
+	 * @param first the first owner id of the range
+	 * @param last the last owner id of the range
+	 * @return the documents
+	 */
+	default List<IndexedDocument> findDocuments(int first, int last) {
+		List<IndexedDocument> documents = new ArrayList<>();
+		for (OwnerSummary owner : findOwners(first, last)) {
+			documents.add(new IndexedDocument(SearchHit.Kind.OWNER, owner.id(), owner.id(), join(", ",
+					join(" ", owner.firstName(), owner.lastName()), owner.address(), owner.city(), owner.telephone()),
+					""));
+		}
+		for (PetText pet : findPets(first, last)) {
+			documents.add(new IndexedDocument(SearchHit.Kind.PET, pet.id(), pet.ownerId(),
+					join(", ", pet.name(), pet.type()), join(" ", pet.ownerFirstName(), pet.ownerLastName())));
+		}
+		for (VisitText visit : findVisits(first, last)) {
+			documents.add(new IndexedDocument(SearchHit.Kind.VISIT, visit.id(), visit.ownerId(),
+					Objects.toString(visit.description(), ""),
+					join(", ", visit.petName(), Objects.toString(visit.date(), null),
+							join(" ", visit.ownerFirstName(), visit.ownerLastName()))));
+		}
+		return documents;
+	}
+
+	private static String join(String delimiter, String... parts) {
+		return Stream.of(parts)
+			.filter(Objects::nonNull)
+			.filter(part -> !part.isEmpty())
+			.collect(Collectors.joining(delimiter));
+	}
+
+}
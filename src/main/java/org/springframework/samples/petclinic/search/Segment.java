@@ -0,0 +1,305 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable part of the {@link TextIndex}: documents numbered from zero and the
+ * inverted index of their terms. The postings of a term list the documents containing it
+ * in ascending order, each as the difference to the previous document followed by the
+ * number of occurrences, both as variable-length integers, so that most postings take two
+ * bytes. The postings of all terms are stored back to back in a single byte array.
+ */
+final class Segment {
+
+	private final IndexedDocument[] documents;
+
+	private final int[] lengths;
+
+	private final long length;
+
+	/**
+	 * The terms in ascending order.
+	 */
+	private final String[] terms;
+
+	/**
+	 * The number of documents containing every term.
+	 */
+	private final int[] frequencies;
+
+	/**
+	 * Where the postings of every term start, followed by the end of the last ones.
+	 */
+	private final int[] offsets;
+
+	private final byte[] postings;
+
+	/**
+	 * The documents by owner, as the owner id in the upper and the document in the lower
+	 * half, in ascending order.
+	 */
+	private final long[] ownerDocuments;
+
+	private Segment(List<IndexedDocument> documents, int[] lengths, Map<String, PostingsWriter> postings) {
+		this.documents = documents.toArray(IndexedDocument[]::new);
+		this.lengths = lengths;
+		this.length = Arrays.stream(lengths).asLongStream().sum();
+		this.terms = new String[postings.size()];
+		this.frequencies = new int[postings.size()];
+		this.offsets = new int[postings.size() + 1];
+		int size = 0;
+		for (PostingsWriter writer : postings.values()) {
+			size += writer.size;
+		}
+		this.postings = new byte[size];
+		int term = 0;
+		int offset = 0;
+		for (Map.Entry<String, PostingsWriter> entry : postings.entrySet()) {
+			PostingsWriter writer = entry.getValue();
+			this.terms[term] = entry.getKey();
+			this.frequencies[term] = writer.documents;
+			this.offsets[term] = offset;
+			System.arraycopy(writer.bytes, 0, this.postings, offset, writer.size);
+			offset += writer.size;
+			term++;
+		}
+		this.offsets[term] = offset;
+		this.ownerDocuments = new long[this.documents.length];
+		for (int document = 0; document < this.documents.length; document++) {
+			this.ownerDocuments[document] = ((long) this.documents[document].ownerId() << 32) | document;
+		}
+		Arrays.sort(this.ownerDocuments);
+	}
+
+	/**
+	 * Create a segment of the given documents.
+	 */
+	static Segment of(List<IndexedDocument> documents) {
+		Map<String, PostingsWriter> postings = new TreeMap<>();
+		int[] lengths = new int[documents.size()];
+		for (int document = 0; document < lengths.length; document++) {
+			List<String> terms = terms(documents.get(document).text());
+			lengths[document] = terms.size();
+			Map<String, Integer> occurrences = new HashMap<>();
+			for (String term : terms) {
+				occurrences.merge(term, 1, Integer::sum);
+			}
+			int current = document;
+			occurrences.forEach(
+					(term, count) -> postings.computeIfAbsent(term, key -> new PostingsWriter()).add(current, count));
+		}
+		return new Segment(documents, lengths, postings);
+	}
+
+	/**
+	 * Merge the given segments into one.
+	 */
+	static Segment merge(List<Segment> segments) {
+		return merge(segments, segments.stream().map(segment -> new BitSet()).toList());
+	}
+
+	/**
+	 * Merge the given segments into one, dropping their deleted documents. The documents
+	 * keep their order, and the postings are merged without analyzing any text again.
+	 * @param segments the segments to merge
+	 * @param deleted the deleted documents of every segment
+	 */
+	static Segment merge(List<Segment> segments, List<BitSet> deleted) {
+		int live = 0;
+		for (int i = 0; i < segments.size(); i++) {
+			live += segments.get(i).size() - deleted.get(i).cardinality();
+		}
+		List<IndexedDocument> documents = new ArrayList<>(live);
+		List<int[]> renumberings = new ArrayList<>();
+		int[] lengths = new int[live];
+		for (int i = 0; i < segments.size(); i++) {
+			Segment segment = segments.get(i);
+			int[] renumbering = new int[segment.size()];
+			for (int document = 0; document < segment.size(); document++) {
+				if (deleted.get(i).get(document)) {
+					renumbering[document] = -1;
+				}
+				else {
+					renumbering[document] = documents.size();
+					lengths[documents.size()] = segment.lengths[document];
+					documents.add(segment.documents[document]);
+				}
+			}
+			renumberings.add(renumbering);
+		}
+		Map<String, PostingsWriter> postings = new TreeMap<>();
+		for (int i = 0; i < segments.size(); i++) {
+			Segment segment = segments.get(i);
+			int[] renumbering = renumberings.get(i);
+			for (int term = 0; term < segment.terms.length; term++) {
+				PostingsWriter writer = postings.computeIfAbsent(segment.terms[term], key -> new PostingsWriter());
+				segment.forEachPosting(term, (document, occurrences) -> {
+					if (renumbering[document] >= 0) {
+						writer.add(renumbering[document], occurrences);
+					}
+				});
+			}
+		}
+		postings.values().removeIf(writer -> writer.documents == 0);
+		return new Segment(documents, lengths, postings);
+	}
+
+	/**
+	 * Split the given text into lower-case terms of letters and digits.
+	 */
+	static List<String> terms(String text) {
+		List<String> terms = new ArrayList<>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean inTerm = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (inTerm && start < 0) {
+				start = i;
+			}
+			else if (!inTerm && start >= 0) {
+				terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+		return terms;
+	}
+
+	int size() {
+		return this.documents.length;
+	}
+
+	IndexedDocument document(int document) {
+		return this.documents[document];
+	}
+
+	int length(int document) {
+		return this.lengths[document];
+	}
+
+	/**
+	 * Return the number of terms in all documents, including deleted ones.
+	 */
+	long length() {
+		return this.length;
+	}
+
+	/**
+	 * Return the given term's number in this segment, negative if no document contains
+	 * it.
+	 */
+	int term(String term) {
+		return Arrays.binarySearch(this.terms, term);
+	}
+
+	/**
+	 * Return the number of documents containing the given term, including deleted ones.
+	 */
+	int frequency(int term) {
+		return this.frequencies[term];
+	}
+
+	void forEachPosting(int term, PostingConsumer consumer) {
+		int document = 0;
+		int[] position = { this.offsets[term] };
+		while (position[0] < this.offsets[term + 1]) {
+			document += readVarint(this.postings, position);
+			consumer.accept(document, readVarint(this.postings, position));
+		}
+	}
+
+	/**
+	 * Mark the documents of the given owner as deleted.
+	 */
+	void deleteDocumentsOf(int ownerId, BitSet deleted) {
+		long first = (long) ownerId << 32;
+		int i = Arrays.binarySearch(this.ownerDocuments, first);
+		for (i = (i < 0) ? -i - 1 : i; i < this.ownerDocuments.length
+				&& (this.ownerDocuments[i] >>> 32) == ownerId; i++) {
+			deleted.set((int) this.ownerDocuments[i]);
+		}
+	}
+
+	boolean hasDocumentsOf(int ownerId) {
+		int i = Arrays.binarySearch(this.ownerDocuments, (long) ownerId << 32);
+		i = (i < 0) ? -i - 1 : i;
+		return i < this.ownerDocuments.length && (this.ownerDocuments[i] >>> 32) == ownerId;
+	}
+
+	private static int readVarint(byte[] bytes, int[] position) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = bytes[position[0]++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while (b < 0);
+		return value;
+	}
+
+	/**
+	 * Receives the postings of a term.
+	 */
+	@FunctionalInterface
+	interface PostingConsumer {
+
+		void accept(int document, int occurrences);
+
+	}
+
+	/**
+	 * Encodes the postings of a term, which must be added in ascending document order.
+	 */
+	private static final class PostingsWriter {
+
+		private byte[] bytes = new byte[8];
+
+		private int size;
+
+		private int documents;
+
+		private int lastDocument;
+
+		void add(int document, int occurrences) {
+			writeVarint(document - this.lastDocument);
+			writeVarint(occurrences);
+			this.lastDocument = document;
+			this.documents++;
+		}
+
+		private void writeVarint(int value) {
+			if (this.size + 5 > this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, this.bytes.length * 2);
+			}
+			while ((value & ~0x7F) != 0) {
+				this.bytes[this.size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			this.bytes[this.size++] = (byte) value;
+		}
+
+	}
+
+}
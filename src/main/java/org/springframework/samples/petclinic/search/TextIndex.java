@@ -0,0 +1,413 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.samples.petclinic.owner.OwnerSaved;
+import org.springframework.samples.petclinic.owner.OwnersImported;
+import org.springframework.samples.petclinic.owner.VisitBooked;
+import org.springframework.samples.petclinic.system.LazyBuild;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-process inverted index of the owners, their pets and the visits of these, answering
+ * searches without reading the data store. Matching entities are ranked with BM25, which
+ * weighs every matched term by its rarity and its frequency in the entity, relative to
+ * the length of the entity's text.
+ * <p>
+ * The index is made of immutable {@link Segment segments} and the documents deleted from
+ * each. Saving an owner, or any of its pets or visits, or booking a visit deletes the
+ * documents of the owner and adds its current ones as a new segment. That happens in the
+ * background once the transaction commits, so saving issues no further statements, and
+ * owners saved again before their turn come are indexed once. The owners of an imported
+ * chunk are read back and added as one segment. Once there are more than
+ * {@link #MAX_SEGMENTS} segments, the smaller ones are merged, and all of them when that
+ * leaves too many deleted documents or the merged ones grow too large.
+ * <p>
+ * The index is built by a {@link LazyBuild}, loading the owners in chunks of
+ * {@link #CHUNK_SIZE} ids in parallel. Owners saved meanwhile are indexed afterwards,
+ * while owners imported before the build starts are left to it. Searches read the
+ * segments current when they start, as replacing segments publishes a new list of them.
+ */
+@Component
+@ConditionalOnProperty(name = "petclinic.search.enabled", matchIfMissing = true)
+class TextIndex {
+
+	static final int CHUNK_SIZE = 1000;
+
+	static final int MAX_SEGMENTS = 8;
+
+	/**
+	 * Number of chunks loaded at once, well below the size of the connection pool.
+	 */
+	private static final int PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * BM25 saturation of term frequencies.
+	 */
+	private static final double K1 = 1.2;
+
+	/**
+	 * BM25 normalization of text lengths.
+	 */
+	private static final double B = 0.75;
+
+	private static final Comparator<SearchHit> RANKING = Comparator.comparingDouble(SearchHit::score)
+		.reversed()
+		.thenComparing(SearchHit::kind)
+		.thenComparingInt(SearchHit::id);
+
+	private final SearchRepository repository;
+
+	private final LazyBuild lazyBuild = new LazyBuild(new Object());
+
+	/**
+	 * The owners saved but not indexed again yet.
+	 */
+	private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The sorted ids of the owners of every chunk imported but not indexed yet.
+	 */
+	private final Queue<int[]> pendingImports = new ConcurrentLinkedQueue<>();
+
+	private volatile boolean building;
+
+	private volatile State state = new State(List.of(), List.of());
+
+	/**
+	 * Indexes saved owners again, one at a time and off the thread that saved them.
+	 */
+	private final ExecutorService updates;
+
+	TextIndex(SearchRepository repository) {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("text-index-update-");
+		threadFactory.setDaemon(true);
+		this.repository = repository;
+		this.updates = Executors.newSingleThreadExecutor(threadFactory);
+	}
+
+	/**
+	 * Build the index from the data store unless done already.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	void build() {
+		boolean built = this.lazyBuild.run(() -> {
+			this.building = true;
+			Segment segment = Segment.merge(loadChunks());
+			synchronized (this) {
+				this.state = new State(List.of(segment), List.of(new BitSet()));
+			}
+		});
+		if (built) {
+			this.updates.execute(this::reindexPending);
+		}
+	}
+
+	private List<Segment> loadChunks() {
+		Integer maxOwnerId = this.repository.findMaxOwnerId();
+		List<Callable<Segment>> chunks = new ArrayList<>();
+		for (int first = 1; maxOwnerId != null && first <= maxOwnerId; first += CHUNK_SIZE) {
+			int last = first + CHUNK_SIZE - 1;
+			int from = first;
+			chunks.add(() -> Segment.of(this.repository.findDocuments(from, last)));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM,
+				new CustomizableThreadFactory("text-index-"));
+		try {
+			List<Segment> segments = new ArrayList<>(chunks.size());
+			for (Future<Segment> chunk : executor.invokeAll(chunks)) {
+				segments.add(chunk.get());
+			}
+			return segments;
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while building the text index", ex);
+		}
+		catch (ExecutionException ex) {
+			throw new IllegalStateException("Failed to build the text index", ex.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Index the saved owner again, together with its pets and their visits, once the
+	 * transaction that saved it commits.
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	void ownerSaved(OwnerSaved event) {
+		reindex(event.ownerId());
+	}
+
+	/**
+	 * Index the owner of a visit booked on its own again, once the transaction that
+	 * booked it commits.
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	void visitBooked(VisitBooked event) {
+		reindex(event.ownerId());
+	}
+
+	/**
+	 * Index the owners of an imported chunk, together with their pets and visits, once
+	 * the transaction that imported them commits. Until the index starts being built,
+	 * they are left to the build, which reads them from the data store.
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	void ownersImported(OwnersImported event) {
+		if (!this.building) {
+			return;
+		}
+		this.pendingImports.add(event.owners().stream().mapToInt(OwnerSaved::ownerId).sorted().toArray());
+		if (this.lazyBuild.isBuilt()) {
+			this.updates.execute(this::reindexPending);
+		}
+	}
+
+	private void reindex(Integer ownerId) {
+		this.pending.add(ownerId);
+		if (this.lazyBuild.isBuilt()) {
+			this.updates.execute(this::reindexPending);
+		}
+	}
+
+	private void reindexPending() {
+		int[] ownerIds;
+		while ((ownerIds = this.pendingImports.poll()) != null) {
+			try {
+				reindexImported(ownerIds);
+			}
+			catch (RuntimeException ex) {
+				// try again with the next update
+				this.pendingImports.add(ownerIds);
+				throw ex;
+			}
+		}
+		for (Integer ownerId : List.copyOf(this.pending)) {
+			if (this.pending.remove(ownerId)) {
+				try {
+					replace(ownerId, this.repository.findDocuments(ownerId, ownerId));
+				}
+				catch (RuntimeException ex) {
+					// try again with the next update
+					this.pending.add(ownerId);
+					throw ex;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Index the given owners again, reading them in ranges of up to {@link #CHUNK_SIZE}
+	 * ids.
+	 * @param ownerIds the sorted ids of the owners
+	 */
+	private void reindexImported(int[] ownerIds) {
+		for (int from = 0, to; from < ownerIds.length; from = to) {
+			to = from + 1;
+			while (to < ownerIds.length && ownerIds[to] - ownerIds[from] < CHUNK_SIZE) {
+				to++;
+			}
+			int[] range = Arrays.copyOfRange(ownerIds, from, to);
+			List<IndexedDocument> documents = new ArrayList<>(
+					this.repository.findDocuments(range[0], range[range.length - 1]));
+			// other owners within the range are left to their own updates
+			documents.removeIf((document) -> Arrays.binarySearch(range, document.ownerId()) < 0);
+			replace(range, documents);
+		}
+	}
+
+	@PreDestroy
+	void close() {
+		this.updates.shutdownNow();
+	}
+
+	/**
+	 * Replace the documents of the given owner.
+	 * @param ownerId the id of the owner
+	 * @param documents the current documents of the owner, its pets and their visits
+	 */
+	void replace(int ownerId, List<IndexedDocument> documents) {
+		replace(new int[] { ownerId }, documents);
+	}
+
+	/**
+	 * Replace the documents of the given owners.
+	 * @param ownerIds the ids of the owners
+	 * @param documents the current documents of the owners, their pets and the visits of
+	 * these
+	 */
+	synchronized void replace(int[] ownerIds, List<IndexedDocument> documents) {
+		State current = this.state;
+		List<Segment> segments = new ArrayList<>(current.segments);
+		List<BitSet> deleted = new ArrayList<>(current.deleted);
+		for (int i = 0; i < segments.size(); i++) {
+			BitSet copy = null;
+			for (int ownerId : ownerIds) {
+				if (segments.get(i).hasDocumentsOf(ownerId)) {
+					copy = (copy != null) ? copy : (BitSet) deleted.get(i).clone();
+					segments.get(i).deleteDocumentsOf(ownerId, copy);
+				}
+			}
+			if (copy != null) {
+				deleted.set(i, copy);
+			}
+		}
+		if (!documents.isEmpty()) {
+			segments.add(Segment.of(documents));
+			deleted.add(new BitSet());
+		}
+		this.state = merged(new State(segments, deleted));
+	}
+
+	/**
+	 * Merge the segments of the given state if there are too many. The first segment is
+	 * the largest, holding the documents indexed at startup or at the last full merge.
+	 */
+	private static State merged(State state) {
+		if (state.segments.size() <= MAX_SEGMENTS) {
+			return state;
+		}
+		Segment first = state.segments.get(0);
+		int liveInFirst = first.size() - state.deleted.get(0).cardinality();
+		int liveInOthers = state.documents - liveInFirst;
+		if (state.deleted.get(0).cardinality() > first.size() / 4 || liveInOthers > liveInFirst / 4) {
+			return new State(List.of(Segment.merge(state.segments, state.deleted)), List.of(new BitSet()));
+		}
+		List<Segment> others = state.segments.subList(1, state.segments.size());
+		Segment merged = Segment.merge(others, state.deleted.subList(1, state.deleted.size()));
+		return new State(List.of(first, merged), List.of(state.deleted.get(0), new BitSet()));
+	}
+
+	/**
+	 * Search the owners, pets and visits.
+	 * @param query the words to search for, any of which has to match
+	 * @param limit how many hits to return at most
+	 * @return the most relevant hits, the most relevant first
+	 */
+	List<SearchHit> search(String query, int limit) {
+		build();
+		State state = this.state;
+		Set<String> terms = new LinkedHashSet<>(Segment.terms(query));
+		if (terms.isEmpty() || state.documents == 0) {
+			return List.of();
+		}
+		double averageLength = Math.max(1.0, (double) state.length / state.documents);
+		Map<String, Double> weights = new HashMap<>();
+		for (String term : terms) {
+			int frequency = 0;
+			for (Segment segment : state.segments) {
+				int number = segment.term(term);
+				frequency += (number >= 0) ? segment.frequency(number) : 0;
+			}
+			// deleted documents are still counted until merged away
+			frequency = Math.min(frequency, state.documents);
+			weights.put(term, Math.log(1 + (state.documents - frequency + 0.5) / (frequency + 0.5)));
+		}
+		PriorityQueue<SearchHit> top = new PriorityQueue<>(RANKING.reversed());
+		for (int i = 0; i < state.segments.size(); i++) {
+			Segment segment = state.segments.get(i);
+			BitSet deleted = state.deleted.get(i);
+			Map<Integer, Double> scores = new HashMap<>();
+			for (String term : terms) {
+				int number = segment.term(term);
+				if (number >= 0) {
+					double weight = weights.get(term);
+					segment.forEachPosting(number, (document, occurrences) -> {
+						if (!deleted.get(document)) {
+							double norm = K1 * (1 - B + B * segment.length(document) / averageLength);
+							scores.merge(document, weight * occurrences * (K1 + 1) / (occurrences + norm), Double::sum);
+						}
+					});
+				}
+			}
+			scores.forEach((document, score) -> {
+				IndexedDocument indexed = segment.document(document);
+				top.add(new SearchHit(indexed.kind(), indexed.id(), indexed.ownerId(), indexed.text(),
+						indexed.context(), score));
+				if (top.size() > limit) {
+					top.poll();
+				}
+			});
+		}
+		List<SearchHit> hits = new ArrayList<>(top);
+		hits.sort(RANKING);
+		return hits;
+	}
+
+	/**
+	 * Segments with the documents deleted from each, and the number and total length of
+	 * the documents that are not.
+	 */
+	private record State(List<Segment> segments, List<BitSet> deleted, int documents, long length) {
+
+		State(List<Segment> segments, List<BitSet> deleted) {
+			this(List.copyOf(segments), List.copyOf(deleted), live(segments, deleted), liveLength(segments, deleted));
+		}
+
+		private static int live(List<Segment> segments, List<BitSet> deleted) {
+			int live = 0;
+			for (int i = 0; i < segments.size(); i++) {
+				live += segments.get(i).size() - deleted.get(i).cardinality();
+			}
+			return live;
+		}
+
+		private static long liveLength(List<Segment> segments, List<BitSet> deleted) {
+			long length = 0;
+			for (int i = 0; i < segments.size(); i++) {
+				Segment segment = segments.get(i);
+				length += segment.length();
+				BitSet deletedInSegment = deleted.get(i);
+				for (int document = deletedInSegment.nextSetBit(0); document >= 0; document = deletedInSegment
+					.nextSetBit(document + 1)) {
+					length -= segment.length(document);
+				}
+			}
+			return length;
+		}
+
+	}
+
+}
@@ -16,38 +16,240 @@
 
 package org.springframework.samples.petclinic.system;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.support.NullValue;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.vet.VetRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
 
-import javax.cache.configuration.MutableConfiguration;
+import javax.cache.configuration.Factory;
+import javax.cache.integration.CacheLoader;
 
 /**
  * Cache configuration intended for caches providing the JCache API. This configuration
- * creates the used cache for the application and enables statistics that become
- * accessible via JMX.
+ * creates the used caches for the application and enables statistics that become
+ * accessible via JMX and the actuator cache metrics.
+ * <p>
+ * The size bound and expiry of every cache are set through {@link CacheProperties} and
+ * mapped onto the Caffeine specific configuration. The {@code vets} cache holds reference
+ * data and is stored by reference. The {@code owners} cache holds owner aggregates keyed
+ * by owner id, stored by value and weighed by their number of pets. The
+ * {@code owner-searches} cache holds the results of owner searches per searched prefix.
+ * These three caches pin how they are stored. A cache policy that cannot be applied,
+ * including a conflicting store-by-value, fails the startup rather than being ignored.
  */
 @Configuration(proxyBeanMethods = false)
 @EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
 class CacheConfiguration {
 
+	/**
+	 * How long a lookup of a missing owner is remembered at most.
+	 */
+	private static final Duration MISSING_OWNER_TIME_TO_LIVE = Duration.ofSeconds(30);
+
 	@Bean
-	public JCacheManagerCustomizer petclinicCacheConfigurationCustomizer() {
-		return cm -> cm.createCache("vets", cacheConfiguration());
+	public JCacheManagerCustomizer petclinicCacheConfigurationCustomizer(CacheProperties properties,
+			ObjectProvider<VetRepository> vets, ObjectProvider<MeterRegistry> meterRegistry) {
+		return cm -> {
+			// configure all caches before creating any, so that a policy that cannot be
+			// applied fails the startup without leaving caches behind
+			Map<String, CaffeineConfiguration<Object, Object>> configurations = new LinkedHashMap<>();
+			configurations.put("vets", vetsCacheConfiguration(properties.getSpec("vets"), vets,
+					meterRegistry.getIfAvailable(() -> Metrics.globalRegistry)));
+			configurations.put("owners", ownersCacheConfiguration(properties.getSpec("owners")));
+			configurations.put("owner-searches", ownerSearchesCacheConfiguration(properties.getSpec("owner-searches")));
+			properties.getSpecs()
+				.forEach((name, spec) -> configurations.computeIfAbsent(name, key -> cacheConfiguration(key, spec)));
+			configurations.forEach((name, configuration) -> createCache(cm, name, configuration));
+		};
 	}
 
 	/**
-	 * Create a simple configuration that enable statistics via the JCache programmatic
-	 * configuration API.
+	 * Create the given cache unless it exists. The caching provider hands out the same
+	 * cache manager to every application context in a JVM, as it happens when tests run
+	 * with several contexts.
+	 */
+	private static void createCache(javax.cache.CacheManager cacheManager, String name,
+			javax.cache.configuration.Configuration<Object, Object> configuration) {
+		if (cacheManager.getCache(name) == null) {
+			cacheManager.createCache(name, configuration);
+		}
+	}
+
+	/**
+	 * Create the configuration of a cache with the given policy that enables statistics.
 	 * <p>
 	 * Within the configuration object that is provided by the JCache API standard, there
 	 * is only a very limited set of configuration options. The really relevant
 	 * configuration options (like the size limit) must be set via a configuration
 	 * mechanism that is provided by the selected JCache implementation.
 	 */
-	private javax.cache.configuration.Configuration<Object, Object> cacheConfiguration() {
-		return new MutableConfiguration<>().setStatisticsEnabled(true);
+	private static CaffeineConfiguration<Object, Object> cacheConfiguration(String name, CacheProperties.Spec spec) {
+		CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+		configuration.setStoreByValue(Boolean.TRUE.equals(spec.getStoreByValue()));
+		return applyPolicy(name, spec, configuration);
+	}
+
+	/**
+	 * Create the configuration of the vets cache. Vets are read-only, so there is no need
+	 * to copy them on every access. The cache loads the vets itself, so that concurrent
+	 * misses wait for a single load and refresh-after-write reloads them in the
+	 * background before they expire, serving the current vets meanwhile. The time between
+	 * refresh-after-write and expire-after-write is the grace period during which the
+	 * vets are served stale if reloading them fails.
+	 */
+	private static CaffeineConfiguration<Object, Object> vetsCacheConfiguration(CacheProperties.Spec spec,
+			ObjectProvider<VetRepository> vets, MeterRegistry meterRegistry) {
+		// the repository depends on the cache manager, so it is looked up on first load
+		Factory<CacheLoader<Object, Object>> loader = () -> new MeteredCacheLoader("vets",
+				() -> vets.getObject().loadAll(), meterRegistry);
+		CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+		configuration.setStoreByValue(false);
+		configuration.setReadThrough(true);
+		configuration.setCacheLoaderFactory(loader);
+		return applyPolicy("vets", spec, configuration);
+	}
+
+	/**
+	 * Create the configuration of the owner aggregate cache. Owners are stored by value:
+	 * every lookup hands out its own copy, so binding a form onto a cached owner and
+	 * failing validation cannot leak into other requests. The cache is bounded by weight,
+	 * counting owners and their pets, and remembers missing owners, which Spring caches
+	 * as {@link NullValue}, for a much shorter time than present ones. Entries are
+	 * evicted on every save, so expiry only bounds staleness against changes made outside
+	 * the application.
+	 */
+	private static CaffeineConfiguration<Object, Object> ownersCacheConfiguration(CacheProperties.Spec spec) {
+		Duration timeToLive = spec.getExpireAfterWrite();
+		Factory<Weigher<Object, Object>> weigher = OwnerWeigher::new;
+		Factory<Expiry<Object, Object>> expiry = () -> new OwnerExpiry(timeToLive);
+		CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+		configuration.setStoreByValue(true);
+		configuration.setWeigherFactory(Optional.of(weigher));
+		configuration.setExpiryFactory(Optional.of(expiry));
+		return applyPolicy("owners", spec, configuration);
+	}
+
+	/**
+	 * Create the configuration of the owner search cache. Its entries are filled in by
+	 * the search as owners page through the results, so they are stored by reference.
+	 */
+	private static CaffeineConfiguration<Object, Object> ownerSearchesCacheConfiguration(CacheProperties.Spec spec) {
+		CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+		configuration.setStoreByValue(false);
+		return applyPolicy("owner-searches", spec, configuration);
+	}
+
+	/**
+	 * Apply the given policy to a cache configuration that carries the traits of the
+	 * cache, such as its weigher or loader.
+	 * @throws IllegalStateException if the policy does not fit the traits of the cache
+	 */
+	private static CaffeineConfiguration<Object, Object> applyPolicy(String name, CacheProperties.Spec spec,
+			CaffeineConfiguration<Object, Object> configuration) {
+		configuration.setStatisticsEnabled(true);
+		if (spec.getStoreByValue() != null) {
+			check(spec.getStoreByValue() == configuration.isStoreByValue(), name,
+					configuration.isStoreByValue() ? "sets store-by-value to false but is always stored by value"
+							: "sets store-by-value to true but is always stored by reference");
+		}
+		if (spec.getMaximumSize() != null) {
+			configuration.setMaximumSize(OptionalLong.of(spec.getMaximumSize()));
+		}
+		if (spec.getMaximumWeight() != null) {
+			check(configuration.getWeigherFactory().isPresent(), name,
+					"sets maximum-weight but does not weigh its entries");
+			configuration.setMaximumWeight(OptionalLong.of(spec.getMaximumWeight()));
+		}
+		if (configuration.getExpiryFactory().isPresent()) {
+			// the expiry of the cache takes expire-after-write into account
+			check(spec.getExpireAfterAccess() == null, name,
+					"sets expire-after-access but expires its entries after write");
+		}
+		else {
+			if (spec.getExpireAfterWrite() != null) {
+				configuration.setExpireAfterWrite(OptionalLong.of(spec.getExpireAfterWrite().toNanos()));
+			}
+			if (spec.getExpireAfterAccess() != null) {
+				configuration.setExpireAfterAccess(OptionalLong.of(spec.getExpireAfterAccess().toNanos()));
+			}
+		}
+		if (spec.getRefreshAfterWrite() != null) {
+			// Caffeine only refreshes caches that load their own entries
+			check(configuration.isReadThrough() && configuration.getCacheLoaderFactory() != null, name,
+					"sets refresh-after-write but does not load its own entries");
+			configuration.setRefreshAfterWrite(OptionalLong.of(spec.getRefreshAfterWrite().toNanos()));
+		}
+		return configuration;
+	}
+
+	private static void check(boolean condition, String name, String message) {
+		if (!condition) {
+			throw new IllegalStateException("Cache '" + name + "' " + message);
+		}
+	}
+
+	/**
+	 * Weighs a cached owner by itself and its pets.
+	 */
+	private static final class OwnerWeigher implements Weigher<Object, Object> {
+
+		@Override
+		public int weigh(Object key, Object value) {
+			return value instanceof Owner owner ? 1 + owner.getPets().size() : 1;
+		}
+
+	}
+
+	/**
+	 * Expires present owners after the configured time to live, if any, and missing ones
+	 * after {@link #MISSING_OWNER_TIME_TO_LIVE} unless that is longer, counted from when
+	 * they were cached.
+	 */
+	private static final class OwnerExpiry implements Expiry<Object, Object> {
+
+		private final long timeToLive;
+
+		private final long missingTimeToLive;
+
+		OwnerExpiry(Duration timeToLive) {
+			this.timeToLive = (timeToLive != null) ? timeToLive.toNanos() : Long.MAX_VALUE;
+			this.missingTimeToLive = Math.min(MISSING_OWNER_TIME_TO_LIVE.toNanos(), this.timeToLive);
+		}
+
+		@Override
+		public long expireAfterCreate(Object key, Object value, long currentTime) {
+			return (value instanceof NullValue) ? this.missingTimeToLive : this.timeToLive;
+		}
+
+		@Override
+		public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+			return expireAfterCreate(key, value, currentTime);
+		}
+
+		@Override
+		public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+			return currentDuration;
+		}
+
 	}
 
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Positive;
+
+/**
+ * Policies of the application caches, declared as
+ * {@code petclinic.cache.specs.<cache name>.<policy>}, for example
+ * {@code petclinic.cache.specs.vets.maximum-size=10}. Every declared cache is created on
+ * startup, and the caches the application uses are created with an unbounded policy when
+ * they are not declared.
+ */
+@ConfigurationProperties("petclinic.cache")
+@Validated
+public class CacheProperties {
+
+	@Valid
+	private final Map<String, Spec> specs = new LinkedHashMap<>();
+
+	public Map<String, Spec> getSpecs() {
+		return this.specs;
+	}
+
+	/**
+	 * Return the policy of the given cache.
+	 * @param name the name of the cache
+	 * @return the declared policy, or an unbounded one if the cache is not declared
+	 */
+	public Spec getSpec(String name) {
+		return this.specs.getOrDefault(name, new Spec());
+	}
+
+	/**
+	 * The policy of a single cache.
+	 */
+	public static class Spec {
+
+		/**
+		 * Maximum number of entries.
+		 */
+		@Positive
+		private Long maximumSize;
+
+		/**
+		 * Maximum total weight of the entries, for caches that weigh their entries.
+		 */
+		@Positive
+		private Long maximumWeight;
+
+		/**
+		 * Time after which an entry expires once it has been created or updated.
+		 */
+		private Duration expireAfterWrite;
+
+		/**
+		 * Time after which an entry expires once it has last been accessed.
+		 */
+		private Duration expireAfterAccess;
+
+		/**
+		 * Time after which an entry is reloaded once it has been created or updated, for
+		 * caches that load their own entries.
+		 */
+		private Duration refreshAfterWrite;
+
+		/**
+		 * Whether entries are copied when put into and read from the cache. Caches that
+		 * are stored either way only accept the way they are stored.
+		 */
+		private Boolean storeByValue;
+
+		public Long getMaximumSize() {
+			return this.maximumSize;
+		}
+
+		public void setMaximumSize(Long maximumSize) {
+			this.maximumSize = maximumSize;
+		}
+
+		public Long getMaximumWeight() {
+			return this.maximumWeight;
+		}
+
+		public void setMaximumWeight(Long maximumWeight) {
+			this.maximumWeight = maximumWeight;
+		}
+
+		public Duration getExpireAfterWrite() {
+			return this.expireAfterWrite;
+		}
+
+		public void setExpireAfterWrite(Duration expireAfterWrite) {
+			this.expireAfterWrite = expireAfterWrite;
+		}
+
+		public Duration getExpireAfterAccess() {
+			return this.expireAfterAccess;
+		}
+
+		public void setExpireAfterAccess(Duration expireAfterAccess) {
+			this.expireAfterAccess = expireAfterAccess;
+		}
+
+		public Duration getRefreshAfterWrite() {
+			return this.refreshAfterWrite;
+		}
+
+		public void setRefreshAfterWrite(Duration refreshAfterWrite) {
+			this.refreshAfterWrite = refreshAfterWrite;
+		}
+
+		public Boolean getStoreByValue() {
+			return this.storeByValue;
+		}
+
+		public void setStoreByValue(Boolean storeByValue) {
+			this.storeByValue = storeByValue;
+		}
+
+		@AssertTrue(message = "maximum-size and maximum-weight must not both be set")
+		boolean isBoundedOnce() {
+			return this.maximumSize == null || this.maximumWeight == null;
+		}
+
+		@AssertTrue(message = "durations must be positive")
+		boolean isPositiveDurations() {
+			return isPositive(this.expireAfterWrite) && isPositive(this.expireAfterAccess)
+					&& isPositive(this.refreshAfterWrite);
+		}
+
+		@AssertTrue(message = "refresh-after-write must be shorter than expire-after-write")
+		boolean isRefreshedBeforeExpiry() {
+			return this.refreshAfterWrite == null || this.expireAfterWrite == null
+					|| this.refreshAfterWrite.compareTo(this.expireAfterWrite) < 0;
+		}
+
+		private static boolean isPositive(Duration duration) {
+			return duration == null || (!duration.isNegative() && !duration.isZero());
+		}
+
+	}
+
+}
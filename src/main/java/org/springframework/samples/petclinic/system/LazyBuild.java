@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+/**
+ * Runs the build of an in-memory structure once, when the application is ready or on its
+ * first use if that comes first. Callers arriving while the build runs wait for it to
+ * complete, so the first use of a structure may block for the time its build takes. A
+ * build that fails is run again by the next caller.
+ */
+public class LazyBuild {
+
+	private final Object lock;
+
+	private volatile boolean built;
+
+	/**
+	 * Create a lazy build.
+	 * @param lock the lock held while building, which the owner of the structure may also
+	 * hold to change it
+	 */
+	public LazyBuild(Object lock) {
+		this.lock = lock;
+	}
+
+	/**
+	 * Whether the build completed.
+	 */
+	public boolean isBuilt() {
+		return this.built;
+	}
+
+	/**
+	 * Run the given build unless it completed already, waiting for a build running
+	 * meanwhile.
+	 * @param build builds the structure
+	 * @return whether this call ran the build
+	 */
+	public boolean run(Runnable build) {
+		if (this.built) {
+			return false;
+		}
+		synchronized (this.lock) {
+			if (this.built) {
+				return false;
+			}
+			build.run();
+			this.built = true;
+			return true;
+		}
+	}
+
+}
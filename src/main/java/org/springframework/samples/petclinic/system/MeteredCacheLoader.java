@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheLoaderException;
+
+/**
+ * Loads the single entry of a read-through cache, for example the result of a cached
+ * repository method without arguments, and counts successful and failed loads as
+ * {@code cache.loads}.
+ * <p>
+ * Together with refresh-after-write, the cache reloads an entry in the background on the
+ * first read after the refresh time, while callers keep getting the current value. A
+ * failed reload leaves the current value in place, so it is served stale until it expires
+ * or a later reload succeeds. The failure count tells how often that happened.
+ */
+class MeteredCacheLoader implements CacheLoader<Object, Object> {
+
+	private final Supplier<?> loader;
+
+	private final Counter successes;
+
+	private final Counter failures;
+
+	/**
+	 * Create a loader for the given cache.
+	 * @param cacheName the name of the cache, to tag the metrics with
+	 * @param loader loads the value of every key, bypassing the cache
+	 * @param registry the registry to count loads in
+	 */
+	MeteredCacheLoader(String cacheName, Supplier<?> loader, MeterRegistry registry) {
+		this.loader = loader;
+		this.successes = counter(registry, cacheName, "success");
+		this.failures = counter(registry, cacheName, "failure");
+	}
+
+	private static Counter counter(MeterRegistry registry, String cacheName, String result) {
+		return Counter.builder("cache.loads")
+			.description("The number of times the cache has loaded a value, successfully or not")
+			.tag("cache", cacheName)
+			.tag("result", result)
+			.register(registry);
+	}
+
+	@Override
+	public Object load(Object key) {
+		try {
+			Object value = this.loader.get();
+			this.successes.increment();
+			return value;
+		}
+		catch (RuntimeException ex) {
+			this.failures.increment();
+			throw new CacheLoaderException("Failed to load " + key, ex);
+		}
+	}
+
+	@Override
+	public Map<Object, Object> loadAll(Iterable<?> keys) {
+		Map<Object, Object> values = new HashMap<>();
+		for (Object key : keys) {
+			values.put(key, load(key));
+		}
+		return values;
+	}
+
+}
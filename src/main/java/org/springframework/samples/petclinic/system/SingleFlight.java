@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Coalesces concurrent identical calls: while a call for a key is in flight, further
+ * calls for the same key wait for it and receive its result, or its exception, instead of
+ * executing again. Nothing is kept once the call completes, so a call arriving after that
+ * executes anew.
+ * <p>
+ * Calls are counted as {@code singleflight.calls}, tagged with the name of the flight and
+ * whether they were {@code executed} or {@code coalesced}.
+ *
+ * @param <K> the type of the keys identifying identical calls
+ * @param <V> the type of the results, which are shared between the callers and must not
+ * be modified
+ */
+public class SingleFlight<K, V> {
+
+	private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+	private final Counter executed;
+
+	private final Counter coalesced;
+
+	/**
+	 * Create a single flight.
+	 * @param name the name to tag the metrics with
+	 * @param registry the registry to count calls in
+	 */
+	public SingleFlight(String name, MeterRegistry registry) {
+		this.executed = counter(registry, name, "executed");
+		this.coalesced = counter(registry, name, "coalesced");
+	}
+
+	private static Counter counter(MeterRegistry registry, String name, String result) {
+		return Counter.builder("singleflight.calls")
+			.description("The number of calls executed or coalesced with an identical one in flight")
+			.tag("name", name)
+			.tag("result", result)
+			.register(registry);
+	}
+
+	/**
+	 * Return the result of the call for the given key, executing it unless an identical
+	 * call is in flight already.
+	 * @param key identifies identical calls
+	 * @param call executes the call
+	 * @return the result of the call
+	 */
+	public V execute(K key, Supplier<V> call) {
+		CompletableFuture<V> flight = new CompletableFuture<>();
+		CompletableFuture<V> current = this.inFlight.putIfAbsent(key, flight);
+		if (current != null) {
+			this.coalesced.increment();
+			return join(current);
+		}
+		this.executed.increment();
+		try {
+			V result = call.get();
+			flight.complete(result);
+			return result;
+		}
+		catch (RuntimeException | Error ex) {
+			flight.completeExceptionally(ex);
+			throw ex;
+		}
+		finally {
+			this.inFlight.remove(key, flight);
+		}
+	}
+
+	private static <V> V join(CompletableFuture<V> flight) {
+		try {
+			return flight.join();
+		}
+		catch (CompletionException ex) {
+			if (ex.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			if (ex.getCause() instanceof Error cause) {
+				throw cause;
+			}
+			throw ex;
+		}
+	}
+
+}
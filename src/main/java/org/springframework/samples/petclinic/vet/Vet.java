@@ -16,13 +16,11 @@
 package org.springframework.samples.petclinic.vet;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import org.springframework.beans.support.MutableSortDefinition;
-import org.springframework.beans.support.PropertyComparator;
 import org.springframework.samples.petclinic.model.Person;
 
 import jakarta.persistence.Entity;
@@ -45,11 +43,20 @@ import jakarta.xml.bind.annotation.XmlElement;
 @Table(name = "vets")
 public class Vet extends Person {
 
+	private static final Comparator<Specialty> BY_NAME = Comparator.comparing(Specialty::getName,
+			Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+
 	@ManyToMany(fetch = FetchType.EAGER)
 	@JoinTable(name = "vet_specialties", joinColumns = @JoinColumn(name = "vet_id"),
 			inverseJoinColumns = @JoinColumn(name = "specialty_id"))
 	private Set<Specialty> specialties;
 
+	/**
+	 * The specialties sorted by name, computed on first access and dropped when the
+	 * specialties change. Vets are shared through the cache, so the list is immutable.
+	 */
+	private transient List<Specialty> sortedSpecialties;
+
 	protected Set<Specialty> getSpecialtiesInternal() {
 		if (this.specialties == null) {
 			this.specialties = new HashSet<>();
@@ -59,13 +66,19 @@ public class Vet extends Person {
 
 	protected void setSpecialtiesInternal(Set<Specialty> specialties) {
 		this.specialties = specialties;
+		this.sortedSpecialties = null;
 	}
 
 	@XmlElement
 	public List<Specialty> getSpecialties() {
-		List<Specialty> sortedSpecs = new ArrayList<>(getSpecialtiesInternal());
-		PropertyComparator.sort(sortedSpecs, new MutableSortDefinition("name", true, true));
-		return Collections.unmodifiableList(sortedSpecs);
+		List<Specialty> sorted = this.sortedSpecialties;
+		if (sorted == null || sorted.size() != getSpecialtiesInternal().size()) {
+			List<Specialty> specs = new ArrayList<>(getSpecialtiesInternal());
+			specs.sort(BY_NAME);
+			sorted = List.copyOf(specs);
+			this.sortedSpecialties = sorted;
+		}
+		return sorted;
 	}
 
 	public int getNrOfSpecialties() {
@@ -74,6 +87,7 @@ public class Vet extends Person {
 
 	public void addSpecialty(Specialty specialty) {
 		getSpecialtiesInternal().add(specialty);
+		this.sortedSpecialties = null;
 	}
 
 }
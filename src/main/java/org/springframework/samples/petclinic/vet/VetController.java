@@ -20,11 +20,17 @@ import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.NativeWebRequest;
 
 /**
  * @author Juergen Hoeller
@@ -35,10 +41,17 @@ import org.springframework.web.bind.annotation.ResponseBody;
 @Controller
 class VetController {
 
-	private final VetRepository vetRepository;
+	private final VetDirectory directory;
 
-	public VetController(VetRepository clinicService) {
-		this.vetRepository = clinicService;
+	private final VetsResponseCache responses;
+
+	private final ContentNegotiationManager contentNegotiationManager;
+
+	public VetController(VetDirectory directory, VetsResponseCache responses,
+			ContentNegotiationManager contentNegotiationManager) {
+		this.directory = directory;
+		this.responses = responses;
+		this.contentNegotiationManager = contentNegotiationManager;
 	}
 
 	@GetMapping("/vets.html")
@@ -63,16 +76,40 @@ class VetController {
 	private Page<Vet> findPaginated(int page) {
 		int pageSize = 5;
 		Pageable pageable = PageRequest.of(page - 1, pageSize);
-		return vetRepository.findAll(pageable);
+		return this.directory.snapshot().findAll(pageable);
 	}
 
 	@GetMapping({ "/vets" })
-	public @ResponseBody Vets showResourcesVetList() {
-		// Here we are returning an object of type 'Vets' rather than a collection of Vet
-		// objects so it is simpler for JSon/Object mapping
-		Vets vets = new Vets();
-		vets.getVetList().addAll(this.vetRepository.findAll());
-		return vets;
+	public ResponseEntity<byte[]> showResourcesVetList(NativeWebRequest request,
+			@RequestParam(name = "specialty", defaultValue = "") List<String> specialties,
+			@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+			throws HttpMediaTypeNotAcceptableException {
+		// The serialized vets are cached, and an If-None-Match request for the current
+		// entity tag is answered with 304 Not Modified
+		VetsResponseCache.Document document = this.responses
+			.find(this.contentNegotiationManager.resolveMediaTypes(request), specialties);
+		boolean gzipped = acceptsGzip(acceptEncoding);
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+			.contentType(document.contentType())
+			.eTag(document.eTag(gzipped))
+			.varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+		if (gzipped) {
+			response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+		return response.body(gzipped ? document.gzippedBody() : document.body());
+	}
+
+	private static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (String coding : StringUtils.commaDelimitedListToStringArray(acceptEncoding)) {
+			String[] parts = coding.split(";");
+			if (parts[0].trim().equalsIgnoreCase("gzip")) {
+				return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+			}
+		}
+		return false;
 	}
 
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Read-only directory of all {@link Vet Vets}, serving listings, pages and specialty
+ * filters from an immutable in-memory snapshot. The snapshot is built from the cached
+ * vets and replaced as a whole when they change, so readers never see a partially rebuilt
+ * directory.
+ * <p>
+ * Specialties are encoded as small integers in the order of the
+ * {@link SpecialtyRegistry}, and the specialties of each vet are kept as a bitset, so
+ * finding the vets having all of a number of specialties is a word-wise comparison rather
+ * than a join.
+ */
+@Component
+class VetDirectory {
+
+	private final VetRepository vets;
+
+	private final SpecialtyRegistry specialties;
+
+	private volatile Snapshot snapshot;
+
+	VetDirectory(VetRepository vets, SpecialtyRegistry specialties) {
+		this.vets = vets;
+		this.specialties = specialties;
+	}
+
+	/**
+	 * Return the current snapshot of the directory, rebuilding it first if the vets have
+	 * changed since it was built. A caller handling a request should use one snapshot
+	 * throughout.
+	 * @return the current snapshot
+	 */
+	Snapshot snapshot() {
+		Collection<Vet> current = this.vets.findAll();
+		Snapshot snapshot = this.snapshot;
+		if (snapshot == null || snapshot.source != current) {
+			synchronized (this) {
+				snapshot = this.snapshot;
+				if (snapshot == null || snapshot.source != current) {
+					snapshot = new Snapshot(current, this.specialties.findAll());
+					this.snapshot = snapshot;
+				}
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * An immutable view of all vets, ordered by id.
+	 */
+	static final class Snapshot {
+
+		private static final Comparator<Vet> BY_ID = Comparator.comparing(Vet::getId,
+				Comparator.nullsLast(Comparator.naturalOrder()));
+
+		private final Collection<Vet> source;
+
+		private final List<Vet> vets;
+
+		private final Map<String, Integer> codes = new HashMap<>();
+
+		private final long[][] specialties;
+
+		private Snapshot(Collection<Vet> source, List<Specialty> registered) {
+			this.source = source;
+			List<Vet> vets = new ArrayList<>(source);
+			vets.sort(BY_ID);
+			this.vets = List.copyOf(vets);
+			for (Specialty specialty : registered) {
+				this.codes.putIfAbsent(specialty.getName(), this.codes.size());
+			}
+			for (Vet vet : this.vets) {
+				for (Specialty specialty : vet.getSpecialties()) {
+					this.codes.putIfAbsent(specialty.getName(), this.codes.size());
+				}
+			}
+			this.specialties = new long[this.vets.size()][];
+			for (int i = 0; i < this.vets.size(); i++) {
+				long[] bits = new long[words(this.codes.size())];
+				for (Specialty specialty : this.vets.get(i).getSpecialties()) {
+					set(bits, this.codes.get(specialty.getName()));
+				}
+				this.specialties[i] = bits;
+			}
+		}
+
+		/**
+		 * Return all vets.
+		 * @return an unmodifiable list of the vets
+		 */
+		List<Vet> findAll() {
+			return this.vets;
+		}
+
+		/**
+		 * Return the requested page of vets.
+		 * @param pageable the page to return
+		 * @return the page, empty if it lies beyond the last vet
+		 */
+		Page<Vet> findAll(Pageable pageable) {
+			int from = (int) Math.min(pageable.getOffset(), this.vets.size());
+			int to = Math.min(from + pageable.getPageSize(), this.vets.size());
+			return new PageImpl<>(this.vets.subList(from, to), pageable, this.vets.size());
+		}
+
+		/**
+		 * Return the vets having all of the given specialties.
+		 * @param names the names of the specialties
+		 * @return an unmodifiable list of the matching vets, all vets if no specialties
+		 * are given and none if any of them is unknown
+		 */
+		List<Vet> findBySpecialties(Collection<String> names) {
+			long[] required = encode(names);
+			if (required == null) {
+				return List.of();
+			}
+			List<Vet> matching = new ArrayList<>();
+			for (int i = 0; i < this.vets.size(); i++) {
+				if (containsAll(this.specialties[i], required)) {
+					matching.add(this.vets.get(i));
+				}
+			}
+			return List.copyOf(matching);
+		}
+
+		/**
+		 * Return the given specialties as a bitset, or {@literal null} if any of them is
+		 * unknown. Equal sets of specialties give equal bitsets regardless of their
+		 * order.
+		 * @param names the names of the specialties
+		 * @return the bitset, to be compared with {@link Arrays#equals(long[], long[])}
+		 */
+		long[] encode(Collection<String> names) {
+			long[] bits = new long[words(this.codes.size())];
+			for (String name : names) {
+				Integer code = this.codes.get(name);
+				if (code == null) {
+					return null;
+				}
+				set(bits, code);
+			}
+			return bits;
+		}
+
+		private static boolean containsAll(long[] bits, long[] required) {
+			for (int word = 0; word < required.length; word++) {
+				if ((bits[word] & required[word]) != required[word]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static int words(int bits) {
+			return (bits + Long.SIZE - 1) / Long.SIZE;
+		}
+
+		private static void set(long[] bits, int index) {
+			bits[index / Long.SIZE] |= 1L << (index % Long.SIZE);
+		}
+
+	}
+
+}
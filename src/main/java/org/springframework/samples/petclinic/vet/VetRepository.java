@@ -19,10 +19,13 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Repository class for <code>Vet</code> domain objects All method names are compliant
@@ -38,13 +41,26 @@ import java.util.Collection;
 public interface VetRepository extends Repository<Vet, Integer> {
 
 	/**
-	 * Retrieve all <code>Vet</code>s from the data store.
+	 * Retrieve all <code>Vet</code>s from the data store, together with their
+	 * specialties.
 	 * @return a <code>Collection</code> of <code>Vet</code>s
 	 */
+	@EntityGraph(attributePaths = "specialties")
 	@Transactional(readOnly = true)
 	@Cacheable("vets")
 	Collection<Vet> findAll() throws DataAccessException;
 
+	/**
+	 * Load all <code>Vet</code>s from the data store, together with their specialties,
+	 * bypassing the cache. The cache of {@link #findAll()} loads its entry through this
+	 * method.
+	 * @return a <code>Collection</code> of <code>Vet</code>s
+	 */
+	@EntityGraph(attributePaths = "specialties")
+	@Query("SELECT vet FROM Vet vet")
+	@Transactional(readOnly = true)
+	Collection<Vet> loadAll() throws DataAccessException;
+
 	/**
 	 * Retrieve all <code>Vet</code>s from data store in Pages
 	 * @param pageable
@@ -52,7 +68,14 @@ public interface VetRepository extends Repository<Vet, Integer> {
 	 * @throws DataAccessException
 	 */
 	@Transactional(readOnly = true)
-	@Cacheable("vets")
 	Page<Vet> findAll(Pageable pageable) throws DataAccessException;
 
+	/**
+	 * Retrieve all <code>Specialty</code>s from the data store, ordered by name.
+	 * @return a <code>List</code> of <code>Specialty</code>s
+	 */
+	@Query("SELECT specialty FROM Specialty specialty ORDER BY specialty.name")
+	@Transactional(readOnly = true)
+	List<Specialty> findSpecialties();
+
 }
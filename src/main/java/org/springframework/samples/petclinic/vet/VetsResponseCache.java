@@ -0,0 +1,210 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+
+/**
+ * Serialized {@link Vets} documents, kept per media type and specialty filter as plain
+ * and gzip-compressed bytes together with an entity tag derived from their content. The
+ * documents are built on first request and thrown away as soon as the
+ * {@link VetDirectory} snapshot they were built from is replaced, so serialization only
+ * happens when the vet data changes. At most {@value #MAX_DOCUMENTS} documents are kept
+ * per snapshot, any further ones are serialized per request.
+ */
+@Component
+class VetsResponseCache {
+
+	private static final int MAX_DOCUMENTS = 64;
+
+	private final VetDirectory directory;
+
+	private final List<HttpMessageConverter<?>> converters;
+
+	private volatile Documents documents;
+
+	VetsResponseCache(VetDirectory directory, HttpMessageConverters converters) {
+		this.directory = directory;
+		this.converters = converters.getConverters();
+	}
+
+	/**
+	 * Return the vets having all of the given specialties serialized as the first of the
+	 * given media types that can be produced.
+	 * @param acceptable the acceptable media types, most preferred first
+	 * @param specialties the names of the specialties, empty for all vets
+	 * @return the serialized vets
+	 * @throws HttpMediaTypeNotAcceptableException if none of the media types can be
+	 * produced
+	 */
+	Document find(List<MediaType> acceptable, Collection<String> specialties)
+			throws HttpMediaTypeNotAcceptableException {
+		Documents documents = documents(this.directory.snapshot());
+		long[] filter = documents.source.encode(specialties);
+		for (MediaType requested : acceptable) {
+			for (HttpMessageConverter<?> converter : this.converters) {
+				MediaType mediaType = producible(converter, requested);
+				if (mediaType != null) {
+					Key key = new Key(mediaType, filter != null ? BitSet.valueOf(filter) : null);
+					Document document = documents.byKey.get(key);
+					if (document == null) {
+						document = serialize(documents.source.findBySpecialties(specialties), converter, mediaType);
+						if (documents.byKey.size() < MAX_DOCUMENTS) {
+							Document existing = documents.byKey.putIfAbsent(key, document);
+							document = (existing != null) ? existing : document;
+						}
+					}
+					return document;
+				}
+			}
+		}
+		throw new HttpMediaTypeNotAcceptableException(List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML));
+	}
+
+	/**
+	 * Return the documents of the given snapshot, starting afresh if it is not the one
+	 * the current documents were built from.
+	 */
+	private Documents documents(VetDirectory.Snapshot current) {
+		Documents documents = this.documents;
+		if (documents == null || documents.source != current) {
+			documents = new Documents(current);
+			this.documents = documents;
+		}
+		return documents;
+	}
+
+	/**
+	 * Return the concrete media type the converter writes {@link Vets} as for the given
+	 * requested media type, or {@literal null} if it cannot write them as such. The
+	 * parameters of the requested media type are dropped, so that they do not make for
+	 * documents of their own.
+	 */
+	private static MediaType producible(HttpMessageConverter<?> converter, MediaType requested) {
+		if (!converter.canWrite(Vets.class, requested)) {
+			return null;
+		}
+		for (MediaType supported : converter.getSupportedMediaTypes(Vets.class)) {
+			if (supported.isConcrete() && requested.includes(supported)) {
+				return supported;
+			}
+		}
+		if (requested.isConcrete()) {
+			return new MediaType(requested.getType(), requested.getSubtype());
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Document serialize(Collection<Vet> source, HttpMessageConverter<?> converter, MediaType mediaType) {
+		// Here we are serializing an object of type 'Vets' rather than a collection of
+		// Vet objects so it is simpler for JSon/Object mapping
+		Vets vets = new Vets();
+		vets.getVetList().addAll(source);
+		BufferedOutputMessage message = new BufferedOutputMessage();
+		try {
+			((HttpMessageConverter<Object>) converter).write(vets, mediaType, message);
+			byte[] body = message.body.toByteArray();
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+			try (OutputStream gzip = new GZIPOutputStream(compressed)) {
+				gzip.write(body);
+			}
+			MediaType contentType = message.headers.getContentType();
+			return new Document(contentType != null ? contentType : mediaType, body, compressed.toByteArray(),
+					DigestUtils.md5DigestAsHex(body));
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/**
+	 * A serialized vets document.
+	 *
+	 * @param contentType the content type of the document
+	 * @param body the document
+	 * @param gzippedBody the gzip-compressed document
+	 * @param hash a hash of the document, to derive entity tags from
+	 */
+	record Document(MediaType contentType, byte[] body, byte[] gzippedBody, String hash) {
+
+		/**
+		 * Return the strong entity tag of the document in the given encoding, which
+		 * differs between encodings as the bytes do.
+		 */
+		String eTag(boolean gzipped) {
+			return "\"" + this.hash + (gzipped ? "-gzip" : "") + "\"";
+		}
+
+	}
+
+	/**
+	 * The key of a document: its media type and the requested specialties as a bitset,
+	 * {@literal null} if any of them is unknown.
+	 */
+	private record Key(MediaType mediaType, BitSet specialties) {
+
+	}
+
+	private static final class Documents {
+
+		private final VetDirectory.Snapshot source;
+
+		private final Map<Key, Document> byKey = new ConcurrentHashMap<>();
+
+		Documents(VetDirectory.Snapshot source) {
+			this.source = source;
+		}
+
+	}
+
+	private static final class BufferedOutputMessage implements HttpOutputMessage {
+
+		private final HttpHeaders headers = new HttpHeaders();
+
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+		@Override
+		public OutputStream getBody() {
+			return this.body;
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+	}
+
+}
@@ -5,6 +5,13 @@ DROP TABLE visits IF EXISTS;
 DROP TABLE pets IF EXISTS;
 DROP TABLE types IF EXISTS;
 DROP TABLE owners IF EXISTS;
+DROP TABLE owner_imports IF EXISTS;
+DROP SEQUENCE IF EXISTS vets_seq;
+DROP SEQUENCE IF EXISTS specialties_seq;
+DROP SEQUENCE IF EXISTS types_seq;
+DROP SEQUENCE IF EXISTS owners_seq;
+DROP SEQUENCE IF EXISTS pets_seq;
+DROP SEQUENCE IF EXISTS visits_seq;
 
 
 CREATE TABLE vets (
@@ -39,16 +46,19 @@ CREATE TABLE owners (
   last_name  VARCHAR_IGNORECASE(30),
   address    VARCHAR(255),
   city       VARCHAR(80),
-  telephone  VARCHAR(20)
+  telephone  VARCHAR(20),
+  version    INTEGER DEFAULT 0 NOT NULL
 );
 CREATE INDEX owners_last_name ON owners (last_name);
+CREATE INDEX owners_telephone ON owners (telephone);
 
 CREATE TABLE pets (
   id         INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-  name       VARCHAR(30),
+  name       VARCHAR_IGNORECASE(30),
   birth_date DATE,
   type_id    INTEGER NOT NULL,
-  owner_id   INTEGER
+  owner_id   INTEGER,
+  version    INTEGER DEFAULT 0 NOT NULL
 );
 ALTER TABLE pets ADD CONSTRAINT fk_pets_owners FOREIGN KEY (owner_id) REFERENCES owners (id);
 ALTER TABLE pets ADD CONSTRAINT fk_pets_types FOREIGN KEY (type_id) REFERENCES types (id);
@@ -61,4 +71,24 @@ CREATE TABLE visits (
   description VARCHAR(255)
 );
 ALTER TABLE visits ADD CONSTRAINT fk_visits_pets FOREIGN KEY (pet_id) REFERENCES pets (id);
-CREATE INDEX visits_pet_id ON visits (pet_id);
+CREATE INDEX visits_pet_id_visit_date ON visits (pet_id, visit_date);
+
+CREATE TABLE owner_imports (
+  id               VARCHAR(80) PRIMARY KEY,
+  records_read     INTEGER NOT NULL,
+  owners_imported  INTEGER NOT NULL,
+  pets_imported    INTEGER NOT NULL,
+  visits_imported  INTEGER NOT NULL,
+  owners_rejected  INTEGER NOT NULL,
+  completed        BOOLEAN NOT NULL,
+  version          INTEGER NOT NULL
+);
+
+-- ids of new rows, 50 per sequence value; rows inserted by data.sql take their ids from
+-- the identity columns, which stay below 1000
+CREATE SEQUENCE vets_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE specialties_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE types_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE owners_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE pets_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE visits_seq START WITH 1000 INCREMENT BY 50;
@@ -32,7 +32,9 @@ CREATE TABLE IF NOT EXISTS owners (
   address VARCHAR(255),
   city VARCHAR(80),
   telephone VARCHAR(20),
-  INDEX(last_name)
+  version INT(4) UNSIGNED NOT NULL DEFAULT 0,
+  INDEX(last_name),
+  INDEX(telephone)
 ) engine=InnoDB;
 
 CREATE TABLE IF NOT EXISTS pets (
@@ -41,6 +43,7 @@ CREATE TABLE IF NOT EXISTS pets (
   birth_date DATE,
   type_id INT(4) UNSIGNED NOT NULL,
   owner_id INT(4) UNSIGNED,
+  version INT(4) UNSIGNED NOT NULL DEFAULT 0,
   INDEX(name),
   FOREIGN KEY (owner_id) REFERENCES owners(id),
   FOREIGN KEY (type_id) REFERENCES types(id)
@@ -51,5 +54,44 @@ CREATE TABLE IF NOT EXISTS visits (
   pet_id INT(4) UNSIGNED,
   visit_date DATE,
   description VARCHAR(255),
+  INDEX(pet_id, visit_date),
   FOREIGN KEY (pet_id) REFERENCES pets(id)
 ) engine=InnoDB;
+
+CREATE TABLE IF NOT EXISTS owner_imports (
+  id VARCHAR(80) NOT NULL PRIMARY KEY,
+  records_read INT(4) UNSIGNED NOT NULL,
+  owners_imported INT(4) UNSIGNED NOT NULL,
+  pets_imported INT(4) UNSIGNED NOT NULL,
+  visits_imported INT(4) UNSIGNED NOT NULL,
+  owners_rejected INT(4) UNSIGNED NOT NULL,
+  completed BOOLEAN NOT NULL,
+  version INT(4) UNSIGNED NOT NULL
+) engine=InnoDB;
+
+-- ids of new rows, 50 per value taken; MySQL has no sequences, so each is a single-row
+-- table. Rows inserted by data.sql take their ids from AUTO_INCREMENT, which stays below 1000
+CREATE TABLE IF NOT EXISTS vets_seq (
+  next_val BIGINT NOT NULL
+) engine=InnoDB;
+INSERT INTO vets_seq SELECT 1000 FROM DUAL WHERE NOT EXISTS (SELECT * FROM vets_seq);
+CREATE TABLE IF NOT EXISTS specialties_seq (
+  next_val BIGINT NOT NULL
+) engine=InnoDB;
+INSERT INTO specialties_seq SELECT 1000 FROM DUAL WHERE NOT EXISTS (SELECT * FROM specialties_seq);
+CREATE TABLE IF NOT EXISTS types_seq (
+  next_val BIGINT NOT NULL
+) engine=InnoDB;
+INSERT INTO types_seq SELECT 1000 FROM DUAL WHERE NOT EXISTS (SELECT * FROM types_seq);
+CREATE TABLE IF NOT EXISTS owners_seq (
+  next_val BIGINT NOT NULL
+) engine=InnoDB;
+INSERT INTO owners_seq SELECT 1000 FROM DUAL WHERE NOT EXISTS (SELECT * FROM owners_seq);
+CREATE TABLE IF NOT EXISTS pets_seq (
+  next_val BIGINT NOT NULL
+) engine=InnoDB;
+INSERT INTO pets_seq SELECT 1000 FROM DUAL WHERE NOT EXISTS (SELECT * FROM pets_seq);
+CREATE TABLE IF NOT EXISTS visits_seq (
+  next_val BIGINT NOT NULL
+) engine=InnoDB;
+INSERT INTO visits_seq SELECT 1000 FROM DUAL WHERE NOT EXISTS (SELECT * FROM visits_seq);
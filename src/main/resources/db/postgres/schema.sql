@@ -29,18 +29,23 @@ CREATE TABLE IF NOT EXISTS owners (
   last_name  TEXT,
   address    TEXT,
   city       TEXT,
-  telephone  TEXT
+  telephone  TEXT,
+  version    INT NOT NULL DEFAULT 0
 );
 CREATE INDEX ON owners (last_name);
+CREATE INDEX IF NOT EXISTS owners_telephone ON owners (telephone);
 
 CREATE TABLE IF NOT EXISTS pets (
   id         INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
   name       TEXT,
   birth_date DATE,
   type_id    INT NOT NULL REFERENCES types (id),
-  owner_id   INT REFERENCES owners (id)
+  owner_id   INT REFERENCES owners (id),
+  version    INT NOT NULL DEFAULT 0
 );
 CREATE INDEX ON pets (name);
+-- prefix searches of pet names use LIKE, which a plain index serves only in the C locale
+CREATE INDEX IF NOT EXISTS pets_name_pattern ON pets (name text_pattern_ops);
 CREATE INDEX ON pets (owner_id);
 
 CREATE TABLE IF NOT EXISTS visits (
@@ -49,4 +54,24 @@ CREATE TABLE IF NOT EXISTS visits (
   visit_date  DATE,
   description TEXT
 );
-CREATE INDEX ON visits (pet_id);
+CREATE INDEX IF NOT EXISTS visits_pet_id_visit_date ON visits (pet_id, visit_date);
+
+CREATE TABLE IF NOT EXISTS owner_imports (
+  id              TEXT PRIMARY KEY,
+  records_read    INT NOT NULL,
+  owners_imported INT NOT NULL,
+  pets_imported   INT NOT NULL,
+  visits_imported INT NOT NULL,
+  owners_rejected INT NOT NULL,
+  completed       BOOLEAN NOT NULL,
+  version         INT NOT NULL
+);
+
+-- ids of new rows, 50 per sequence value; rows inserted by data.sql take their ids from
+-- the identity columns, which stay below 1000
+CREATE SEQUENCE IF NOT EXISTS vets_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS specialties_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS types_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS owners_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS pets_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS visits_seq START WITH 1000 INCREMENT BY 50;
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link NamedEntityRegistry}
+ */
+class NamedEntityRegistryTests {
+
+	private final List<NamedEntity> entities = new ArrayList<>(List.of(entity(1, "cat"), entity(2, "dog")));
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private final NamedEntityRegistry<NamedEntity> registry = new NamedEntityRegistry<>(() -> {
+		this.loads.incrementAndGet();
+		return this.entities;
+	});
+
+	@Test
+	void shouldLoadOnceOnFirstUse() {
+		assertThat(this.loads).hasValue(0);
+
+		assertThat(this.registry.findAll()).extracting(NamedEntity::getName).containsExactly("cat", "dog");
+		assertThat(this.registry.findById(2).getName()).isEqualTo("dog");
+		assertThat(this.registry.findByName("cat").getId()).isEqualTo(1);
+		assertThat(this.loads).hasValue(1);
+	}
+
+	@Test
+	void shouldReturnNullForUnknownKeys() {
+		assertThat(this.registry.findById(3)).isNull();
+		assertThat(this.registry.findByName("Cat")).isNull();
+	}
+
+	@Test
+	void shouldKeepSnapshotUntilRefreshed() {
+		List<NamedEntity> before = this.registry.findAll();
+		this.entities.add(entity(3, "lizard"));
+
+		assertThat(this.registry.findByName("lizard")).isNull();
+		assertThat(before).hasSize(2);
+
+		this.registry.refresh();
+
+		assertThat(this.registry.findByName("lizard").getId()).isEqualTo(3);
+		assertThat(this.registry.findAll()).hasSize(3);
+		assertThat(before).hasSize(2);
+	}
+
+	private static NamedEntity entity(int id, String name) {
+		NamedEntity entity = new NamedEntity();
+		entity.setId(id);
+		entity.setName(name);
+		return entity;
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.aot.DisabledInAotMode;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Integration test of the owner aggregate cache in front of
+ * {@link OwnerRepository#findWithPetsById(Integer)}.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@DisabledInNativeImage
+@DisabledInAotMode
+class OwnerCacheTests {
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setup() {
+		this.cacheManager.getCache("owners").clear();
+		this.statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		this.statistics.clear();
+	}
+
+	@Test
+	void shouldServeRepeatedLookupsFromCache() {
+		Owner first = this.owners.findWithPetsById(6);
+		assertThat(this.statistics.getPrepareStatementCount()).isEqualTo(1);
+
+		Owner second = this.owners.findWithPetsById(6);
+		assertThat(this.statistics.getPrepareStatementCount()).isEqualTo(1);
+		assertThat(second.getLastName()).isEqualTo("Coleman");
+		assertThat(second.getPets()).extracting(Pet::getName).containsExactly("Max", "Samantha");
+
+		// every lookup gets its own copy
+		assertThat(second).isNotSameAs(first);
+		first.setLastName("Changed");
+		assertThat(this.owners.findWithPetsById(6).getLastName()).isEqualTo("Coleman");
+	}
+
+	@Test
+	void shouldCacheMissingOwners() {
+		assertThat(this.owners.findWithPetsById(99)).isNull();
+		assertThat(this.owners.findWithPetsById(99)).isNull();
+		assertThat(this.statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	@Test
+	@Transactional
+	void shouldEvictOwnerOnSave() {
+		Owner owner = this.owners.findWithPetsById(1);
+		owner.setTelephone("6085550000");
+		this.owners.save(owner);
+
+		assertThat(this.owners.findWithPetsById(1).getTelephone()).isEqualTo("6085550000");
+	}
+
+	@Test
+	void shouldExposeStatisticsAsMetrics() {
+		double hits = cacheGets("hit");
+		double misses = cacheGets("miss");
+
+		this.owners.findWithPetsById(2);
+		this.owners.findWithPetsById(2);
+
+		assertThat(cacheGets("hit")).isEqualTo(hits + 1);
+		assertThat(cacheGets("miss")).isEqualTo(misses + 1);
+		assertThat(this.meterRegistry.find("cache.evictions").tag("cache", "owners").meter()).isNotNull();
+	}
+
+	private double cacheGets(String result) {
+		return this.meterRegistry.get("cache.gets")
+			.tag("cache", "owners")
+			.tag("result", result)
+			.functionCounter()
+			.count();
+	}
+
+}
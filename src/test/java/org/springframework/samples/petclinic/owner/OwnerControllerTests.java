@@ -24,27 +24,47 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.data.domain.Page;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.aot.DisabledInAotMode;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
@@ -54,7 +74,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  *
  * @author Colin But
  */
-@WebMvcTest(OwnerController.class)
+@WebMvcTest(value = OwnerController.class,
+		includeFilters = @ComponentScan.Filter(value = { OwnerLoader.class, OwnerSearch.class },
+				type = FilterType.ASSIGNABLE_TYPE))
 @DisabledInNativeImage
 @DisabledInAotMode
 class OwnerControllerTests {
@@ -67,6 +89,15 @@ class OwnerControllerTests {
 	@MockBean
 	private OwnerRepository owners;
 
+	@MockBean
+	private VisitRepository visits;
+
+	@MockBean
+	private OwnerNameIndex names;
+
+	@MockBean
+	private OwnerFacetIndex facets;
+
 	private Owner george() {
 		Owner george = new Owner();
 		george.setId(TEST_OWNER_ID);
@@ -86,19 +117,48 @@ class OwnerControllerTests {
 		return george;
 	}
 
+	private static Window<OwnerSummary> window(boolean hasNext, Owner... owners) {
+		List<OwnerSummary> summaries = Stream.of(owners)
+			.map(owner -> new OwnerSummary(owner.getId(), owner.getFirstName(), owner.getLastName(), owner.getAddress(),
+					owner.getCity(), owner.getTelephone()))
+			.toList();
+		return Window.from(summaries, index -> ScrollPosition.offset(index), hasNext);
+	}
+
+	private static OwnerPetNames petNames(Integer ownerId, String petNames) {
+		return new OwnerPetNames() {
+
+			@Override
+			public Integer getOwnerId() {
+				return ownerId;
+			}
+
+			@Override
+			public String getPetNames() {
+				return petNames;
+			}
+
+		};
+	}
+
 	@BeforeEach
 	void setup() {
 
 		Owner george = george();
-		given(this.owners.findByLastName(eq("Franklin"), any(Pageable.class)))
-			.willReturn(new PageImpl<>(Lists.newArrayList(george)));
+		given(this.owners.findSummariesByLastNameStartingWith(eq("Franklin"), any(ScrollPosition.class),
+				any(Limit.class), any(Sort.class)))
+			.willReturn(window(false, george));
 
 		given(this.owners.findAll(any(Pageable.class))).willReturn(new PageImpl<>(Lists.newArrayList(george)));
 
 		given(this.owners.findById(TEST_OWNER_ID)).willReturn(george);
+		given(this.owners.findWithPetsById(TEST_OWNER_ID)).willReturn(george);
 		Visit visit = new Visit();
 		visit.setDate(LocalDate.now());
 		george.getPet("Max").getVisits().add(visit);
+		given(this.visits.findRecentByPetIds(List.of(1), 6)).willReturn(List.of(new PetVisit(1, visit)));
+		given(this.facets.select(anyString(), any(), any())).willReturn(new OwnerFacetIndex.Selection(null,
+				List.of(new FacetCount("Madison", 1203)), List.of(new FacetCount("dog", 845))));
 
 	}
 
@@ -142,24 +202,201 @@ class OwnerControllerTests {
 
 	@Test
 	void testProcessFindFormSuccess() throws Exception {
-		Page<Owner> tasks = new PageImpl<>(Lists.newArrayList(george(), new Owner()));
-		Mockito.when(this.owners.findByLastName(anyString(), any(Pageable.class))).thenReturn(tasks);
-		mockMvc.perform(get("/owners?page=1")).andExpect(status().isOk()).andExpect(view().name("owners/ownersList"));
+		Owner betty = new Owner();
+		betty.setId(2);
+		Window<OwnerSummary> tasks = window(false, george(), betty);
+		Mockito
+			.when(this.owners.findSummariesByLastNameStartingWith(anyString(), any(ScrollPosition.class),
+					any(Limit.class), any(Sort.class)))
+			.thenReturn(tasks);
+		given(this.owners.findPetNamesByOwnerIds(List.of(TEST_OWNER_ID, 2)))
+			.willReturn(List.of(petNames(TEST_OWNER_ID, "Max")));
+		mockMvc.perform(get("/owners?page=1"))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("totalItems", 2L))
+			.andExpect(model().attribute("petNames", Map.of(TEST_OWNER_ID, "Max")))
+			.andExpect(content().string(containsString("Max")))
+			.andExpect(content().string(containsString("Madison (1,203)")))
+			.andExpect(content().string(containsString("dog (845)")))
+			.andExpect(view().name("owners/ownersList"));
+		verify(this.owners, never()).countByLastNameStartingWith(anyString());
+	}
+
+	@Test
+	void testProcessFindFormByCityAndPetType() throws Exception {
+		IdBitmap selected = IdBitmap.of(TEST_OWNER_ID, 2, 3, 4, 5, 6);
+		given(this.facets.select("", "Madison", "dog")).willReturn(new OwnerFacetIndex.Selection(selected,
+				List.of(new FacetCount("Madison", 6)), List.of(new FacetCount("dog", 6))));
+		given(this.names.complete("", 5, 5, selected))
+			.willReturn(List.of(new OwnerName(TEST_OWNER_ID, "George", "Franklin")));
+		given(this.owners.findSummariesByIdIn(List.of(TEST_OWNER_ID))).willReturn(window(false, george()).getContent());
+		mockMvc.perform(get("/owners").param("city", "Madison").param("petType", "dog").param("page", "2"))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("currentPage", 2))
+			.andExpect(model().attribute("totalPages", 2))
+			.andExpect(model().attribute("totalItems", 6L))
+			.andExpect(model().attribute("city", "Madison"))
+			.andExpect(content().string(containsString("Madison (6)")))
+			.andExpect(content().string(containsString("110 W. Liberty St.")))
+			.andExpect(view().name("owners/ownersList"));
+		verify(this.owners, never()).findSummariesByLastNameStartingWith(anyString(), any(ScrollPosition.class),
+				any(Limit.class), any(Sort.class));
+	}
+
+	@Test
+	void testProcessFindFormByCityWithoutOwners() throws Exception {
+		given(this.facets.select("", "Windsor", null)).willReturn(
+				new OwnerFacetIndex.Selection(IdBitmap.EMPTY, List.of(new FacetCount("Windsor", 0)), List.of()));
+		mockMvc.perform(get("/owners").param("city", "Windsor").param("petType", ""))
+			.andExpect(status().isOk())
+			.andExpect(model().attributeHasFieldErrorCode("owner", "lastName", "notFound"))
+			.andExpect(view().name("owners/findOwners"));
+	}
+
+	@Test
+	void testProcessFindFormFirstOfManyPages() throws Exception {
+		Window<OwnerSummary> tasks = window(true, george(), george());
+		Mockito.when(this.owners.findSummariesByLastNameStartingWith(eq(""), eq(ScrollPosition.keyset()),
+				any(Limit.class), any(Sort.class)))
+			.thenReturn(tasks);
+		given(this.owners.countByLastNameStartingWith("")).willReturn(42L);
+		mockMvc.perform(get("/owners"))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("currentPage", 1))
+			.andExpect(model().attribute("totalPages", 9))
+			.andExpect(model().attribute("totalItems", 42L))
+			.andExpect(model().attribute("pageWindow", List.of(1, 2, 3)))
+			.andExpect(model().attribute("nextCursor", OwnerCursor.after("Franklin", TEST_OWNER_ID).encode()))
+			.andExpect(view().name("owners/ownersList"));
+	}
+
+	@Test
+	void testProcessFindFormNextPageUsesCursor() throws Exception {
+		Window<OwnerSummary> tasks = window(true, george(), george());
+		ScrollPosition after = ScrollPosition.forward(Map.of("lastName", "Davis", "id", 4));
+		Mockito
+			.when(this.owners.findSummariesByLastNameStartingWith(eq(""), eq(after), any(Limit.class), any(Sort.class)))
+			.thenReturn(tasks);
+		given(this.owners.countByLastNameStartingWith("")).willReturn(42L);
+		mockMvc.perform(get("/owners").param("page", "5").param("cursor", OwnerCursor.after("Davis", 4).encode()))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("currentPage", 5))
+			.andExpect(model().attribute("totalItems", 42L))
+			.andExpect(model().attribute("pageWindow", List.of(3, 4, 5, 6, 7)))
+			.andExpect(model().attribute("pageCursors",
+					hasEntry(7, OwnerCursor.after("Franklin", TEST_OWNER_ID).skipping(1).encode())))
+			.andExpect(view().name("owners/ownersList"));
+	}
+
+	@Test
+	void testProcessFindFormPageLinkSkipsPagesFromCursor() throws Exception {
+		Owner[] owners = Stream.iterate(1, id -> id + 1).limit(10).map(id -> {
+			Owner owner = george();
+			owner.setId(id);
+			return owner;
+		}).toArray(Owner[]::new);
+		ScrollPosition after = ScrollPosition.forward(Map.of("lastName", "Davis", "id", 4));
+		Mockito
+			.when(this.owners.findSummariesByLastNameStartingWith(eq(""), eq(after), eq(Limit.of(10)), any(Sort.class)))
+			.thenReturn(window(true, owners));
+		given(this.owners.countByLastNameStartingWith("")).willReturn(42L);
+		mockMvc
+			.perform(get("/owners").param("page", "4")
+				.param("cursor", OwnerCursor.after("Davis", 4).skipping(1).encode()))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("currentPage", 4))
+			.andExpect(model().attribute("listOwners", window(false, Arrays.copyOfRange(owners, 5, 10)).getContent()))
+			.andExpect(view().name("owners/ownersList"));
+	}
+
+	@Test
+	void testProcessFindFormLastPageHoldsRemainingOwners() throws Exception {
+		Owner betty = george();
+		betty.setId(2);
+		Mockito
+			.when(this.owners.findSummariesByLastNameStartingWith(eq(""), eq(ScrollPosition.backward(Map.of())),
+					eq(Limit.of(2)), any(Sort.class)))
+			.thenReturn(window(true, george(), betty));
+		given(this.owners.countByLastNameStartingWith("")).willReturn(12L);
+		mockMvc.perform(get("/owners").param("page", "9").param("cursor", OwnerCursor.last().encode()))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("currentPage", 3))
+			.andExpect(model().attribute("totalPages", 3))
+			.andExpect(model().attribute("listOwners", hasSize(2)))
+			.andExpect(model().attribute("previousCursor", OwnerCursor.before("Franklin", TEST_OWNER_ID).encode()))
+			.andExpect(view().name("owners/ownersList"));
 	}
 
 	@Test
 	void testProcessFindFormByLastName() throws Exception {
-		Page<Owner> tasks = new PageImpl<>(Lists.newArrayList(george()));
-		Mockito.when(this.owners.findByLastName(eq("Franklin"), any(Pageable.class))).thenReturn(tasks);
+		Window<OwnerSummary> tasks = window(false, george());
+		Mockito
+			.when(this.owners.findSummariesByLastNameStartingWith(eq("Franklin"), any(ScrollPosition.class),
+					any(Limit.class), any(Sort.class)))
+			.thenReturn(tasks);
 		mockMvc.perform(get("/owners?page=1").param("lastName", "Franklin"))
 			.andExpect(status().is3xxRedirection())
 			.andExpect(view().name("redirect:/owners/" + TEST_OWNER_ID));
 	}
 
+	@Test
+	void testProcessFindFormByTelephone() throws Exception {
+		given(this.owners.findSummariesByTelephone(eq("6085551023"), any(ScrollPosition.class), any(Limit.class),
+				any(Sort.class)))
+			.willReturn(window(false, george()));
+		mockMvc.perform(get("/owners").param("telephone", "(608) 555-1023").param("lastName", "Ignored"))
+			.andExpect(status().is3xxRedirection())
+			.andExpect(view().name("redirect:/owners/" + TEST_OWNER_ID));
+		verify(this.owners, never()).findSummariesByLastNameStartingWith(anyString(), any(ScrollPosition.class),
+				any(Limit.class), any(Sort.class));
+	}
+
+	@Test
+	void testProcessFindFormByTelephoneNoOwnersFound() throws Exception {
+		given(this.owners.findSummariesByTelephone(eq("6085550000"), any(ScrollPosition.class), any(Limit.class),
+				any(Sort.class)))
+			.willReturn(window(false));
+		mockMvc.perform(get("/owners").param("telephone", "608-555-0000"))
+			.andExpect(status().isOk())
+			.andExpect(model().attributeHasFieldErrorCode("owner", "telephone", "notFound"))
+			.andExpect(view().name("owners/findOwners"));
+	}
+
+	@Test
+	void testProcessFindFormByPetName() throws Exception {
+		Owner betty = george();
+		betty.setId(2);
+		betty.setFirstName("Betty");
+		given(this.owners.findSummariesByPetName("Ma", PageRequest.of(1, 5, OwnerCursor.SORT)))
+			.willReturn(new SliceImpl<>(window(false, george(), betty).getContent(), PageRequest.of(1, 5), false));
+		given(this.owners.countByPetName("Ma")).willReturn(7L);
+		mockMvc.perform(get("/owners").param("petName", "Ma").param("page", "2").param("cursor", "ignored"))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("listOwners", hasSize(2)))
+			.andExpect(model().attribute("totalItems", 7L))
+			.andExpect(model().attribute("petName", "Ma"))
+			.andExpect(model().attributeDoesNotExist("cities"))
+			.andExpect(content().string(containsString("petName=Ma")))
+			.andExpect(view().name("owners/ownersList"));
+	}
+
+	@Test
+	void testProcessFindFormByPetNameNoOwnersFound() throws Exception {
+		given(this.owners.findSummariesByPetName(eq("Zz"), any(Pageable.class)))
+			.willReturn(new SliceImpl<>(List.of(), PageRequest.of(0, 5), false));
+		mockMvc.perform(get("/owners").param("petName", "Zz"))
+			.andExpect(status().isOk())
+			.andExpect(model().attributeHasErrors("owner"))
+			.andExpect(view().name("owners/findOwners"));
+	}
+
 	@Test
 	void testProcessFindFormNoOwnersFound() throws Exception {
-		Page<Owner> tasks = new PageImpl<>(Lists.newArrayList());
-		Mockito.when(this.owners.findByLastName(eq("Unknown Surname"), any(Pageable.class))).thenReturn(tasks);
+		Window<OwnerSummary> tasks = window(false);
+		Mockito
+			.when(this.owners.findSummariesByLastNameStartingWith(eq("Unknown Surname"), any(ScrollPosition.class),
+					any(Limit.class), any(Sort.class)))
+			.thenReturn(tasks);
 		mockMvc.perform(get("/owners?page=1").param("lastName", "Unknown Surname"))
 			.andExpect(status().isOk())
 			.andExpect(model().attributeHasFieldErrors("owner", "lastName"))
@@ -168,6 +405,49 @@ class OwnerControllerTests {
 
 	}
 
+	@Test
+	void testProcessFindFormSuggestsSimilarOwners() throws Exception {
+		Mockito
+			.when(this.owners.findSummariesByLastNameStartingWith(eq("Franklyn"), any(ScrollPosition.class),
+					any(Limit.class), any(Sort.class)))
+			.thenReturn(window(false));
+		given(this.names.match("Franklyn", 10)).willReturn(List.of(new OwnerName(TEST_OWNER_ID, "George", "Franklin")));
+		mockMvc.perform(get("/owners").param("lastName", "Franklyn").param("fuzzy", "true"))
+			.andExpect(status().isOk())
+			.andExpect(model().attributeHasFieldErrorCode("owner", "lastName", "notFound"))
+			.andExpect(model().attribute("similarOwners", List.of(new OwnerName(TEST_OWNER_ID, "George", "Franklin"))))
+			.andExpect(content().string(containsString("/owners/" + TEST_OWNER_ID)))
+			.andExpect(view().name("owners/findOwners"));
+	}
+
+	@Test
+	void testCompleteLastName() throws Exception {
+		given(this.names.complete("fr", 10)).willReturn(List.of(new OwnerName(TEST_OWNER_ID, "George", "Franklin")));
+		mockMvc.perform(get("/owners/autocomplete").param("lastName", "fr"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].id").value(TEST_OWNER_ID))
+			.andExpect(jsonPath("$[0].firstName").value("George"))
+			.andExpect(jsonPath("$[0].lastName").value("Franklin"));
+		verify(this.owners, never()).findSummariesByLastNameStartingWith(anyString(), any(ScrollPosition.class),
+				any(Limit.class), any(Sort.class));
+	}
+
+	@Test
+	void testCompleteLastNameCapsLimit() throws Exception {
+		mockMvc.perform(get("/owners/autocomplete").param("lastName", "Fr").param("limit", "1000"))
+			.andExpect(status().isOk());
+		verify(this.names).complete("Fr", 50);
+	}
+
+	@Test
+	void testCompleteLastNameWithSimilarNames() throws Exception {
+		given(this.names.match("Franklyn", 10)).willReturn(List.of(new OwnerName(TEST_OWNER_ID, "George", "Franklin")));
+		mockMvc.perform(get("/owners/autocomplete").param("lastName", "Franklyn").param("fuzzy", "true"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].lastName").value("Franklin"));
+		verify(this.names, never()).complete(anyString(), anyInt());
+	}
+
 	@Test
 	void testInitUpdateOwnerForm() throws Exception {
 		mockMvc.perform(get("/owners/{ownerId}/edit", TEST_OWNER_ID))
@@ -214,6 +494,27 @@ class OwnerControllerTests {
 			.andExpect(view().name("owners/createOrUpdateOwnerForm"));
 	}
 
+	@Test
+	void testProcessUpdateOwnerFormConflict() throws Exception {
+		Owner current = george();
+		current.setVersion(3);
+		given(this.owners.findWithPetsById(TEST_OWNER_ID)).willReturn(george(), current);
+		willThrow(new ObjectOptimisticLockingFailureException(Owner.class, TEST_OWNER_ID)).given(this.owners)
+			.updateDetails(any(Owner.class));
+		mockMvc
+			.perform(post("/owners/{ownerId}/edit", TEST_OWNER_ID).param("firstName", "Joe")
+				.param("lastName", "Bloggs")
+				.param("address", "123 Caramel Street")
+				.param("city", "London")
+				.param("telephone", "1616291589")
+				.param("version", "2"))
+			.andExpect(status().isOk())
+			.andExpect(model().attributeHasErrors("owner"))
+			.andExpect(model().attribute("owner", hasProperty("lastName", is("Bloggs"))))
+			.andExpect(model().attribute("owner", hasProperty("version", is(3))))
+			.andExpect(view().name("owners/createOrUpdateOwnerForm"));
+	}
+
 	@Test
 	void testShowOwner() throws Exception {
 		mockMvc.perform(get("/owners/{ownerId}", TEST_OWNER_ID))
@@ -226,6 +527,7 @@ class OwnerControllerTests {
 			.andExpect(model().attribute("owner", hasProperty("pets", not(empty()))))
 			.andExpect(model().attribute("owner",
 					hasProperty("pets", hasItem(hasProperty("visits", hasSize(greaterThan(0)))))))
+			.andExpect(model().attribute("recentVisits", hasEntry(is(1), hasProperty("content", hasSize(1)))))
 			.andExpect(view().name("owners/ownerDetails"));
 	}
 
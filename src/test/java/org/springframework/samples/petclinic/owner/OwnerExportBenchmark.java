@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.samples.petclinic.PetClinicApplication;
+
+/**
+ * Measures exporting all owners as NDJSON on the embedded database, after importing the
+ * given number of owners with two pets of two visits each. The rows per second of one
+ * export are printed at setup. Run with {@code org.openjdk.jmh.Main OwnerExportBenchmark}
+ * or the {@link #main} method from the test classpath, adding {@code -prof gc} to see
+ * that the allocations per export grow with the rows alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OwnerExportBenchmark {
+
+	@Param({ "1000", "20000" })
+	private int owners;
+
+	private ConfigurableApplicationContext context;
+
+	private OwnerExporter exporter;
+
+	@Setup
+	public void setup() throws IOException {
+		this.context = SpringApplication.run(PetClinicApplication.class, "--petclinic.search.enabled=false",
+				"--spring.main.banner-mode=off", "--logging.level.root=warn", "--server.port=0",
+				"--logging.level.org.springframework=warn", "--spring.docker.compose.enabled=false",
+				"--spring.cache.type=none");
+		StringBuilder csv = new StringBuilder();
+		for (int i = 0; i < this.owners; i++) {
+			csv.append("owner,Bench,Mark").append(i).append(",1 Main St.,Madison,6085550000\n");
+			for (String pet : new String[] { "Leo", "Max" }) {
+				csv.append("pet,").append(pet).append(",2020-01-01,cat\n");
+				csv.append("visit,2021-01-01,rabies shot\nvisit,2022-01-01,check-up\n");
+			}
+		}
+		try (InputStream in = new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8))) {
+			this.context.getBean(OwnerImporter.class).importOwners("benchmark", OwnerFileFormat.CSV, in);
+		}
+		this.exporter = this.context.getBean(OwnerExporter.class);
+
+		OwnerExporter.Result result = export();
+		System.out.printf("Exported %d rows at %.0f rows/s%n", result.rows(), result.rowsPerSecond());
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public OwnerExporter.Result export() throws IOException {
+		return this.exporter.export(OwnerFileFormat.NDJSON, OutputStream.nullOutputStream());
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(OwnerExportBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.owner.OwnerExporter.Result;
+import org.springframework.samples.petclinic.owner.OwnerImportReader.ImportedOwner;
+import org.springframework.test.context.aot.DisabledInAotMode;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Integration test of exporting the owners of the sample data.
+ */
+@SpringBootTest(
+		properties = { "spring.jpa.properties.hibernate.generate_statistics=true", "petclinic.search.enabled=false" })
+@AutoConfigureMockMvc
+@DisabledInNativeImage
+@DisabledInAotMode
+class OwnerExporterTests {
+
+	@Autowired
+	private OwnerExporter exporter;
+
+	@Autowired
+	private PetTypeRegistry petTypes;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setup() {
+		this.statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		this.statistics.clear();
+	}
+
+	@Test
+	void shouldExportNdjsonWithSingleQueryAndNoEntities() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Result result = this.exporter.export(OwnerFileFormat.NDJSON, out);
+
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		assertThat(lines).hasSize(count("SELECT count(*) FROM owners")).hasSize(result.owners());
+		assertThat(lines[0]).isEqualTo("""
+				{"firstName":"George","lastName":"Franklin","address":"110 W. Liberty St.","city":"Madison",\
+				"telephone":"6085551023","pets":[{"name":"Leo","birthDate":"2010-09-07","type":"cat","visits":[]}]}""");
+		assertThat(result.rows()).isEqualTo(count("""
+				SELECT count(*) FROM owners LEFT JOIN pets ON pets.owner_id = owners.id
+				LEFT JOIN visits ON visits.pet_id = pets.id"""));
+		assertThat(result.rowsPerSecond()).isPositive();
+		assertThat(this.statistics.getPrepareStatementCount()).isEqualTo(1);
+		assertThat(this.statistics.getEntityLoadCount()).isZero();
+	}
+
+	@Test
+	void shouldExportCsvThatImportsAsIs() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		this.exporter.export(OwnerFileFormat.CSV, out);
+
+		int owners = 0;
+		int pets = 0;
+		int visits = 0;
+		try (OwnerImportReader reader = OwnerImportReader.open(OwnerFileFormat.CSV,
+				new ByteArrayInputStream(out.toByteArray()), null, this.petTypes)) {
+			ImportedOwner imported;
+			while ((imported = reader.next()) != null) {
+				assertThat(imported.errors()).isEmpty();
+				owners++;
+				pets += imported.owner().getPets().size();
+				visits += imported.owner().getPets().stream().mapToInt((pet) -> pet.getVisits().size()).sum();
+			}
+		}
+		assertThat(owners).isEqualTo(count("SELECT count(*) FROM owners"));
+		assertThat(pets).isEqualTo(count("SELECT count(*) FROM pets"));
+		assertThat(visits).isEqualTo(count("SELECT count(*) FROM visits"));
+	}
+
+	@Test
+	void shouldStreamExportToResponse() throws Exception {
+		MvcResult result = this.mockMvc.perform(get("/owners/export.csv"))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+
+		this.mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isOk())
+			.andExpect(content().contentType("text/csv"))
+			.andExpect(header().string("Content-Disposition", "attachment; filename=\"owners.csv\""))
+			.andExpect(content().string(startsWith("""
+					owner,George,Franklin,110 W. Liberty St.,Madison,6085551023
+					pet,Leo,2010-09-07,cat
+					owner,Betty,Davis,""")));
+	}
+
+	private int count(String sql) {
+		return this.jdbcTemplate.queryForObject(sql, Integer.class);
+	}
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link OwnerFacetIndex} and {@link IdBitmap}
+ */
+class OwnerFacetIndexTests {
+
+	private final OwnerRepository owners = mock(OwnerRepository.class);
+
+	private final OwnerFacetIndex index = new OwnerFacetIndex(this.owners, new OwnerNameIndex(this.owners),
+			new PetTypeRegistry(this.owners));
+
+	@BeforeEach
+	void setup() {
+		given(this.owners.findPetTypes())
+			.willReturn(List.of(petType(1, "cat"), petType(2, "dog"), petType(3, "lizard")));
+		given(this.owners.findAllNames()).willReturn(List.of(new OwnerName(1, "George", "Franklin"),
+				new OwnerName(2, "Betty", "Davis"), new OwnerName(3, "Eduardo", "Rodriquez"),
+				new OwnerName(4, "Harold", "Davis"), new OwnerName(5, "Peter", "McTavish")));
+		given(this.owners.findAllFacetValues())
+			.willReturn(List.of(new OwnerFacetValues(1, "Madison", 1), new OwnerFacetValues(2, "Sun Prairie", 2),
+					new OwnerFacetValues(3, "McFarland", 2), new OwnerFacetValues(3, "McFarland", 1),
+					new OwnerFacetValues(4, "Madison", 1), new OwnerFacetValues(5, "Madison", null)));
+	}
+
+	@Test
+	void shouldCountOwnersPerValue() {
+		OwnerFacetIndex.Selection selection = this.index.select("", null, null);
+
+		assertThat(selection.isFiltered()).isFalse();
+		assertThat(selection.cities()).containsExactly(new FacetCount("Madison", 3), new FacetCount("McFarland", 1),
+				new FacetCount("Sun Prairie", 1));
+		assertThat(selection.petTypes()).containsExactly(new FacetCount("cat", 3), new FacetCount("dog", 2));
+	}
+
+	@Test
+	void shouldSelectByLastNameCityAndPetType() {
+		OwnerFacetIndex.Selection selection = this.index.select("dav", "Madison", null);
+
+		assertThat(selection.owners().toArray()).containsExactly(4);
+		assertThat(selection.cities()).containsExactly(new FacetCount("Madison", 1), new FacetCount("Sun Prairie", 1));
+		assertThat(selection.petTypes()).containsExactly(new FacetCount("cat", 1));
+
+		selection = this.index.select("", "Madison", "cat");
+		assertThat(selection.owners().toArray()).containsExactly(1, 4);
+		assertThat(selection.cities()).containsExactly(new FacetCount("Madison", 2), new FacetCount("McFarland", 1));
+		assertThat(selection.petTypes()).containsExactly(new FacetCount("cat", 2));
+	}
+
+	@Test
+	void shouldCountSelectedValuesWithoutOwners() {
+		OwnerFacetIndex.Selection selection = this.index.select("", "Windsor", "lizard");
+
+		assertThat(selection.owners().isEmpty()).isTrue();
+		assertThat(selection.cities()).containsExactly(new FacetCount("Windsor", 0));
+		assertThat(selection.petTypes()).containsExactly(new FacetCount("lizard", 0));
+	}
+
+	@Test
+	void shouldMoveSavedOwners() {
+		this.index.build();
+
+		this.index.ownerSaved(new OwnerSaved(2, "Madison", Set.of(1, 3)));
+		this.index.ownerSaved(new OwnerSaved(6, "Windsor", Set.of()));
+
+		assertThat(this.index.select("", null, null).cities()).containsExactly(new FacetCount("Madison", 4),
+				new FacetCount("McFarland", 1), new FacetCount("Windsor", 1));
+		assertThat(this.index.select("", null, "lizard").owners().toArray()).containsExactly(2);
+		assertThat(this.index.select("", null, "dog").owners().toArray()).containsExactly(3);
+	}
+
+	@Test
+	void shouldMoveImportedOwnersAtOnce() {
+		this.index.build();
+
+		this.index.ownersImported(new OwnersImported(
+				List.of(new OwnerSaved(2, "Madison", Set.of(1, 3)), new OwnerSaved(6, "Windsor", Set.of())),
+				List.of()));
+
+		assertThat(this.index.select("", null, null).cities()).containsExactly(new FacetCount("Madison", 4),
+				new FacetCount("McFarland", 1), new FacetCount("Windsor", 1));
+		assertThat(this.index.select("", null, "lizard").owners().toArray()).containsExactly(2);
+		assertThat(this.index.select("", null, "dog").owners().toArray()).containsExactly(3);
+	}
+
+	@Test
+	void shouldApplyOwnersSavedBeforeBuilding() {
+		this.index.ownerSaved(new OwnerSaved(1, "Monona", Set.of(2)));
+
+		assertThat(this.index.select("", "Monona", "dog").owners().toArray()).containsExactly(1);
+		assertThat(this.index.select("", "Madison", null).owners().toArray()).containsExactly(4, 5);
+	}
+
+	@Test
+	void shouldAddAndRemoveAcrossChunkKinds() {
+		IdBitmap.Builder builder = new IdBitmap.Builder();
+		IntStream.range(0, 5000).forEach((id) -> builder.add(id * 2));
+		builder.add(9998);
+		builder.add(1 << 20);
+		IdBitmap even = builder.build();
+		assertThat(even.cardinality()).isEqualTo(5001);
+		assertThat(even.contains(4000)).isTrue();
+		assertThat(even.contains(4001)).isFalse();
+		assertThat(even.contains(1 << 20)).isTrue();
+
+		IdBitmap fewer = even;
+		for (int id = 0; id < 2000; id += 2) {
+			fewer = fewer.without(id);
+		}
+		assertThat(fewer.cardinality()).isEqualTo(4001);
+		assertThat(fewer.contains(0)).isFalse();
+		assertThat(fewer.with(0).without(0).toArray()).containsExactly(fewer.toArray());
+		assertThat(even.contains(0)).isTrue();
+
+		IdBitmap odd = IdBitmap.of(1, 3, 4000, 4001, 1 << 20);
+		assertThat(even.and(odd).toArray()).containsExactly(4000, 1 << 20);
+		assertThat(even.andCardinality(odd)).isEqualTo(2);
+		assertThat(odd.without(4000).without(1 << 20).and(even).isEmpty()).isTrue();
+	}
+
+	private static PetType petType(int id, String name) {
+		PetType type = new PetType();
+		type.setId(id);
+		type.setName(name);
+		return type;
+	}
+
+}
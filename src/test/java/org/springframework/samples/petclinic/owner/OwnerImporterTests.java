@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.owner.OwnerImporter.Result;
+import org.springframework.test.context.aot.DisabledInAotMode;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Integration test of importing owners, committing chunks of two records.
+ */
+@SpringBootTest(properties = "petclinic.import.chunk-size=2")
+@AutoConfigureMockMvc
+@DisabledInNativeImage
+@DisabledInAotMode
+class OwnerImporterTests {
+
+	@Autowired
+	private OwnerImporter importer;
+
+	@Autowired
+	private OwnerNameIndex names;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void shouldImportCsv() throws IOException {
+		Result result = importCsv("csv", """
+				owner,Anna,Abbott,1 Lake St.,Madison,6085550001
+				pet,Bella,2020-01-02,dog
+				visit,2021-03-04,"shots, and a ""check-up""\"
+				visit,2022-03-04,"dental
+				cleaning"
+
+				pet,Coco,2019-05-06,cat
+				owner,Ben,Abbott,"2 Lake St., Apt. 3",Madison,(608) 555-0002
+				owner,Carl,Abbott,3 Lake St.,Madison,6085550003
+				""");
+
+		assertThat(result)
+			.extracting(Result::records, Result::owners, Result::pets, Result::visits, Result::rejected,
+					Result::completed)
+			.containsExactly(3, 3, 2, 2, 0, true);
+		assertThat(count("SELECT count(*) FROM owners WHERE last_name = 'Abbott' AND telephone = '6085550002'"))
+			.isEqualTo(1);
+		assertThat(count("""
+				SELECT count(*) FROM pets JOIN types ON pets.type_id = types.id JOIN owners ON pets.owner_id = owners.id
+				WHERE owners.last_name = 'Abbott' AND types.name = 'dog' AND pets.name = 'Bella'""")).isEqualTo(1);
+		assertThat(this.names.complete("Abbott", 10)).extracting(OwnerName::firstName)
+			.containsExactly("Anna", "Ben", "Carl");
+		assertThat(this.jdbcTemplate.queryForList("""
+				SELECT description FROM visits JOIN pets ON visits.pet_id = pets.id
+				WHERE pets.name = 'Bella' ORDER BY visit_date""", String.class))
+			.containsExactly("shots, and a \"check-up\"", "dental\ncleaning");
+	}
+
+	@Test
+	void shouldRejectInvalidOwners() throws IOException {
+		Result result = importCsv("rejects", """
+				owner,Dana,Baker,1 Oak St.,Madison,555
+				owner,Ed,Baker,2 Oak St.,Madison,6085550012
+				pet,Fido,2020-01-02,dragon
+				visit,2021-03-04,
+				owner,Fay,Baker,3 Oak St.,Madison,6085550013
+				pet,Gus,2020-01-02,dog
+				pet,gus,2020-13-02,dog
+				pet,Hal,2020-01-02
+				owner,Gil,Baker,4 Oak St.,Madison,6085550014
+				pet,Ivy,2020-01-02,cat
+				""");
+
+		assertThat(result).extracting(Result::records, Result::owners, Result::pets, Result::rejected)
+			.containsExactly(4, 1, 1, 3);
+		assertThat(result.errors()).hasSize(3);
+		assertThat(result.errors().get(0)).startsWith("line 1: ").contains("telephone");
+		assertThat(result.errors().get(1)).startsWith("line 2: ")
+			.contains("unknown pet type 'dragon'", "visit of 'Fido': description");
+		assertThat(result.errors().get(2)).startsWith("line 5: ")
+			.contains("invalid birthDate '2020-13-02'", "pet 'gus': already exists", "pet on line 8 has 3 fields");
+		assertThat(count("SELECT count(*) FROM owners WHERE last_name = 'Baker'")).isEqualTo(1);
+	}
+
+	@Test
+	void shouldFailOnUnterminatedQuotedField() {
+		assertThatExceptionOfType(IOException.class).isThrownBy(() -> importCsv("unterminated", """
+				owner,Hal,Evans,1 Ash St.,Madison,6085550041
+				owner,Ida,Evans,"2 Ash St.,Madison,6085550042
+				owner,Jon,Evans,3 Ash St.,Madison,6085550043
+				""")).withMessage("Quoted field on line 2 is not terminated");
+		assertThatExceptionOfType(IOException.class)
+			.isThrownBy(() -> importCsv("long", "owner,Kim,Evans,\"" + "x".repeat(5000) + "\",Madison,6085550044\n"))
+			.withMessageStartingWith("Field on line 1 is longer than");
+	}
+
+	@Test
+	void shouldResumeFailedImportAfterLastCommittedChunk() throws IOException {
+		String owners = """
+				owner,Ann,Carter,1 Elm St.,Madison,6085550021
+				owner,Bob,Carter,2 Elm St.,Madison,6085550022
+				pet,Max,2020-01-02,dog
+				owner,Cid,Carter,3 Elm St.,Madison,6085550023
+				owner,Dot,Carter,4 Elm St.,Madison,6085550024
+				owner,%s,Carter,5 Elm St.,Madison,6085550025
+				owner,Fox,Carter,6 Elm St.,Madison,6085550026
+				""";
+
+		// the first name does not fit its column
+		assertThatExceptionOfType(DataAccessException.class)
+			.isThrownBy(() -> importCsv("resume", owners.formatted("E".repeat(40))));
+		assertThat(this.importer.findProgress("resume"))
+			.extracting(Result::records, Result::owners, Result::pets, Result::completed)
+			.containsExactly(4, 4, 1, false);
+		assertThat(count("SELECT count(*) FROM owners WHERE last_name = 'Carter'")).isEqualTo(4);
+
+		Result result = importCsv("resume", owners.formatted("Eve"));
+		assertThat(result).extracting(Result::records, Result::owners, Result::pets, Result::completed)
+			.containsExactly(6, 6, 1, true);
+		assertThat(count("SELECT count(*) FROM owners WHERE last_name = 'Carter'")).isEqualTo(6);
+
+		assertThat(importCsv("resume", owners.formatted("Eve")).owners()).isEqualTo(6);
+		assertThat(count("SELECT count(*) FROM owners WHERE last_name = 'Carter'")).isEqualTo(6);
+	}
+
+	@Test
+	void shouldImportNdjsonFromRequestBody() throws Exception {
+		String owners = """
+				{"firstName":"Ada","lastName":"Dunn","address":"1 Pine St.","city":"Monona","telephone":"6085550031",
+				 "pets":[{"name":"Rex","birthDate":"2018-07-08","type":"dog",
+				          "visits":[{"date":"2020-02-03","description":"rabies shot"}]}]}
+				{"firstName":"Bo","lastName":"Dunn","address":"2 Pine St.","city":"Monona","telephone":"6085550032"}
+				{"firstName":"Cy","lastName":"Dunn","address":"3 Pine St.","city":"Monona"}
+				""";
+
+		this.mockMvc.perform(
+				post("/owners/import").param("id", "ndjson").contentType(OwnerFileFormat.NDJSON_VALUE).content(owners))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.owners").value(2))
+			.andExpect(jsonPath("$.pets").value(1))
+			.andExpect(jsonPath("$.visits").value(1))
+			.andExpect(jsonPath("$.rejected").value(1))
+			.andExpect(jsonPath("$.errors[0]").value("line 5: telephone must not be blank"));
+		this.mockMvc.perform(get("/owners/import/ndjson"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.records").value(3))
+			.andExpect(jsonPath("$.completed").value(true));
+		this.mockMvc.perform(get("/owners/import/unknown")).andExpect(status().isNotFound());
+		assertThat(count("SELECT count(*) FROM owners WHERE last_name = 'Dunn' AND city = 'Monona'")).isEqualTo(2);
+	}
+
+	private Result importCsv(String id, String owners) throws IOException {
+		try (InputStream in = new ByteArrayInputStream(owners.getBytes(StandardCharsets.UTF_8))) {
+			return this.importer.importOwners(id, OwnerFileFormat.CSV, in);
+		}
+	}
+
+	private int count(String sql) {
+		return this.jdbcTemplate.queryForObject(sql, Integer.class);
+	}
+
+}
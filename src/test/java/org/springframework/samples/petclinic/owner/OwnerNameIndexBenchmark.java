@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures last name completions by {@link OwnerNameIndex} over one million owners with
+ * generated names, against a scan of the names, and the cost of saving an owner into the
+ * index. Prefixes of one, two and four characters match about a twentieth, a few hundred
+ * and a handful of the owners. Run with
+ * {@code org.openjdk.jmh.Main OwnerNameIndexBenchmark} or the {@link #main} method from
+ * the test classpath, with a heap of at least 1 GB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class OwnerNameIndexBenchmark {
+
+	private static final int OWNERS = 1_000_000;
+
+	private static final int LIMIT = 10;
+
+	private static final String[] SYLLABLES = { "ba", "co", "da", "es", "fra", "ge", "ha", "jo", "ka", "le", "mc", "mi",
+			"no", "pe", "ro", "sa", "ta", "vi", "wa", "zo" };
+
+	@Param({ "m", "mcta", "mctavi" })
+	private String prefix;
+
+	private List<OwnerName> names;
+
+	private OwnerNameIndex index;
+
+	private int nextId = OWNERS;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		this.names = new ArrayList<>(OWNERS);
+		for (int id = 1; id <= OWNERS; id++) {
+			this.names.add(new OwnerName(id, name(random, 2), name(random, 3)));
+		}
+		OwnerRepository owners = mock(OwnerRepository.class);
+		given(owners.findAllNames()).willReturn(this.names);
+		this.index = new OwnerNameIndex(owners);
+		this.index.build();
+	}
+
+	private static String name(Random random, int syllables) {
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < syllables; i++) {
+			name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		}
+		name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+		return name.toString();
+	}
+
+	@Benchmark
+	public List<OwnerName> complete() {
+		return this.index.complete(this.prefix, LIMIT);
+	}
+
+	@Benchmark
+	public List<OwnerName> scan() {
+		List<OwnerName> completions = new ArrayList<>(LIMIT);
+		for (OwnerName name : this.names) {
+			if (name.lastName().toLowerCase(Locale.ROOT).startsWith(this.prefix)) {
+				completions.add(name);
+			}
+		}
+		completions.sort(OwnerNameIndex.ORDER);
+		return completions.subList(0, Math.min(LIMIT, completions.size()));
+	}
+
+	@Benchmark
+	public void update() {
+		this.index.update(new OwnerName(this.nextId++, "Jo", "Mctavish"));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(OwnerNameIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
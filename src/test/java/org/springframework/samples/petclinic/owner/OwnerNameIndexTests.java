@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link OwnerNameIndex}
+ */
+class OwnerNameIndexTests {
+
+	private final OwnerRepository owners = mock(OwnerRepository.class);
+
+	private final OwnerNameIndex index = new OwnerNameIndex(this.owners);
+
+	@BeforeEach
+	void setup() {
+		given(this.owners.findAllNames()).willReturn(List.of(new OwnerName(1, "George", "Franklin"),
+				new OwnerName(2, "Betty", "Davis"), new OwnerName(3, "Eduardo", "Rodriquez"),
+				new OwnerName(4, "Harold", "Davis"), new OwnerName(5, "Peter", "McTavish"),
+				new OwnerName(6, "Jean", "Coleman"), new OwnerName(7, "Jeff", "Black"),
+				new OwnerName(8, "Maria", "Escobito"), new OwnerName(9, "David", "Schroeder"),
+				new OwnerName(10, "Carlos", "Estaban"), new OwnerName(11, "Anna", "davidson")));
+	}
+
+	@Test
+	void shouldCompleteIgnoringCase() {
+		assertThat(lastNames(this.index.complete("DAV", 10))).containsExactly("davidson", "Davis", "Davis");
+		assertThat(this.index.complete("davi", 10)).extracting(OwnerName::id).containsExactly(11, 2, 4);
+		assertThat(lastNames(this.index.complete("Es", 10))).containsExactly("Escobito", "Estaban");
+		assertThat(this.index.complete("Z", 10)).isEmpty();
+	}
+
+	@Test
+	void shouldReturnTopCompletionsInOrder() {
+		assertThat(lastNames(this.index.complete("", 3))).containsExactly("Black", "Coleman", "davidson");
+		assertThat(this.index.complete("Davis", 1)).containsExactly(new OwnerName(2, "Betty", "Davis"));
+	}
+
+	@Test
+	void shouldBuildOnce() {
+		this.index.build();
+		this.index.complete("D", 10);
+		this.index.complete("E", 10);
+
+		verify(this.owners, times(1)).findAllNames();
+	}
+
+	@Test
+	void shouldAddAndRenameSavedOwners() {
+		this.index.complete("", 1);
+
+		this.index.update(new OwnerName(12, "Dora", "Dawson"));
+		this.index.update(new OwnerName(4, "Harold", "Black"));
+
+		assertThat(lastNames(this.index.complete("Da", 10))).containsExactly("davidson", "Davis", "Dawson");
+		assertThat(this.index.complete("B", 10)).extracting(OwnerName::id).containsExactly(4, 7);
+	}
+
+	@Test
+	void shouldKeepOwnersSavedBeforeBuild() {
+		this.index.update(new OwnerName(2, "Betty", "Smith"));
+
+		assertThat(this.index.complete("Davis", 10)).extracting(OwnerName::id).containsExactly(4);
+		assertThat(this.index.complete("Smith", 10)).extracting(OwnerName::id).containsExactly(2);
+	}
+
+	@Test
+	void shouldAddImportedOwnersOnceBuilt() {
+		this.index.ownersImported(new OwnersImported(List.of(), List.of(new OwnerName(12, "Dora", "Dawson"))));
+		this.index.build();
+		this.index.ownersImported(new OwnersImported(List.of(),
+				List.of(new OwnerName(13, "Dan", "Dawes"), new OwnerName(2, "Betty", "Dale"))));
+
+		// the owner imported before the build is not in the data store read by the mock
+		assertThat(lastNames(this.index.complete("Da", 10))).containsExactly("Dale", "davidson", "Davis", "Dawes");
+	}
+
+	@Test
+	void shouldMergeOverlayIntoBase() {
+		this.index.build();
+		List<OwnerName> added = new ArrayList<>();
+		for (int id = 100; id < 100 + OwnerNameIndex.MIN_OVERLAY_SIZE * 2; id++) {
+			OwnerName name = new OwnerName(id, "First " + id, "Added " + id);
+			added.add(name);
+			this.index.update(name);
+		}
+		this.index.update(new OwnerName(100, "First 100", "Renamed"));
+
+		List<OwnerName> completions = this.index.complete("added", Integer.MAX_VALUE);
+		assertThat(completions).hasSize(added.size() - 1).isSortedAccordingTo(OwnerNameIndex.ORDER);
+		assertThat(completions).containsAll(added.subList(1, added.size()));
+		assertThat(this.index.complete("renamed", 10)).extracting(OwnerName::id).containsExactly(100);
+		assertThat(this.index.complete("Davis", 10)).hasSize(2);
+	}
+
+	@Test
+	void shouldMatchCompletionsFirstAndThenSimilarNames() {
+		assertThat(this.index.match("Davi", 10)).extracting(OwnerName::id).containsExactly(11, 2, 4);
+		assertThat(this.index.match("DAVIES", 10)).extracting(OwnerName::id).containsExactly(2, 4);
+		assertThat(this.index.match("Davies", 1)).extracting(OwnerName::id).containsExactly(2);
+		assertThat(this.index.match("Colemann", 10)).extracting(OwnerName::id).containsExactly(6);
+	}
+
+	@Test
+	void shouldMatchNamesSoundingAlikeWithinMoreEdits() {
+		assertThat(this.index.match("Rodrikes", 10)).extracting(OwnerName::id).containsExactly(3);
+		assertThat(this.index.match("Rodrizes", 10)).isEmpty();
+	}
+
+	@Test
+	void shouldNotMatchShortNamesBeyondCompletions() {
+		assertThat(this.index.match("Da", 10)).extracting(OwnerName::id).containsExactly(11, 2, 4);
+		assertThat(this.index.match("Dv", 10)).isEmpty();
+	}
+
+	@Test
+	void shouldRankSimilarSavedOwnersAmongOthers() {
+		this.index.build();
+		this.index.update(new OwnerName(12, "Dora", "Davies"));
+
+		assertThat(this.index.match("Davis", 10)).extracting(OwnerName::id).containsExactly(2, 4, 12);
+		assertThat(this.index.match("Daviess", 10)).extracting(OwnerName::id).containsExactly(12, 2, 4);
+	}
+
+	private static List<String> lastNames(List<OwnerName> names) {
+		return names.stream().map(OwnerName::lastName).toList();
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures matching misspelled last names with {@link OwnerNameIndex} over one million
+ * owners with generated names, most of them distinct, against comparing the misspelled
+ * name with every name. The names searched are an existing one with a letter added, with
+ * a letter dropped and spelled as it sounds. Run with
+ * {@code org.openjdk.jmh.Main OwnerNameMatchBenchmark} or the {@link #main} method from
+ * the test classpath, with a heap of at least 1 GB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class OwnerNameMatchBenchmark {
+
+	private static final int OWNERS = 1_000_000;
+
+	private static final int LIMIT = 10;
+
+	private static final String[] SYLLABLES = { "ba", "co", "da", "es", "fra", "ge", "ha", "jo", "ka", "le", "mc", "mi",
+			"no", "pe", "ro", "sa", "ta", "vi", "wa", "zo" };
+
+	@Param({ "fralessavi", "frlesavi", "phralesavi" })
+	private String lastName;
+
+	private List<OwnerName> names;
+
+	private OwnerNameIndex index;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		this.names = new ArrayList<>(OWNERS);
+		for (int id = 1; id <= OWNERS; id++) {
+			this.names.add(new OwnerName(id, name(random, 2), name(random, 3 + random.nextInt(3))));
+		}
+		this.names.set(0, new OwnerName(1, "Jo", "Fralesavi"));
+		OwnerRepository owners = mock(OwnerRepository.class);
+		given(owners.findAllNames()).willReturn(this.names);
+		this.index = new OwnerNameIndex(owners);
+		// builds the matcher
+		this.index.match("fralesavix", LIMIT);
+	}
+
+	private static String name(Random random, int syllables) {
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < syllables; i++) {
+			name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		}
+		name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+		return name.toString();
+	}
+
+	@Benchmark
+	public List<OwnerName> match() {
+		return this.index.match(this.lastName, LIMIT);
+	}
+
+	@Benchmark
+	public List<OwnerName> scan() {
+		String folded = this.lastName.toLowerCase(Locale.ROOT);
+		List<OwnerName> matches = new ArrayList<>();
+		for (OwnerName name : this.names) {
+			char[] lastName = name.lastName().toCharArray();
+			if (OwnerNameMatcher.distance(folded, lastName, 0, lastName.length, 2) <= 2) {
+				matches.add(name);
+			}
+		}
+		return matches;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(OwnerNameMatchBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the indexed pet lookups of {@link Owner} with the linear scans they replaced,
+ * for owners with 10, 100 and 1,000 pets. Each lookup targets the last pet, and the name
+ * lookup of a missing pet is the duplicate check of every new pet. Run with
+ * {@code org.openjdk.jmh.Main OwnerPetLookupBenchmark} or the {@link #main} method from
+ * the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OwnerPetLookupBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	private int pets;
+
+	private Owner owner;
+
+	private int lastId;
+
+	private String lastName;
+
+	@Setup
+	public void setup() {
+		this.owner = new Owner();
+		for (int i = 1; i <= this.pets; i++) {
+			Pet pet = new Pet();
+			pet.setId(i);
+			pet.setName("Pet " + i);
+			this.owner.getPets().add(pet);
+		}
+		this.lastId = this.pets;
+		this.lastName = "PET " + this.pets;
+	}
+
+	@Benchmark
+	public Pet indexedById() {
+		return this.owner.getPet(this.lastId);
+	}
+
+	@Benchmark
+	public Pet indexedByName() {
+		return this.owner.getPet(this.lastName, false);
+	}
+
+	@Benchmark
+	public Pet indexedByMissingName() {
+		return this.owner.getPet("Unknown", true);
+	}
+
+	@Benchmark
+	public Pet scanById() {
+		for (Pet pet : this.owner.getPets()) {
+			if (!pet.isNew() && pet.getId().equals(this.lastId)) {
+				return pet;
+			}
+		}
+		return null;
+	}
+
+	@Benchmark
+	public Pet scanByName() {
+		return scanByName(this.lastName, false);
+	}
+
+	@Benchmark
+	public Pet scanByMissingName() {
+		return scanByName("Unknown", true);
+	}
+
+	private Pet scanByName(String name, boolean ignoreNew) {
+		name = name.toLowerCase();
+		for (Pet pet : this.owner.getPets()) {
+			String compName = pet.getName();
+			if (compName != null && compName.equalsIgnoreCase(name)) {
+				if (!ignoreNew || !pet.isNew()) {
+					return pet;
+				}
+			}
+		}
+		return null;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(OwnerPetLookupBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
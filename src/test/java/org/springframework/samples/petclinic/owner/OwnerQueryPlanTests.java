@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Checks on the embedded H2 database that owners are looked up through indexes: the plan
+ * of every statement issued for a lookup must not scan a table.
+ */
+@DataJpaTest
+class OwnerQueryPlanTests {
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private RecordingStatementInspector statements;
+
+	@BeforeEach
+	void setup() {
+		this.statements.sql.clear();
+	}
+
+	@Test
+	void shouldFindOwnersByTelephoneThroughIndex() {
+		assertThat(this.owners.findSummariesByTelephone("6085551749", ScrollPosition.keyset(), Limit.of(5),
+				OwnerCursor.SORT))
+			.extracting(OwnerSummary::lastName)
+			.containsExactly("Davis");
+		assertThat(this.owners.countByTelephone("6085551749")).isEqualTo(1);
+
+		assertThat(plans("6085551749")).hasSize(2)
+			.allSatisfy((plan) -> assertThat(plan).contains("PUBLIC.OWNERS_TELEPHONE").doesNotContain("tableScan"));
+	}
+
+	@Test
+	void shouldFindOwnersByPetNameThroughIndex() {
+		assertThat(this.owners.findSummariesByPetName("lu", PageRequest.of(0, 5, OwnerCursor.SORT)))
+			.extracting(OwnerSummary::lastName)
+			.containsExactly("Black", "Estaban");
+		assertThat(this.owners.countByPetName("lu")).isEqualTo(2);
+
+		assertThat(plans("lu%")).hasSize(2)
+			.allSatisfy((plan) -> assertThat(plan).contains("PUBLIC.PETS_NAME", "PUBLIC.PRIMARY_KEY")
+				.doesNotContain("tableScan"));
+	}
+
+	@Test
+	void shouldFindOwnersByLastNameThroughIndex() {
+		this.owners.findSummariesByLastNameStartingWith("Da", ScrollPosition.keyset(), Limit.of(5), OwnerCursor.SORT);
+		this.owners.countByLastNameStartingWith("Da");
+
+		assertThat(plans("Da%")).hasSize(2)
+			.allSatisfy((plan) -> assertThat(plan).contains("PUBLIC.OWNERS_LAST_NAME").doesNotContain("tableScan"));
+	}
+
+	/**
+	 * Explain the recorded statements, binding the given value to their first parameter
+	 * and a row count to any other.
+	 */
+	private List<String> plans(String value) {
+		return this.statements.sql.stream()
+			.map((sql) -> this.jdbcTemplate.query("EXPLAIN " + sql, (PreparedStatement statement) -> {
+				statement.setString(1, value);
+				for (int i = 2; i <= statement.getParameterMetaData().getParameterCount(); i++) {
+					statement.setInt(i, 5);
+				}
+			}, (rs, row) -> rs.getString(1)).get(0))
+			.toList();
+	}
+
+	@TestConfiguration(proxyBeanMethods = false)
+	static class PlanConfiguration {
+
+		@Bean
+		RecordingStatementInspector recordingStatementInspector() {
+			return new RecordingStatementInspector();
+		}
+
+		@Bean
+		HibernatePropertiesCustomizer statementInspectorCustomizer(RecordingStatementInspector statements) {
+			return (properties) -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, statements);
+		}
+
+	}
+
+	static class RecordingStatementInspector implements StatementInspector {
+
+		private final List<String> sql = new CopyOnWriteArrayList<>();
+
+		@Override
+		public String inspect(String sql) {
+			this.sql.add(sql);
+			return sql;
+		}
+
+	}
+
+}
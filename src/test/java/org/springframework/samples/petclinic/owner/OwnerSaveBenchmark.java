@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.SessionEventListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.samples.petclinic.PetClinicApplication;
+
+/**
+ * Measures saving a new owner with 50 pets on the embedded database, and counts the JDBC
+ * round-trips it takes: every statement executed on its own and every batch executed
+ * count as one. The round-trips of one save are printed at setup. Run with
+ * {@code org.openjdk.jmh.Main OwnerSaveBenchmark} or the {@link #main} method from the
+ * test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OwnerSaveBenchmark {
+
+	private static final AtomicLong roundTrips = new AtomicLong();
+
+	@Param({ "50" })
+	private int pets;
+
+	private ConfigurableApplicationContext context;
+
+	private OwnerRepository owners;
+
+	private PetType type;
+
+	@Setup
+	public void setup() {
+		this.context = SpringApplication.run(PetClinicApplication.class, "--petclinic.search.enabled=false",
+				"--spring.main.banner-mode=off", "--logging.level.root=warn", "--server.port=0",
+				"--spring.docker.compose.enabled=false",
+				"--spring.jpa.properties.hibernate.session.events.auto=" + RoundTripCounter.class.getName());
+		this.owners = this.context.getBean(OwnerRepository.class);
+		this.type = this.owners.findPetTypes().get(0);
+
+		save();
+		long before = roundTrips.get();
+		save();
+		System.out.println("Round-trips to save an owner with " + this.pets + " pets: " + (roundTrips.get() - before));
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public Owner save() {
+		Owner owner = new Owner();
+		owner.setFirstName("Bench");
+		owner.setLastName("Mark");
+		owner.setAddress("1 Main St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085550000");
+		for (int i = 1; i <= this.pets; i++) {
+			Pet pet = new Pet();
+			pet.setName("Pet " + i);
+			pet.setBirthDate(LocalDate.of(2020, 1, 1));
+			pet.setType(this.type);
+			owner.addPet(pet);
+		}
+		this.owners.save(owner);
+		return owner;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(OwnerSaveBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	/**
+	 * Counts the statements and batches executed by every session.
+	 */
+	public static class RoundTripCounter implements SessionEventListener {
+
+		@Override
+		public void jdbcExecuteStatementEnd() {
+			roundTrips.incrementAndGet();
+		}
+
+		@Override
+		public void jdbcExecuteBatchEnd() {
+			roundTrips.incrementAndGet();
+		}
+
+	}
+
+}
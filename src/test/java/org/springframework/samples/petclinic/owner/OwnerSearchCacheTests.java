@@ -0,0 +1,238 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.test.context.aot.DisabledInAotMode;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Integration test of the owner search cache and the owner name index, and how they
+ * follow owners being saved.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@DisabledInNativeImage
+@DisabledInAotMode
+@Transactional
+class OwnerSearchCacheTests {
+
+	@Autowired
+	private OwnerSearch search;
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private OwnerNameIndex names;
+
+	@Autowired
+	private OwnerFacetIndex facets;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Cache cache;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setup() {
+		this.cache = this.cacheManager.getCache(OwnerSearch.CACHE_NAME);
+		this.cache.clear();
+		this.statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		this.statistics.clear();
+	}
+
+	@Test
+	void shouldServeRepeatedSearchesFromCache() {
+		assertThat(search("Da")).isEqualTo(2);
+		assertThat(this.search.count("Da")).isEqualTo(2);
+		long queries = this.statistics.getPrepareStatementCount();
+
+		assertThat(search("Da")).isEqualTo(2);
+		assertThat(this.search.count("Da")).isEqualTo(2);
+		assertThat(this.statistics.getPrepareStatementCount()).isEqualTo(queries);
+	}
+
+	@Test
+	void shouldCountFacetsOnceUntilInvalidated() {
+		OwnerFacetIndex.Selection facets = this.search.facets("Da");
+		assertThat(this.search.facets("Da")).isSameAs(facets);
+
+		Owner owner = this.owners.findById(2);
+		owner.setCity("Middleton");
+		this.owners.save(owner);
+		this.entityManager.flush();
+
+		assertThat(this.search.facets("Da")).isNotSameAs(facets);
+	}
+
+	@Test
+	void shouldInvalidateOnlySearchesMatchingSavedOwner() {
+		searchAll("", "D", "Da", "Dav", "Davis", "Fr", "E");
+
+		Owner owner = this.owners.findById(2);
+		owner.setCity("Middleton");
+		this.owners.save(owner);
+		this.entityManager.flush();
+
+		assertThat(cached("", "D", "Da", "Dav", "Davis")).isEmpty();
+		assertThat(cached("Fr", "E")).hasSize(2);
+	}
+
+	@Test
+	void shouldInvalidateSearchesInAnyCase() {
+		assertThat(search("da")).isEqualTo(search("DA"));
+
+		Owner owner = this.owners.findById(2);
+		owner.setCity("Middleton");
+		this.owners.save(owner);
+		this.entityManager.flush();
+
+		assertThat(cached("da")).isEmpty();
+	}
+
+	@Test
+	void shouldInvalidateSearchesMatchingPreviousAndCurrentLastName() {
+		searchAll("Da", "Fr", "E");
+		assertThat(search("Fr")).isEqualTo(1);
+
+		Owner owner = this.owners.findById(2);
+		owner.setLastName("Frost");
+		this.owners.save(owner);
+		this.entityManager.flush();
+
+		assertThat(cached("Da", "Fr")).isEmpty();
+		assertThat(cached("E")).hasSize(1);
+		assertThat(search("Da")).isEqualTo(1);
+		assertThat(search("Fr")).isEqualTo(2);
+	}
+
+	@Test
+	void shouldInvalidateSearchesMatchingEditedOwner() {
+		searchAll("Da", "Fr", "E");
+		Owner owner = this.owners.findById(2);
+		this.entityManager.clear();
+
+		owner.setLastName("Frost");
+		this.owners.updateDetails(owner);
+
+		assertThat(cached("Da", "Fr")).isEmpty();
+		assertThat(cached("E")).hasSize(1);
+		assertThat(search("Fr")).isEqualTo(2);
+	}
+
+	@Test
+	void shouldInvalidateSearchesMatchingNewOwner() {
+		searchAll("E", "Fr");
+		Owner owner = new Owner();
+		owner.setFirstName("Ernst");
+		owner.setLastName("Egan");
+		owner.setAddress("12 Lake St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085551111");
+
+		this.owners.save(owner);
+		this.entityManager.flush();
+
+		assertThat(cached("E")).isEmpty();
+		assertThat(cached("Fr")).hasSize(1);
+	}
+
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	void shouldCompleteSavedOwnerOnceCommitted() {
+		Owner owner = this.owners.findById(3);
+		owner.setLastName("Rodriguez");
+		this.owners.save(owner);
+		try {
+			assertThat(this.names.complete("rodrig", 10)).containsExactly(new OwnerName(3, "Eduardo", "Rodriguez"));
+			assertThat(this.names.complete("rodriq", 10)).isEmpty();
+		}
+		finally {
+			owner = this.owners.findById(3);
+			owner.setLastName("Rodriquez");
+			this.owners.save(owner);
+		}
+		assertThat(this.names.complete("rodriq", 10)).extracting(OwnerName::id).containsExactly(3);
+	}
+
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	void shouldCountSavedOwnerInItsCityOnceCommitted() {
+		assertThat(this.facets.select("", null, null).cities()).extracting(FacetCount::count)
+			.asList()
+			.containsExactly(4, 2, 1, 1, 1, 1);
+		Owner owner = this.owners.findById(3);
+		owner.setCity("Middleton");
+		this.owners.save(owner);
+		try {
+			assertThat(this.facets.select("rod", "Middleton", null).owners().toArray()).containsExactly(3);
+			assertThat(this.facets.select("", null, null).cities()).contains(new FacetCount("Middleton", 1))
+				.extracting(FacetCount::value)
+				.doesNotContain("McFarland");
+		}
+		finally {
+			owner = this.owners.findById(3);
+			owner.setCity("McFarland");
+			this.owners.save(owner);
+		}
+		assertThat(this.facets.select("rod", "Middleton", null).owners().isEmpty()).isTrue();
+	}
+
+	private int search(String lastName) {
+		return this.search.findSummaries(lastName, ScrollPosition.keyset(), Limit.of(5)).size();
+	}
+
+	private void searchAll(String... lastNames) {
+		for (String lastName : lastNames) {
+			search(lastName);
+		}
+	}
+
+	private List<String> cached(String... lastNames) {
+		return Arrays.stream(lastNames)
+			.filter(lastName -> this.cache.get(lastName.toLowerCase(Locale.ROOT)) != null)
+			.toList();
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.aot.DisabledInAotMode;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Asserts the number of SQL statements each owner, pet and visit endpoint issues against
+ * the sample data, so that a change in fetching shows up as a failing test rather than as
+ * a slow page. Caching is switched off, so the counts show how each request fetches its
+ * data rather than what happens to be cached. The text index is switched off too, as it
+ * reads saved owners again in the background.
+ */
+@SpringBootTest(properties = { "spring.jpa.properties.hibernate.generate_statistics=true", "spring.cache.type=none",
+		"petclinic.search.enabled=false" })
+@AutoConfigureMockMvc
+@DisabledInNativeImage
+@DisabledInAotMode
+class OwnerStatementCountTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private PetTypeRegistry petTypes;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setup() {
+		this.statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		// the registry loads the pet types once, whichever request comes first
+		this.petTypes.findAll();
+	}
+
+	private long statementsFor(RequestBuilder request, int expectedStatus) throws Exception {
+		this.statistics.clear();
+		this.mockMvc.perform(request).andExpect(status().is(expectedStatus));
+		return this.statistics.getPrepareStatementCount();
+	}
+
+	@Test
+	void findOwners() throws Exception {
+		assertThat(statementsFor(get("/owners").param("lastName", "Davis"), 200)).isEqualTo(2);
+		assertThat(statementsFor(get("/owners"), 200)).isEqualTo(3);
+		assertThat(statementsFor(get("/owners").param("lastName", "Franklin"), 302)).isEqualTo(1);
+	}
+
+	@Test
+	void showOwner() throws Exception {
+		assertThat(statementsFor(get("/owners/6"), 200)).isEqualTo(2);
+	}
+
+	@Test
+	void initUpdateOwnerForm() throws Exception {
+		assertThat(statementsFor(get("/owners/6/edit"), 200)).isEqualTo(1);
+	}
+
+	@Test
+	void processUpdateOwnerForm() throws Exception {
+		// the owner is read, as caching is off, and its changed telephone written
+		assertThat(statementsFor(post("/owners/2/edit").param("firstName", "Betty")
+			.param("lastName", "Davis")
+			.param("address", "638 Cardinal Ave.")
+			.param("city", "Sun Prairie")
+			.param("telephone", "6085551750"), 302)).isEqualTo(2);
+	}
+
+	@Test
+	void initNewPetForm() throws Exception {
+		assertThat(statementsFor(get("/owners/6/pets/new"), 200)).isEqualTo(1);
+	}
+
+	@Test
+	void initUpdatePetForm() throws Exception {
+		assertThat(statementsFor(get("/owners/6/pets/7/edit"), 200)).isEqualTo(1);
+	}
+
+	@Test
+	void processUpdatePetForm() throws Exception {
+		assertThat(statementsFor(post("/owners/3/pets/4/edit").param("name", "Jewel")
+			.param("type", "dog")
+			.param("birthDate", "2010-03-08"), 302)).isEqualTo(2);
+		// the pet's row is updated in place, the owner is not merged
+		assertThat(this.statistics.getEntityUpdateCount()).isZero();
+	}
+
+	@Test
+	void showVisitHistory() throws Exception {
+		assertThat(statementsFor(get("/owners/6/pets/7/visits"), 200)).isEqualTo(2);
+	}
+
+	@Test
+	void initNewVisitForm() throws Exception {
+		// the owner with its pets, then the visits of these
+		assertThat(statementsFor(get("/owners/6/pets/7/visits/new"), 200)).isEqualTo(2);
+	}
+
+	@Test
+	void processNewVisitForm() throws Exception {
+		// the first visit booked draws a block of ids from the sequence, the next
+		// ones take their ids from that block
+		this.mockMvc
+			.perform(post("/owners/10/pets/13/visits/new").param("date", "2024-01-01").param("description", "checkup"));
+		assertThat(statementsFor(
+				post("/owners/10/pets/13/visits/new").param("date", "2024-01-02").param("description", "checkup"), 302))
+			.isEqualTo(2);
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.SerializationUtils;
+
+/**
+ * Test class for the pet lookups of {@link Owner}
+ */
+class OwnerTests {
+
+	@Test
+	void shouldFindPetsByIdAndName() {
+		Owner owner = owner(pet(1, "Leo"), pet(2, "Basil"));
+
+		assertThat(owner.getPet(2).getName()).isEqualTo("Basil");
+		assertThat(owner.getPet("leo").getId()).isEqualTo(1);
+		assertThat(owner.getPet("BASIL", true).getId()).isEqualTo(2);
+		assertThat(owner.getPet(3)).isNull();
+		assertThat(owner.getPet("Rosy")).isNull();
+	}
+
+	@Test
+	void shouldFindAddedPets() {
+		Owner owner = owner(pet(1, "Leo"));
+		assertThat(owner.getPet("Rosy")).isNull();
+
+		Pet rosy = pet(null, "Rosy");
+		owner.addPet(rosy);
+
+		assertThat(owner.getPet("rosy")).isSameAs(rosy);
+		assertThat(owner.getPet("rosy", true)).isNull();
+	}
+
+	@Test
+	void shouldFollowRenamedPets() {
+		Owner owner = owner(pet(1, "Leo"), pet(2, "Basil"));
+		assertThat(owner.getPet("Leo")).isNotNull();
+
+		owner.getPet(1).setName("Max");
+
+		assertThat(owner.getPet("Leo")).isNull();
+		assertThat(owner.getPet("max").getId()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldFollowReplacedPets() {
+		Owner owner = owner(pet(1, "Leo"), pet(2, "Basil"));
+		assertThat(owner.getPet(1)).isNotNull();
+
+		owner.getPets().set(0, pet(3, "Max"));
+		owner.getPets().remove(1);
+		owner.getPets().add(pet(4, "Rosy"));
+
+		assertThat(owner.getPet(1)).isNull();
+		assertThat(owner.getPet("Basil")).isNull();
+		assertThat(owner.getPet("max").getId()).isEqualTo(3);
+		assertThat(owner.getPet(4).getName()).isEqualTo("Rosy");
+	}
+
+	@Test
+	void shouldCompareNamesAsEqualsIgnoreCase() {
+		Owner owner = owner(pet(1, "Ross"));
+
+		assertThat("Ross".equalsIgnoreCase("ROſS")).isTrue();
+		assertThat(owner.getPet("ROſS").getId()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldFindPetsGivenAnIdAfterIndexing() {
+		Pet rosy = pet(null, "Rosy");
+		Owner owner = owner(pet(1, "Leo"));
+		owner.addPet(rosy);
+		assertThat(owner.getPet(5)).isNull();
+
+		// the persistence provider assigns ids to the field directly
+		ReflectionTestUtils.setField(rosy, "id", 5);
+
+		assertThat(owner.getPet(5)).isSameAs(rosy);
+	}
+
+	@Test
+	void shouldFindPetsOfDeserializedOwner() {
+		Owner owner = owner(pet(1, "Leo"));
+		owner.getPet(1);
+
+		@SuppressWarnings("deprecation")
+		Owner other = (Owner) SerializationUtils.deserialize(SerializationUtils.serialize(owner));
+		other.getPet(1).setName("Max");
+
+		assertThat(other.getPet("Max")).isSameAs(other.getPet(1));
+		assertThat(owner.getPet("Leo")).isSameAs(owner.getPet(1));
+	}
+
+	private static Owner owner(Pet... pets) {
+		Owner owner = new Owner();
+		for (Pet pet : pets) {
+			owner.getPets().add(pet);
+		}
+		return owner;
+	}
+
+	private static Pet pet(Integer id, String name) {
+		Pet pet = new Pet();
+		pet.setId(id);
+		pet.setName(name);
+		return pet;
+	}
+
+}
@@ -25,12 +25,26 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.aot.DisabledInAotMode;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
@@ -41,7 +55,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * @author Colin But
  */
 @WebMvcTest(value = PetController.class,
-		includeFilters = @ComponentScan.Filter(value = PetTypeFormatter.class, type = FilterType.ASSIGNABLE_TYPE))
+		includeFilters = @ComponentScan.Filter(
+				value = { PetTypeFormatter.class, PetTypeRegistry.class, OwnerLoader.class },
+				type = FilterType.ASSIGNABLE_TYPE))
 @DisabledInNativeImage
 @DisabledInAotMode
 class PetControllerTests {
@@ -56,6 +72,9 @@ class PetControllerTests {
 	@MockBean
 	private OwnerRepository owners;
 
+	@MockBean
+	private VisitRepository visits;
+
 	@BeforeEach
 	void setup() {
 		PetType cat = new PetType();
@@ -66,7 +85,7 @@ class PetControllerTests {
 		Pet pet = new Pet();
 		owner.addPet(pet);
 		pet.setId(TEST_PET_ID);
-		given(this.owners.findById(TEST_OWNER_ID)).willReturn(owner);
+		given(this.owners.findWithPetsById(TEST_OWNER_ID)).willReturn(owner);
 	}
 
 	@Test
@@ -106,6 +125,8 @@ class PetControllerTests {
 			.andExpect(status().isOk())
 			.andExpect(model().attributeExists("pet"))
 			.andExpect(view().name("pets/createOrUpdatePetForm"));
+		// owner and pet model attributes share a single lookup
+		verify(this.owners).findWithPetsById(TEST_OWNER_ID);
 	}
 
 	@Test
@@ -118,6 +139,33 @@ class PetControllerTests {
 			.andExpect(view().name("redirect:/owners/{ownerId}"));
 	}
 
+	@Test
+	void testProcessUpdateFormConflict() throws Exception {
+		Owner owner = new Owner();
+		owner.setId(TEST_OWNER_ID);
+		Pet pet = new Pet();
+		owner.addPet(pet);
+		pet.setId(TEST_PET_ID);
+		Owner current = new Owner();
+		Pet currentPet = new Pet();
+		current.addPet(currentPet);
+		currentPet.setId(TEST_PET_ID);
+		currentPet.setVersion(4);
+		given(this.owners.findWithPetsById(TEST_OWNER_ID)).willReturn(owner, current);
+		willThrow(new ObjectOptimisticLockingFailureException(Pet.class, TEST_PET_ID)).given(this.owners)
+			.updatePet(any(Owner.class), any(Pet.class));
+		mockMvc
+			.perform(post("/owners/{ownerId}/pets/{petId}/edit", TEST_OWNER_ID, TEST_PET_ID).param("name", "Betty")
+				.param("type", "hamster")
+				.param("birthDate", "2015-02-12")
+				.param("version", "3"))
+			.andExpect(model().attributeHasErrors("pet"))
+			.andExpect(model().attribute("pet", hasProperty("name", is("Betty"))))
+			.andExpect(model().attribute("pet", hasProperty("version", is(4))))
+			.andExpect(status().isOk())
+			.andExpect(view().name("pets/createOrUpdatePetForm"));
+	}
+
 	@Test
 	void testProcessUpdateFormHasErrors() throws Exception {
 		mockMvc
@@ -129,4 +177,24 @@ class PetControllerTests {
 			.andExpect(view().name("pets/createOrUpdatePetForm"));
 	}
 
+	@Test
+	void testShowVisitHistory() throws Exception {
+		Visit visit = new Visit();
+		visit.setDescription("rabies shot");
+		given(this.visits.findByPetId(TEST_PET_ID, PageRequest.of(1, 10)))
+			.willReturn(new SliceImpl<>(List.of(visit), PageRequest.of(1, 10), true));
+		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/visits", TEST_OWNER_ID, TEST_PET_ID).param("page", "2"))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("currentPage", 2))
+			.andExpect(model().attribute("visits", hasProperty("content", hasSize(1))))
+			.andExpect(content().string(containsString("rabies shot")))
+			.andExpect(view().name("pets/visitHistory"));
+	}
+
+	@Test
+	void testShowVisitHistoryOfUnknownPet() throws Exception {
+		assertThatThrownBy(() -> mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/visits", TEST_OWNER_ID, 42)))
+			.hasRootCauseInstanceOf(IllegalArgumentException.class);
+	}
+
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.PetClinicApplication;
+
+/**
+ * Compares booking a visit through {@link VisitRepository#book(int, int, Visit)} with the
+ * former loading and saving of the whole owner, for owners with 1 and 500 pets of 4
+ * visits each, on the embedded database. Visits booked during an iteration are deleted
+ * before the next one. Run with {@code org.openjdk.jmh.Main VisitBookingBenchmark} or the
+ * {@link #main} method from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VisitBookingBenchmark {
+
+	private static final String DESCRIPTION = "benchmark";
+
+	@Param({ "1", "500" })
+	private int pets;
+
+	private ConfigurableApplicationContext context;
+
+	private OwnerRepository owners;
+
+	private VisitRepository visits;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private int ownerId;
+
+	private int petId;
+
+	@Setup
+	public void setup() {
+		this.context = SpringApplication.run(PetClinicApplication.class, "--petclinic.search.enabled=false",
+				"--spring.main.banner-mode=off", "--logging.level.root=warn", "--server.port=0",
+				"--spring.docker.compose.enabled=false");
+		this.owners = this.context.getBean(OwnerRepository.class);
+		this.visits = this.context.getBean(VisitRepository.class);
+		this.jdbcTemplate = this.context.getBean(JdbcTemplate.class);
+
+		PetType type = this.owners.findPetTypes().get(0);
+		Owner owner = new Owner();
+		owner.setFirstName("Bench");
+		owner.setLastName("Mark");
+		owner.setAddress("1 Main St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085550000");
+		for (int i = 1; i <= this.pets; i++) {
+			Pet pet = new Pet();
+			pet.setName("Pet " + i);
+			pet.setBirthDate(LocalDate.of(2020, 1, 1));
+			pet.setType(type);
+			for (int j = 1; j <= 4; j++) {
+				Visit visit = new Visit();
+				visit.setDate(LocalDate.of(2024, j, 1));
+				visit.setDescription("checkup " + j);
+				pet.addVisit(visit);
+			}
+			owner.addPet(pet);
+		}
+		this.owners.save(owner);
+		this.ownerId = owner.getId();
+		this.petId = owner.getPets().get(owner.getPets().size() - 1).getId();
+	}
+
+	@Setup(Level.Iteration)
+	public void deleteBookedVisits() {
+		this.jdbcTemplate.update("DELETE FROM visits WHERE description = ?", DESCRIPTION);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public boolean bookDirectly() {
+		return this.visits.book(this.ownerId, this.petId, visit());
+	}
+
+	@Benchmark
+	public Owner bookThroughOwner() {
+		Owner owner = this.owners.findById(this.ownerId);
+		owner.addVisit(this.petId, visit());
+		this.owners.save(owner);
+		return owner;
+	}
+
+	private static Visit visit() {
+		Visit visit = new Visit();
+		visit.setDescription(DESCRIPTION);
+		return visit;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(VisitBookingBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
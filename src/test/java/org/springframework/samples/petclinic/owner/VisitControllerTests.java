@@ -16,7 +16,14 @@
 
 package org.springframework.samples.petclinic.owner;
 
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
@@ -29,15 +36,20 @@ import org.junit.jupiter.api.condition.DisabledInNativeImage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
 import org.springframework.test.context.aot.DisabledInAotMode;
 import org.springframework.test.web.servlet.MockMvc;
 
+import jakarta.servlet.ServletException;
+
 /**
  * Test class for {@link VisitController}
  *
  * @author Colin But
  */
-@WebMvcTest(VisitController.class)
+@WebMvcTest(value = VisitController.class,
+		includeFilters = @ComponentScan.Filter(value = OwnerLoader.class, type = FilterType.ASSIGNABLE_TYPE))
 @DisabledInNativeImage
 @DisabledInAotMode
 class VisitControllerTests {
@@ -52,6 +64,9 @@ class VisitControllerTests {
 	@MockBean
 	private OwnerRepository owners;
 
+	@MockBean
+	private VisitRepository visits;
+
 	@BeforeEach
 	void init() {
 		Owner owner = new Owner();
@@ -59,6 +74,7 @@ class VisitControllerTests {
 		owner.addPet(pet);
 		pet.setId(TEST_PET_ID);
 		given(this.owners.findById(TEST_OWNER_ID)).willReturn(owner);
+		given(this.visits.book(eq(TEST_OWNER_ID), eq(TEST_PET_ID), any(Visit.class))).willReturn(true);
 	}
 
 	@Test
@@ -76,6 +92,18 @@ class VisitControllerTests {
 				.param("description", "Visit Description"))
 			.andExpect(status().is3xxRedirection())
 			.andExpect(view().name("redirect:/owners/{ownerId}"));
+		verify(this.visits).book(eq(TEST_OWNER_ID), eq(TEST_PET_ID),
+				argThat((visit) -> "Visit Description".equals(visit.getDescription())));
+		verify(this.owners, never()).findById(anyInt());
+		verify(this.owners, never()).save(any(Owner.class));
+	}
+
+	@Test
+	void testProcessNewVisitFormForPetOfAnotherOwner() {
+		assertThatExceptionOfType(ServletException.class)
+			.isThrownBy(() -> mockMvc.perform(post("/owners/{ownerId}/pets/{petId}/visits/new", TEST_OWNER_ID, 2)
+				.param("description", "Visit Description")))
+			.withRootCauseInstanceOf(IllegalArgumentException.class);
 	}
 
 	@Test
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.search;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.search.SearchHit.Kind;
+import org.springframework.test.context.aot.DisabledInAotMode;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Test class for {@link SearchController}
+ */
+@WebMvcTest(SearchController.class)
+@DisabledInNativeImage
+@DisabledInAotMode
+class SearchControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockBean
+	private TextIndex index;
+
+	private static SearchHit rabiesShot() {
+		return new SearchHit(Kind.VISIT, 2, 6, "rabies shot", "Leo, 2013-01-02, Jean Coleman", 1.5);
+	}
+
+	@Test
+	void testShowSearchResults() throws Exception {
+		given(this.index.search("rabies", 20)).willReturn(List.of(rabiesShot()));
+		this.mockMvc.perform(get("/search").param("q", "rabies"))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("hits", hasSize(1)))
+			.andExpect(view().name("search/searchResults"))
+			.andExpect(content().string(containsString("href=\"/owners/6\"")))
+			.andExpect(content().string(containsString("Leo, 2013-01-02, Jean Coleman")));
+	}
+
+	@Test
+	void testShowEmptySearch() throws Exception {
+		this.mockMvc.perform(get("/search"))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("hits", empty()))
+			.andExpect(content().string(not(containsString("Nothing found"))));
+	}
+
+	@Test
+	void testSearchAsJson() throws Exception {
+		given(this.index.search("rabies", 50)).willReturn(List.of(rabiesShot()));
+		this.mockMvc
+			.perform(get("/search").param("q", "rabies").param("limit", "500").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].kind").value("VISIT"))
+			.andExpect(jsonPath("$[0].ownerId").value(6))
+			.andExpect(jsonPath("$[0].text").value("rabies shot"));
+		verify(this.index).search("rabies", 50);
+	}
+
+}
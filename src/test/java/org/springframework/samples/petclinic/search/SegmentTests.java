@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.search.SearchHit.Kind;
+
+/**
+ * Test class for {@link Segment}
+ */
+class SegmentTests {
+
+	@Test
+	void shouldSplitTextIntoLowerCaseTerms() {
+		assertThat(Segment.terms("Rabies shot, 2013-01-01 (Leo's)")).containsExactly("rabies", "shot", "2013", "01",
+				"01", "leo", "s");
+		assertThat(Segment.terms(" -- ")).isEmpty();
+	}
+
+	@Test
+	void shouldListPostingsInDocumentOrder() {
+		List<IndexedDocument> documents = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			documents.add(visit(i, (i % 300 == 0) ? "rabies rabies shot" : "checkup"));
+		}
+		Segment segment = Segment.of(documents);
+
+		assertThat(postings(segment, "rabies")).containsExactly("0x2", "300x2", "600x2", "900x2");
+		assertThat(postings(segment, "checkup")).hasSize(996);
+		assertThat(segment.term("vaccination")).isNegative();
+		assertThat(segment.length(0)).isEqualTo(3);
+		assertThat(segment.length()).isEqualTo(996 + 4 * 3);
+	}
+
+	@Test
+	void shouldMergeDroppingDeletedDocuments() {
+		Segment first = Segment.of(List.of(visit(1, "rabies shot"), visit(2, "neutered")));
+		Segment second = Segment.of(List.of(visit(3, "rabies shot"), visit(4, "spayed")));
+		BitSet deletedInFirst = new BitSet();
+		deletedInFirst.set(0);
+
+		Segment merged = Segment.merge(List.of(first, second), List.of(deletedInFirst, new BitSet()));
+
+		assertThat(merged.size()).isEqualTo(3);
+		assertThat(merged.document(0).id()).isEqualTo(2);
+		assertThat(postings(merged, "rabies")).containsExactly("1x1");
+		assertThat(postings(merged, "spayed")).containsExactly("2x1");
+		assertThat(merged.term("neutered")).isNotNegative();
+	}
+
+	@Test
+	void shouldFindDocumentsOfOwner() {
+		Segment segment = Segment
+			.of(List.of(visit(1, "rabies"), new IndexedDocument(Kind.OWNER, 7, 7, "Jean", ""), visit(2, "shot")));
+		BitSet deleted = new BitSet();
+
+		segment.deleteDocumentsOf(7, deleted);
+
+		assertThat(segment.hasDocumentsOf(7)).isTrue();
+		assertThat(segment.hasDocumentsOf(8)).isFalse();
+		assertThat(deleted.stream().toArray()).containsExactly(1);
+	}
+
+	private static IndexedDocument visit(int id, String description) {
+		return new IndexedDocument(Kind.VISIT, id, 100 + id, description, "");
+	}
+
+	private static List<String> postings(Segment segment, String term) {
+		List<String> postings = new ArrayList<>();
+		segment.forEachPosting(segment.term(term),
+				(document, occurrences) -> postings.add(document + "x" + occurrences));
+		return postings;
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.awaitility.Awaitility.await;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.Visit;
+import org.springframework.samples.petclinic.owner.VisitRepository;
+import org.springframework.samples.petclinic.search.SearchHit.Kind;
+import org.springframework.test.context.aot.DisabledInAotMode;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Integration test of the {@link TextIndex} built from the sample data and following
+ * owners being saved.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@DisabledInNativeImage
+@DisabledInAotMode
+class TextIndexIntegrationTests {
+
+	@Autowired
+	private TextIndex index;
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private VisitRepository visits;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Test
+	void shouldSearchWithoutQueryingTheDatabase() {
+		this.index.build();
+		Statistics statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		assertThat(this.index.search("rabies", 10)).extracting(SearchHit::kind, SearchHit::context)
+			.containsExactlyInAnyOrder(tuple(Kind.VISIT, "Samantha, 2013-01-01, Jean Coleman"),
+					tuple(Kind.VISIT, "Max, 2013-01-02, Jean Coleman"));
+		assertThat(this.index.search("Friendly Street", 10)).extracting(SearchHit::ownerId).contains(4);
+		assertThat(this.index.search("leo", 10)).extracting(SearchHit::kind, SearchHit::ownerId)
+			.containsExactly(tuple(Kind.PET, 1));
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+	}
+
+	@Test
+	void shouldIndexSavedPets() {
+		rename(1, "Leo", "Leonardo");
+		try {
+			await().untilAsserted(
+					() -> assertThat(this.index.search("leonardo", 10)).extracting(SearchHit::id).containsExactly(1));
+			assertThat(this.index.search("leo", 10)).isEmpty();
+		}
+		finally {
+			rename(1, "Leonardo", "Leo");
+		}
+		await()
+			.untilAsserted(() -> assertThat(this.index.search("leo", 10)).extracting(SearchHit::id).containsExactly(1));
+	}
+
+	@Test
+	void shouldIndexBookedVisits() {
+		this.index.build();
+		Visit visit = new Visit();
+		visit.setDescription("acupuncture");
+
+		assertThat(this.visits.book(1, 1, visit)).isTrue();
+
+		await().untilAsserted(() -> assertThat(this.index.search("acupuncture", 10))
+			.extracting(SearchHit::kind, SearchHit::id, SearchHit::ownerId)
+			.containsExactly(tuple(Kind.VISIT, visit.getId(), 1)));
+	}
+
+	private void rename(int ownerId, String name, String newName) {
+		Owner owner = this.owners.findById(ownerId);
+		Pet pet = owner.getPet(name);
+		pet.setName(newName);
+		this.owners.save(owner);
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.owner.OwnerSaved;
+import org.springframework.samples.petclinic.search.SearchHit.Kind;
+
+/**
+ * Test class for {@link TextIndex}
+ */
+class TextIndexTests {
+
+	private final SearchRepository repository = mock(SearchRepository.class);
+
+	private final TextIndex index = new TextIndex(this.repository);
+
+	@BeforeEach
+	void setup() {
+		given(this.repository.findMaxOwnerId()).willReturn(2500);
+		given(this.repository.findDocuments(anyInt(), anyInt())).willReturn(List.of());
+		given(this.repository.findDocuments(1, 1000)).willReturn(List.of(owner(1, "George Franklin, Madison"),
+				pet(1, 1, "Leo, cat"), visit(1, 1, "rabies shot"), visit(2, 1, "vaccination")));
+		given(this.repository.findDocuments(1001, 2000)).willReturn(List.of(owner(1001, "Jean Coleman, Monona"),
+				pet(2, 1001, "Max, dog"), visit(3, 1001, "vaccination against rabies, booster shot and checkup")));
+		given(this.repository.findDocuments(2001, 3000)).willReturn(List.of(owner(2001, "Betty Davis, Madison")));
+	}
+
+	@Test
+	void shouldLoadOwnersInChunks() {
+		this.index.build();
+
+		verify(this.repository).findDocuments(1, 1000);
+		verify(this.repository).findDocuments(1001, 2000);
+		verify(this.repository).findDocuments(2001, 3000);
+		assertThat(hits("madison")).containsExactly("OWNER 1", "OWNER 2001");
+	}
+
+	@Test
+	void shouldRankShorterAndMoreMatchingTextsFirst() {
+		// the visit mentioning both words comes first, the shorter visit before the
+		// longer one with a single word
+		assertThat(hits("rabies shot")).containsExactly("VISIT 1", "VISIT 3");
+		assertThat(hits("vaccination")).containsExactly("VISIT 2", "VISIT 3");
+		assertThat(this.index.search("Vaccination", 1)).extracting(SearchHit::ownerId).containsExactly(1);
+	}
+
+	@Test
+	void shouldWeighRareTermsHigher() {
+		assertThat(hits("madison leo")).first().isEqualTo("PET 1");
+	}
+
+	@Test
+	void shouldFindNothingForUnknownOrNoWords() {
+		assertThat(this.index.search("parrot", 10)).isEmpty();
+		assertThat(this.index.search(" ", 10)).isEmpty();
+	}
+
+	@Test
+	void shouldReplaceDocumentsOfSavedOwner() {
+		this.index.build();
+		given(this.repository.findDocuments(1, 1)).willReturn(List.of(owner(1, "George Franklin, Middleton"),
+				pet(1, 1, "Leo, cat"), pet(4, 1, "Lucky, parrot"), visit(1, 1, "rabies shot")));
+
+		this.index.ownerSaved(new OwnerSaved(1, "Middleton", Set.of()));
+
+		await().untilAsserted(() -> assertThat(hits("middleton parrot")).containsExactlyInAnyOrder("OWNER 1", "PET 4"));
+		assertThat(hits("madison")).containsExactly("OWNER 2001");
+		assertThat(hits("vaccination")).containsExactly("VISIT 3");
+	}
+
+	@Test
+	void shouldIndexOwnersSavedBeforeBuildAfterwards() {
+		given(this.repository.findDocuments(1, 1)).willReturn(List.of(owner(1, "George Franklin, Middleton")));
+
+		this.index.ownerSaved(new OwnerSaved(1, "Middleton", Set.of()));
+		this.index.build();
+
+		await().untilAsserted(() -> assertThat(hits("middleton")).containsExactly("OWNER 1"));
+		assertThat(hits("leo")).isEmpty();
+	}
+
+	@Test
+	void shouldKeepResultsWhenMergingSegments() {
+		this.index.build();
+		for (int i = 0; i < TextIndex.MAX_SEGMENTS * 5; i++) {
+			int ownerId = 3000 + i;
+			this.index.replace(ownerId, List.of(owner(ownerId, "Owner " + i + ", Windsor")));
+			this.index.replace(1001, List.of(owner(1001, "Jean Coleman, Monona " + i)));
+		}
+
+		assertThat(this.index.search("windsor", 100)).hasSize(TextIndex.MAX_SEGMENTS * 5);
+		assertThat(hits("monona")).containsExactly("OWNER 1001");
+		assertThat(hits("max")).isEmpty();
+		assertThat(hits("madison")).containsExactly("OWNER 1", "OWNER 2001");
+	}
+
+	private List<String> hits(String query) {
+		List<String> hits = new ArrayList<>();
+		this.index.search(query, 10).forEach(hit -> hits.add(hit.kind() + " " + hit.id()));
+		return hits;
+	}
+
+	private static IndexedDocument owner(int id, String text) {
+		return new IndexedDocument(Kind.OWNER, id, id, text, "");
+	}
+
+	private static IndexedDocument pet(int id, int ownerId, String text) {
+		return new IndexedDocument(Kind.PET, id, ownerId, text, "");
+	}
+
+	private static IndexedDocument visit(int id, int ownerId, String text) {
+		return new IndexedDocument(Kind.VISIT, id, ownerId, text, "");
+	}
+
+}
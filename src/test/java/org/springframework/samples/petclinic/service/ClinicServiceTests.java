@@ -17,9 +17,13 @@
 package org.springframework.samples.petclinic.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.tuple;
 
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,18 +31,32 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.ComponentScan;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerPetNames;
 import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.owner.OwnerSummary;
 import org.springframework.samples.petclinic.owner.Pet;
 import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.samples.petclinic.owner.PetVisit;
 import org.springframework.samples.petclinic.owner.Visit;
+import org.springframework.samples.petclinic.owner.VisitRepository;
+import org.springframework.samples.petclinic.vet.Specialty;
 import org.springframework.samples.petclinic.vet.Vet;
 import org.springframework.samples.petclinic.vet.VetRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.EntityManager;
+
 /**
  * Integration test of the Service and the Repository layer.
  * <p>
@@ -79,17 +97,62 @@ class ClinicServiceTests {
 	@Autowired
 	protected VetRepository vets;
 
-	Pageable pageable;
+	@Autowired
+	protected VisitRepository visits;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
 
 	@Test
 	void shouldFindOwnersByLastName() {
-		Page<Owner> owners = this.owners.findByLastName("Davis", pageable);
+		Window<OwnerSummary> owners = this.owners.findSummariesByLastNameStartingWith("Davis", ScrollPosition.keyset(),
+				Limit.of(5), Sort.by("lastName", "id"));
 		assertThat(owners).hasSize(2);
 
-		owners = this.owners.findByLastName("Daviss", pageable);
+		owners = this.owners.findSummariesByLastNameStartingWith("Daviss", ScrollPosition.keyset(), Limit.of(5),
+				Sort.by("lastName", "id"));
 		assertThat(owners).isEmpty();
 	}
 
+	@Test
+	void shouldScrollOwnersByLastNameAndId() {
+		Sort sort = Sort.by("lastName", "id");
+		Window<OwnerSummary> first = this.owners.findSummariesByLastNameStartingWith("", ScrollPosition.keyset(),
+				Limit.of(4), sort);
+		assertThat(first).extracting(OwnerSummary::lastName).containsExactly("Black", "Coleman", "Davis", "Davis");
+		assertThat(first.hasNext()).isTrue();
+
+		OwnerSummary last = first.getContent().get(3);
+		Window<OwnerSummary> next = this.owners.findSummariesByLastNameStartingWith("",
+				ScrollPosition.forward(Map.of("lastName", last.lastName(), "id", last.id())), Limit.of(4), sort);
+		assertThat(next).extracting(OwnerSummary::lastName)
+			.containsExactly("Escobito", "Estaban", "Franklin", "McTavish");
+
+		OwnerSummary firstOfNext = next.getContent().get(0);
+		Window<OwnerSummary> previous = this.owners.findSummariesByLastNameStartingWith("",
+				ScrollPosition.backward(Map.of("lastName", firstOfNext.lastName(), "id", firstOfNext.id())),
+				Limit.of(4), sort);
+		assertThat(previous).extracting(OwnerSummary::id).containsExactlyElementsOf(first.map(OwnerSummary::id));
+		assertThat(previous.hasNext()).isFalse();
+
+		Window<OwnerSummary> jumped = this.owners.findSummariesByLastNameStartingWith("", ScrollPosition.offset(3),
+				Limit.of(4), sort);
+		assertThat(jumped).extracting(OwnerSummary::id).containsExactlyElementsOf(next.map(OwnerSummary::id));
+
+		assertThat(this.owners.countByLastNameStartingWith("Davis")).isEqualTo(2);
+	}
+
+	@Test
+	void shouldAggregatePetNamesPerOwner() {
+		assertThat(this.owners.findPetNamesByOwnerIds(List.of(3, 5, 6, 10)))
+			.extracting(OwnerPetNames::getOwnerId, OwnerPetNames::getPetNames)
+			.containsExactlyInAnyOrder(tuple(3, "Jewel, Rosy"), tuple(5, "George"), tuple(6, "Max, Samantha"),
+					tuple(10, "Lucky, Sly"));
+	}
+
 	@Test
 	void shouldFindSingleOwnerWithPet() {
 		Owner owner = this.owners.findById(1);
@@ -102,8 +165,7 @@ class ClinicServiceTests {
 	@Test
 	@Transactional
 	void shouldInsertOwner() {
-		Page<Owner> owners = this.owners.findByLastName("Schultz", pageable);
-		int found = (int) owners.getTotalElements();
+		long found = this.owners.countByLastNameStartingWith("Schultz");
 
 		Owner owner = new Owner();
 		owner.setFirstName("Sam");
@@ -112,10 +174,10 @@ class ClinicServiceTests {
 		owner.setCity("Wollongong");
 		owner.setTelephone("4444444444");
 		this.owners.save(owner);
-		assertThat(owner.getId()).isNotZero();
+		// drawn from owners_seq, which starts above the ids of the seed rows
+		assertThat(owner.getId()).isGreaterThanOrEqualTo(1000);
 
-		owners = this.owners.findByLastName("Schultz", pageable);
-		assertThat(owners.getTotalElements()).isEqualTo(found + 1);
+		assertThat(this.owners.countByLastNameStartingWith("Schultz")).isEqualTo(found + 1);
 	}
 
 	@Test
@@ -133,6 +195,68 @@ class ClinicServiceTests {
 		assertThat(owner.getLastName()).isEqualTo(newLastName);
 	}
 
+	@Test
+	@Transactional
+	void shouldUpdateChangedOwnerDetailsOnly() {
+		Owner owner = this.owners.findById(1);
+		int version = owner.getVersion();
+		this.entityManager.clear();
+		// a column the edit leaves alone keeps what was written meanwhile
+		this.jdbcTemplate.update("UPDATE owners SET address = '12 Lake St.' WHERE id = 1");
+
+		owner.setCity("Middleton");
+		this.owners.updateDetails(owner);
+
+		assertThat(owner.getVersion()).isEqualTo(version + 1);
+		owner = this.owners.findById(1);
+		assertThat(owner.getCity()).isEqualTo("Middleton");
+		assertThat(owner.getAddress()).isEqualTo("12 Lake St.");
+		assertThat(owner.getVersion()).isEqualTo(version + 1);
+	}
+
+	@Test
+	@Transactional
+	void shouldRejectEditOfOwnerChangedMeanwhile() {
+		Owner owner = this.owners.findById(1);
+		this.entityManager.clear();
+		this.jdbcTemplate.update("UPDATE owners SET city = 'Monona', version = version + 1 WHERE id = 1");
+
+		owner.setCity("Middleton");
+		assertThatExceptionOfType(OptimisticLockingFailureException.class)
+			.isThrownBy(() -> this.owners.updateDetails(owner));
+		assertThat(this.owners.findById(1).getCity()).isEqualTo("Monona");
+	}
+
+	@Test
+	@Transactional
+	void shouldUpdateChangedPetDetailsOnly() {
+		Owner owner6 = this.owners.findById(6);
+		Pet pet7 = owner6.getPet(7);
+		int version = pet7.getVersion();
+		this.entityManager.clear();
+		this.jdbcTemplate.update("UPDATE pets SET birth_date = '2013-01-01' WHERE id = 7");
+
+		pet7.setName(pet7.getName() + "X");
+		this.owners.updatePet(owner6, pet7);
+
+		assertThat(pet7.getVersion()).isEqualTo(version + 1);
+		pet7 = this.owners.findById(6).getPet(7);
+		assertThat(pet7.getName()).endsWith("X");
+		assertThat(pet7.getBirthDate()).isEqualTo(LocalDate.of(2013, 1, 1));
+		assertThat(pet7.getVersion()).isEqualTo(version + 1);
+	}
+
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	void shouldFindOwnerWithEachPetOnceAndTheirVisits() {
+		Owner owner6 = this.owners.findById(6);
+
+		assertThat(owner6.getPets()).extracting(Pet::getName).containsExactly("Max", "Samantha");
+		assertThat(owner6.getPet("Max").getVisits()).hasSize(2);
+		assertThat(owner6.getPet("Samantha").getVisits()).hasSize(2);
+		assertThat(this.owners.findById(1).getPets()).extracting(Pet::getName).containsExactly("Leo");
+	}
+
 	@Test
 	void shouldFindAllPetTypes() {
 		Collection<PetType> petTypes = this.owners.findPetTypes();
@@ -193,6 +317,13 @@ class ClinicServiceTests {
 		assertThat(vet.getSpecialties().get(1).getName()).isEqualTo("surgery");
 	}
 
+	@Test
+	void shouldFindAllSpecialtiesOrderedByName() {
+		List<Specialty> specialties = this.vets.findSpecialties();
+
+		assertThat(specialties).extracting(Specialty::getName).containsExactly("dentistry", "radiology", "surgery");
+	}
+
 	@Test
 	@Transactional
 	void shouldAddNewVisitForPet() {
@@ -225,4 +356,22 @@ class ClinicServiceTests {
 			.isNotNull();
 	}
 
+	@Test
+	void shouldPageVisitsByPetIdMostRecentFirst() {
+		Slice<Visit> visits = this.visits.findByPetId(7, PageRequest.of(0, 1));
+		assertThat(visits).extracting(Visit::getDescription).containsExactly("spayed");
+		assertThat(visits.hasNext()).isTrue();
+
+		visits = this.visits.findByPetId(7, visits.nextPageable());
+		assertThat(visits).extracting(Visit::getDescription).containsExactly("rabies shot");
+		assertThat(visits.hasNext()).isFalse();
+	}
+
+	@Test
+	void shouldFindRecentVisitsOfSeveralPets() {
+		assertThat(this.visits.findRecentByPetIds(List.of(7, 8, 1), 1))
+			.extracting(PetVisit::petId, petVisit -> petVisit.visit().getDescription())
+			.containsExactly(tuple(7, "spayed"), tuple(8, "neutered"));
+	}
+
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.stream.StreamSupport;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.samples.petclinic.vet.VetRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+
+/**
+ * Test class for the cache policies of {@link CacheConfiguration}
+ */
+class CacheConfigurationTests {
+
+	// a cache manager of its own, as the default one is shared with the other tests
+	private final CacheManager cacheManager = Caching.getCachingProvider()
+		.getCacheManager(URI.create(getClass().getName()), getClass().getClassLoader());
+
+	private final CacheProperties properties = new CacheProperties();
+
+	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+		.withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+		.withUserConfiguration(PropertiesConfiguration.class);
+
+	@AfterEach
+	void close() {
+		this.cacheManager.close();
+	}
+
+	@Test
+	void shouldCreateApplicationCachesWithDeclaredPolicies() {
+		spec("owners").setMaximumWeight(100L);
+		spec("visits").setExpireAfterAccess(Duration.ofMinutes(1));
+
+		customize();
+
+		assertThat(configuration("vets").isStoreByValue()).isFalse();
+		assertThat(configuration("vets").isReadThrough()).isTrue();
+		assertThat(configuration("vets").getMaximumSize()).isEmpty();
+		assertThat(configuration("owners").isStoreByValue()).isTrue();
+		assertThat(configuration("owners").getMaximumWeight()).hasValue(100);
+		assertThat(configuration("visits").getExpireAfterAccess()).hasValue(Duration.ofMinutes(1).toNanos());
+	}
+
+	@Test
+	void shouldEvictEntriesUnderSizeBound() {
+		spec("bounded").setMaximumSize(3L);
+		customize();
+		Cache<Object, Object> cache = this.cacheManager.getCache("bounded");
+
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, "value " + i);
+		}
+		// evictions run asynchronously, force them
+		cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class).cleanUp();
+
+		assertThat(StreamSupport.stream(cache.spliterator(), false).count()).isEqualTo(3);
+	}
+
+	@Test
+	void shouldRejectMaximumWeightOfCacheWithoutWeigher() {
+		spec("vets").setMaximumWeight(100L);
+
+		assertThatIllegalStateException().isThrownBy(this::customize)
+			.withMessage("Cache 'vets' sets maximum-weight but does not weigh its entries");
+	}
+
+	@Test
+	void shouldRejectRefreshOfCacheWithoutLoader() {
+		spec("visits").setRefreshAfterWrite(Duration.ofMinutes(1));
+
+		assertThatIllegalStateException().isThrownBy(this::customize)
+			.withMessage("Cache 'visits' sets refresh-after-write but does not load its own entries");
+	}
+
+	@Test
+	void shouldRejectExpireAfterAccessOfOwners() {
+		spec("owners").setExpireAfterAccess(Duration.ofMinutes(1));
+
+		assertThatIllegalStateException().isThrownBy(this::customize)
+			.withMessage("Cache 'owners' sets expire-after-access but expires its entries after write");
+	}
+
+	@Test
+	void shouldRejectStoreByReferenceOfOwners() {
+		spec("owners").setStoreByValue(false);
+
+		assertThatIllegalStateException().isThrownBy(this::customize)
+			.withMessage("Cache 'owners' sets store-by-value to false but is always stored by value");
+	}
+
+	@Test
+	void shouldRejectStoreByValueOfOwnerSearches() {
+		spec("owner-searches").setStoreByValue(true);
+
+		assertThatIllegalStateException().isThrownBy(this::customize)
+			.withMessage("Cache 'owner-searches' sets store-by-value to true but is always stored by reference");
+	}
+
+	@Test
+	void shouldAcceptMatchingStoreByValueOfVets() {
+		spec("vets").setStoreByValue(false);
+
+		customize();
+		assertThat(configuration("vets").isStoreByValue()).isFalse();
+	}
+
+	@Test
+	void shouldBindPolicies() {
+		this.contextRunner
+			.withPropertyValues("petclinic.cache.specs.vets.maximum-size=10",
+					"petclinic.cache.specs.vets.expire-after-write=1h")
+			.run(context -> {
+				CacheProperties.Spec spec = context.getBean(CacheProperties.class).getSpec("vets");
+				assertThat(spec.getMaximumSize()).isEqualTo(10);
+				assertThat(spec.getExpireAfterWrite()).isEqualTo(Duration.ofHours(1));
+			});
+	}
+
+	@Test
+	void shouldFailOnConflictingBounds() {
+		this.contextRunner
+			.withPropertyValues("petclinic.cache.specs.vets.maximum-size=10",
+					"petclinic.cache.specs.vets.maximum-weight=10")
+			.run(context -> assertThat(context).getFailure()
+				.rootCause()
+				.hasMessageContaining("maximum-size and maximum-weight must not both be set"));
+	}
+
+	@Test
+	void shouldFailOnRefreshAfterExpiry() {
+		this.contextRunner
+			.withPropertyValues("petclinic.cache.specs.vets.expire-after-write=1m",
+					"petclinic.cache.specs.vets.refresh-after-write=1m")
+			.run(context -> assertThat(context).getFailure()
+				.rootCause()
+				.hasMessageContaining("refresh-after-write must be shorter than expire-after-write"));
+	}
+
+	@Test
+	void shouldFailOnNonPositiveSize() {
+		this.contextRunner.withPropertyValues("petclinic.cache.specs.vets.maximum-size=0")
+			.run(context -> assertThat(context).hasFailed());
+	}
+
+	private CacheProperties.Spec spec(String name) {
+		return this.properties.getSpecs().computeIfAbsent(name, key -> new CacheProperties.Spec());
+	}
+
+	private void customize() {
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		new CacheConfiguration()
+			.petclinicCacheConfigurationCustomizer(this.properties, beanFactory.getBeanProvider(VetRepository.class),
+					beanFactory.getBeanProvider(MeterRegistry.class))
+			.customize(this.cacheManager);
+	}
+
+	@SuppressWarnings("unchecked")
+	private CaffeineConfiguration<Object, Object> configuration(String name) {
+		return this.cacheManager.getCache(name).getConfiguration(CaffeineConfiguration.class);
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@EnableConfigurationProperties(CacheProperties.class)
+	static class PropertiesConfiguration {
+
+	}
+
+}
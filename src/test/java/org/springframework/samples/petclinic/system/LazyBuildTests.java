@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link LazyBuild}
+ */
+class LazyBuildTests {
+
+	private final LazyBuild build = new LazyBuild(new Object());
+
+	private final AtomicInteger builds = new AtomicInteger();
+
+	@Test
+	void shouldBuildOnce() {
+		assertThat(this.build.run(this.builds::incrementAndGet)).isTrue();
+		assertThat(this.build.run(this.builds::incrementAndGet)).isFalse();
+
+		assertThat(this.build.isBuilt()).isTrue();
+		assertThat(this.builds).hasValue(1);
+	}
+
+	@Test
+	void shouldBuildAgainAfterFailure() {
+		assertThatIllegalStateException().isThrownBy(() -> this.build.run(() -> {
+			throw new IllegalStateException("unavailable");
+		}));
+		assertThat(this.build.isBuilt()).isFalse();
+
+		assertThat(this.build.run(this.builds::incrementAndGet)).isTrue();
+		assertThat(this.builds).hasValue(1);
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.awaitility.Awaitility.await;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Test class for {@link SingleFlight}
+ */
+class SingleFlightTests {
+
+	private static final int CALLERS = 20;
+
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final SingleFlight<String, List<String>> flight = new SingleFlight<>("test", this.meterRegistry);
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+	private final AtomicInteger executions = new AtomicInteger();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@AfterEach
+	void shutdown() {
+		this.release.countDown();
+		this.executor.shutdownNow();
+	}
+
+	@Test
+	void shouldShareOneExecutionBetweenConcurrentIdenticalCalls() throws Exception {
+		List<Future<List<String>>> calls = callConcurrently("Davis", () -> {
+			this.executions.incrementAndGet();
+			return List.of("Betty Davis", "Harold Davis");
+		});
+
+		assertThat(calls).allSatisfy(call -> assertThat(call.get()).isSameAs(calls.get(0).get()));
+		assertThat(this.executions).hasValue(1);
+		assertThat(count("executed")).isEqualTo(1);
+		assertThat(count("coalesced")).isEqualTo(CALLERS - 1);
+	}
+
+	@Test
+	void shouldShareExceptionBetweenConcurrentIdenticalCalls() throws Exception {
+		List<Future<List<String>>> calls = callConcurrently("Davis", () -> {
+			this.executions.incrementAndGet();
+			throw new IllegalStateException("Database unavailable");
+		});
+
+		assertThat(calls).allSatisfy(call -> assertThatIllegalStateException().isThrownBy(() -> {
+			try {
+				call.get();
+			}
+			catch (ExecutionException ex) {
+				throw ex.getCause();
+			}
+		}).withMessage("Database unavailable"));
+		assertThat(this.executions).hasValue(1);
+	}
+
+	@Test
+	void shouldExecuteDifferentAndLaterCallsAnew() {
+		this.flight.execute("Davis", () -> List.of("Betty Davis"));
+		this.flight.execute("Davis", () -> List.of("Betty Davis"));
+		this.flight.execute("Franklin", () -> List.of("George Franklin"));
+
+		assertThat(count("executed")).isEqualTo(3);
+		assertThat(count("coalesced")).isZero();
+	}
+
+	/**
+	 * Make {@link #CALLERS} identical calls, holding the executing one back until all
+	 * others have joined it.
+	 */
+	private List<Future<List<String>>> callConcurrently(String key, Supplier<List<String>> call) {
+		List<Future<List<String>>> calls = new ArrayList<>();
+		for (int i = 0; i < CALLERS; i++) {
+			calls.add(this.executor.submit(() -> this.flight.execute(key, () -> {
+				try {
+					this.release.await();
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				return call.get();
+			})));
+		}
+		await().until(() -> count("coalesced") == CALLERS - 1);
+		this.release.countDown();
+		return calls;
+	}
+
+	private double count(String result) {
+		return this.meterRegistry.get("singleflight.calls").tags("name", "test", "result", result).counter().count();
+	}
+
+}
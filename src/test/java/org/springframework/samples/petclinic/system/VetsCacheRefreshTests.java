@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.integration.CacheLoaderException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.samples.petclinic.vet.Vet;
+import org.springframework.samples.petclinic.vet.VetRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Test class for the refresh-ahead of the {@code vets} cache under concurrent readers
+ */
+class VetsCacheRefreshTests {
+
+	private static final int READERS = 200;
+
+	private static final Duration REFRESH_AFTER_WRITE = Duration.ofMillis(500);
+
+	private static final Duration EXPIRE_AFTER_WRITE = Duration.ofMillis(2500);
+
+	// a cache manager of its own, as the default one is shared with the other tests
+	private final CacheManager cacheManager = Caching.getCachingProvider()
+		.getCacheManager(URI.create(getClass().getName()), getClass().getClassLoader());
+
+	private final VetRepository vets = mock(VetRepository.class);
+
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private volatile boolean failing;
+
+	private Cache<Object, Object> cache;
+
+	@BeforeEach
+	void setup() {
+		given(this.vets.loadAll()).willAnswer(invocation -> {
+			int load = this.loads.incrementAndGet();
+			// a slow database, so that all readers arrive while the load is running
+			Thread.sleep(200);
+			if (this.failing) {
+				throw new QueryTimeoutException("Timed out loading vets");
+			}
+			Vet vet = new Vet();
+			vet.setId(load);
+			return List.of(vet);
+		});
+		CacheProperties properties = new CacheProperties();
+		CacheProperties.Spec spec = new CacheProperties.Spec();
+		spec.setRefreshAfterWrite(REFRESH_AFTER_WRITE);
+		spec.setExpireAfterWrite(EXPIRE_AFTER_WRITE);
+		properties.getSpecs().put("vets", spec);
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerSingleton("vetRepository", this.vets);
+		beanFactory.registerSingleton("meterRegistry", this.meterRegistry);
+		new CacheConfiguration()
+			.petclinicCacheConfigurationCustomizer(properties, beanFactory.getBeanProvider(VetRepository.class),
+					beanFactory.getBeanProvider(MeterRegistry.class))
+			.customize(this.cacheManager);
+		this.cache = this.cacheManager.getCache("vets");
+	}
+
+	@AfterEach
+	void close() {
+		this.cacheManager.close();
+	}
+
+	@Test
+	void shouldLoadOnceForConcurrentMisses() throws Exception {
+		List<Object> read = readConcurrently();
+
+		assertThat(read).hasSize(READERS).allSatisfy(vets -> assertThat(vets).isSameAs(read.get(0)));
+		assertThat(this.loads).hasValue(1);
+		assertThat(loads("success")).isEqualTo(1);
+	}
+
+	@Test
+	void shouldReloadOncePerRefreshWindowWhileServingCurrentVets() throws Exception {
+		Object current = this.cache.get(SimpleKey.EMPTY);
+		Thread.sleep(REFRESH_AFTER_WRITE.toMillis());
+
+		assertThat(readConcurrently()).allSatisfy(vets -> assertThat(vets).isSameAs(current));
+		await().until(() -> this.cache.get(SimpleKey.EMPTY) != current);
+		assertThat(this.loads).hasValue(2);
+		Object reloaded = this.cache.get(SimpleKey.EMPTY);
+		assertThat(firstId(reloaded)).isEqualTo(2);
+
+		assertThat(readConcurrently()).allSatisfy(vets -> assertThat(vets).isSameAs(reloaded));
+		assertThat(this.loads).hasValue(2);
+		assertThat(loads("success")).isEqualTo(2);
+	}
+
+	@Test
+	void shouldServeStaleVetsWhileReloadFails() throws Exception {
+		Object current = this.cache.get(SimpleKey.EMPTY);
+		this.failing = true;
+		Thread.sleep(REFRESH_AFTER_WRITE.toMillis());
+
+		assertThat(readConcurrently()).allSatisfy(vets -> assertThat(vets).isSameAs(current));
+		await().until(() -> loads("failure") >= 1);
+		assertThat(this.cache.get(SimpleKey.EMPTY)).isSameAs(current);
+
+		// once the grace period is over, the vets have to be loaded before being served
+		await().atMost(EXPIRE_AFTER_WRITE.multipliedBy(2))
+			.untilAsserted(() -> assertThatExceptionOfType(CacheLoaderException.class)
+				.isThrownBy(() -> this.cache.get(SimpleKey.EMPTY)));
+		this.failing = false;
+		assertThat(firstId(this.cache.get(SimpleKey.EMPTY))).isGreaterThan(1);
+	}
+
+	/**
+	 * Read the cached vets from {@link #READERS} threads at once.
+	 */
+	private List<Object> readConcurrently() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(READERS);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Object>> reads = new ArrayList<>();
+			for (int i = 0; i < READERS; i++) {
+				reads.add(executor.submit(() -> {
+					start.await();
+					return this.cache.get(SimpleKey.EMPTY);
+				}));
+			}
+			start.countDown();
+			List<Object> read = new ArrayList<>();
+			for (Future<Object> future : reads) {
+				read.add(future.get());
+			}
+			return read;
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private double loads(String result) {
+		return this.meterRegistry.get("cache.loads").tags("cache", "vets", "result", result).counter().count();
+	}
+
+	private static Integer firstId(Object vets) {
+		return ((Collection<?>) vets).stream().map(Vet.class::cast).findFirst().orElseThrow().getId();
+	}
+
+}
@@ -16,6 +16,12 @@
 
 package org.springframework.samples.petclinic.vet;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
 import org.assertj.core.util.Lists;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -23,15 +29,22 @@ import org.junit.jupiter.api.condition.DisabledInNativeImage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.Pageable;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.aot.DisabledInAotMode;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
-import static org.mockito.ArgumentMatchers.any;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -40,7 +53,10 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * Test class for the {@link VetController}
  */
 
-@WebMvcTest(VetController.class)
+@WebMvcTest(value = VetController.class,
+		includeFilters = @ComponentScan.Filter(
+				value = { VetDirectory.class, VetsResponseCache.class, SpecialtyRegistry.class },
+				type = FilterType.ASSIGNABLE_TYPE))
 @DisabledInNativeImage
 @DisabledInAotMode
 class VetControllerTests {
@@ -74,8 +90,6 @@ class VetControllerTests {
 	@BeforeEach
 	void setup() {
 		given(this.vets.findAll()).willReturn(Lists.newArrayList(james(), helen()));
-		given(this.vets.findAll(any(Pageable.class)))
-			.willReturn(new PageImpl<Vet>(Lists.newArrayList(james(), helen())));
 
 	}
 
@@ -89,6 +103,24 @@ class VetControllerTests {
 
 	}
 
+	@Test
+	void testShowVetListHtmlPages() throws Exception {
+		List<Vet> vets = new ArrayList<>();
+		for (int id = 7; id > 0; id--) {
+			Vet vet = james();
+			vet.setId(id);
+			vets.add(vet);
+		}
+		given(this.vets.findAll()).willReturn(vets);
+
+		mockMvc.perform(get("/vets.html?page=2"))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("totalPages", 2))
+			.andExpect(model().attribute("totalItems", 7L))
+			.andExpect(model().attribute("listVets", hasSize(2)))
+			.andExpect(model().attribute("listVets", contains(hasProperty("id", is(6)), hasProperty("id", is(7)))));
+	}
+
 	@Test
 	void testShowResourcesVetList() throws Exception {
 		ResultActions actions = mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON))
@@ -97,4 +129,91 @@ class VetControllerTests {
 			.andExpect(jsonPath("$.vetList[0].id").value(1));
 	}
 
+	@Test
+	void testShowResourcesVetListBySpecialties() throws Exception {
+		Vet linda = helen();
+		linda.setId(3);
+		Specialty surgery = new Specialty();
+		surgery.setId(2);
+		surgery.setName("surgery");
+		linda.addSpecialty(surgery);
+		given(this.vets.findAll()).willReturn(Lists.newArrayList(james(), helen(), linda));
+
+		mockMvc.perform(get("/vets?specialty=radiology").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.vetList[*].id").value(contains(2, 3)));
+		mockMvc.perform(get("/vets?specialty=surgery&specialty=radiology").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.vetList[*].id").value(contains(3)));
+		mockMvc.perform(get("/vets?specialty=dentistry").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.vetList").isEmpty());
+	}
+
+	@Test
+	void testShowResourcesVetListIgnoresMediaTypeParameters() throws Exception {
+		mockMvc.perform(get("/vets").header(HttpHeaders.ACCEPT, "application/json;x=1"))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/json"));
+	}
+
+	@Test
+	void testShowResourcesVetListXml() throws Exception {
+		mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_XML))
+			.andExpect(status().isOk())
+			.andExpect(content().contentType(MediaType.APPLICATION_XML))
+			.andExpect(xpath("/vets/vetList[2]/id").string("2"));
+	}
+
+	@Test
+	void testShowResourcesVetListNotModified() throws Exception {
+		String eTag = mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(header().exists(HttpHeaders.ETAG))
+			.andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT_ENCODING)))
+			.andReturn()
+			.getResponse()
+			.getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, eTag))
+			.andExpect(status().isNotModified())
+			.andExpect(header().string(HttpHeaders.ETAG, eTag));
+		mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_XML).header(HttpHeaders.IF_NONE_MATCH, eTag))
+			.andExpect(status().isOk());
+	}
+
+	@Test
+	void testShowResourcesVetListChangesETagWithVets() throws Exception {
+		String eTag = mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON))
+			.andReturn()
+			.getResponse()
+			.getHeader(HttpHeaders.ETAG);
+		Vet helen = helen();
+		helen.setLastName("Carter");
+		given(this.vets.findAll()).willReturn(Lists.newArrayList(james(), helen));
+
+		mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, eTag))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.vetList[1].lastName").value("Carter"));
+	}
+
+	@Test
+	void testShowResourcesVetListGzipped() throws Exception {
+		MvcResult plain = mockMvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON)).andReturn();
+		MvcResult gzipped = mockMvc
+			.perform(get("/vets").accept(MediaType.APPLICATION_JSON)
+				.header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+			.andReturn();
+
+		try (InputStream body = new GZIPInputStream(
+				new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray()))) {
+			assertThat(body.readAllBytes()).isEqualTo(plain.getResponse().getContentAsByteArray());
+		}
+		assertThat(gzipped.getResponse().getHeader(HttpHeaders.ETAG))
+			.isNotEqualTo(plain.getResponse().getHeader(HttpHeaders.ETAG));
+		assertThat(plain.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+	}
+
 }
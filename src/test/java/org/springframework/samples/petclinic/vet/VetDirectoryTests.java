@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+/**
+ * Test class for {@link VetDirectory}
+ */
+class VetDirectoryTests {
+
+	private final VetRepository vets = mock(VetRepository.class);
+
+	private final VetDirectory directory = new VetDirectory(this.vets, new SpecialtyRegistry(this.vets));
+
+	private final List<Specialty> specialties = new ArrayList<>();
+
+	@BeforeEach
+	void setup() {
+		// more specialties than fit into one word of a bitset
+		for (int id = 1; id <= 100; id++) {
+			Specialty specialty = new Specialty();
+			specialty.setId(id);
+			specialty.setName("specialty " + id);
+			this.specialties.add(specialty);
+		}
+		given(this.vets.findSpecialties()).willReturn(this.specialties);
+		given(this.vets.findAll()).willReturn(List.of(vet(3, 1, 70, 100), vet(1, 70), vet(2, 1, 2, 100)));
+	}
+
+	@Test
+	void shouldFindVetsHavingAllSpecialties() {
+		VetDirectory.Snapshot snapshot = this.directory.snapshot();
+
+		assertThat(snapshot.findBySpecialties(List.of("specialty 70"))).extracting(Vet::getId).containsExactly(1, 3);
+		assertThat(snapshot.findBySpecialties(List.of("specialty 100", "specialty 1"))).extracting(Vet::getId)
+			.containsExactly(2, 3);
+		assertThat(snapshot.findBySpecialties(List.of("specialty 2", "specialty 70"))).isEmpty();
+		assertThat(snapshot.findBySpecialties(List.of("specialty 101"))).isEmpty();
+		assertThat(snapshot.findBySpecialties(List.of())).hasSize(3);
+	}
+
+	@Test
+	void shouldPageVetsById() {
+		Page<Vet> page = this.directory.snapshot().findAll(PageRequest.of(1, 2));
+
+		assertThat(page.getContent()).extracting(Vet::getId).containsExactly(3);
+		assertThat(page.getTotalElements()).isEqualTo(3);
+		assertThat(this.directory.snapshot().findAll(PageRequest.of(2, 2)).getContent()).isEmpty();
+	}
+
+	@Test
+	void shouldKeepSnapshotUntilVetsChange() {
+		VetDirectory.Snapshot snapshot = this.directory.snapshot();
+		assertThat(this.directory.snapshot()).isSameAs(snapshot);
+
+		given(this.vets.findAll()).willReturn(List.of(vet(1)));
+
+		assertThat(this.directory.snapshot()).isNotSameAs(snapshot);
+		assertThat(this.directory.snapshot().findAll()).extracting(Vet::getId).containsExactly(1);
+	}
+
+	private Vet vet(int id, int... specialties) {
+		Vet vet = new Vet();
+		vet.setId(id);
+		for (int specialty : specialties) {
+			vet.addSpecialty(this.specialties.get(specialty - 1));
+		}
+		return vet;
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.support.MutableSortDefinition;
+import org.springframework.beans.support.PropertyComparator;
+
+/**
+ * Compares {@link Vet#getSpecialties()}, which sorts once per change, with the former
+ * copy and reflective sort on every call. Run with
+ * {@code org.openjdk.jmh.Main VetSpecialtiesBenchmark} or the {@link #main} method from
+ * the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VetSpecialtiesBenchmark {
+
+	@Param({ "1", "3", "10" })
+	private int specialties;
+
+	private Vet vet;
+
+	@Setup
+	public void setup() {
+		this.vet = new Vet();
+		for (int i = this.specialties; i > 0; i--) {
+			Specialty specialty = new Specialty();
+			specialty.setId(i);
+			specialty.setName("specialty " + i);
+			this.vet.addSpecialty(specialty);
+		}
+	}
+
+	@Benchmark
+	public List<Specialty> precomputed() {
+		return this.vet.getSpecialties();
+	}
+
+	@Benchmark
+	public List<Specialty> copyAndSort() {
+		List<Specialty> sortedSpecs = new ArrayList<>(this.vet.getSpecialtiesInternal());
+		PropertyComparator.sort(sortedSpecs, new MutableSortDefinition("name", true, true));
+		return Collections.unmodifiableList(sortedSpecs);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(VetSpecialtiesBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -15,6 +15,8 @@
  */
 package org.springframework.samples.petclinic.vet;
 
+import java.util.Set;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.util.SerializationUtils;
 
@@ -38,4 +40,33 @@ class VetTests {
 		assertThat(other.getId()).isEqualTo(vet.getId());
 	}
 
+	@Test
+	void shouldSortSpecialtiesByNameOnce() {
+		Vet vet = new Vet();
+		vet.addSpecialty(specialty("surgery"));
+		vet.addSpecialty(specialty("Dentistry"));
+
+		assertThat(vet.getSpecialties()).extracting(Specialty::getName).containsExactly("Dentistry", "surgery");
+		assertThat(vet.getSpecialties()).isSameAs(vet.getSpecialties());
+	}
+
+	@Test
+	void shouldResortSpecialtiesWhenChanged() {
+		Vet vet = new Vet();
+		vet.addSpecialty(specialty("surgery"));
+		assertThat(vet.getSpecialties()).hasSize(1);
+
+		vet.addSpecialty(specialty("radiology"));
+		assertThat(vet.getSpecialties()).extracting(Specialty::getName).containsExactly("radiology", "surgery");
+
+		vet.setSpecialtiesInternal(Set.of(specialty("dentistry")));
+		assertThat(vet.getSpecialties()).extracting(Specialty::getName).containsExactly("dentistry");
+	}
+
+	private static Specialty specialty(String name) {
+		Specialty specialty = new Specialty();
+		specialty.setName(name);
+		return specialty;
+	}
+
 }